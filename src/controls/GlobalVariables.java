@@ -5,8 +5,12 @@ import dataClasses.Example;
 import dataClasses.RefPoint;
 import javafx.beans.property.*;
 import visibleElements.ChartLabels;
+import visibleElements.RingBarrierEntryController;
 import visibleElements.TimeSpaceChart;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by Edward on 5/11/2015.
  * global variables
@@ -33,6 +37,10 @@ public class GlobalVariables {
     public static BooleanProperty formFilled = new SimpleBooleanProperty(false);
     public static BooleanProperty redrawToggle = new SimpleBooleanProperty(false);
     public static BooleanProperty changeToggle = new SimpleBooleanProperty(false);
+    //false while some intersection is half or double cycled
+    public static BooleanProperty singleCycle = new SimpleBooleanProperty(true);
+    //true while a search is moving the corridor from plan to plan, so sliders stay put
+    public static BooleanProperty searching = new SimpleBooleanProperty(false);
 
     //new change listener scheme
     public static BooleanProperty recalcChart = new SimpleBooleanProperty(false);
@@ -42,6 +50,8 @@ public class GlobalVariables {
     //UI elements
     public static TimeSpaceChart chart;
     public static ChartLabels labels;
+    //the controller of each intersection's inputs, in corridor order
+    public static List<RingBarrierEntryController> ringBarrierEntries = new ArrayList<>();
 
     //debugging
     public static boolean debugging = false;
@@ -2,12 +2,12 @@ package controls;
 
 import dataClasses.Corridor;
 import dataClasses.Intersection;
+import engine.CorridorGeometry;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.text.Font;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 
 /**
  * Created by Edward on 5/8/2015.
@@ -38,15 +38,10 @@ public abstract class Process {
      * @return a number axis with set bounds
      */
     public static NumberAxis calcAxisX() {
-        double minX = 0;
-        double maxX = Collections.max(GlobalVariables.systemCorridor.getDistances())
-                      / GlobalVariables.systemCorridor.getSpeed()
-                      + GlobalVariables.cycleLen.get();
-        maxX = 3 * GlobalVariables.cycleLen.get() > maxX ? 3 * GlobalVariables.cycleLen.get() : maxX;
-        maxX = Math.round(maxX / 10) * 10;
-        double scaleX = 0.1 * (maxX - minX);
-        scaleX = Math.round(scaleX / 10) * 10;
-        NumberAxis axis = new NumberAxis("Time (sec)", minX, maxX, scaleX);
+        CorridorGeometry geometry = GlobalVariables.systemCorridor.getGeometry();
+        double maxX = geometry.getAxisMaxX(GlobalVariables.cycleLen.get());
+        double scaleX = geometry.getAxisScaleX(GlobalVariables.cycleLen.get());
+        NumberAxis axis = new NumberAxis("Time (sec)", 0, maxX, scaleX);
         axis.setTickLabelFont(Font.font(18));
         return axis;
     }
@@ -56,11 +51,10 @@ public abstract class Process {
      * @return
      */
     public static NumberAxis calcAxisY() {
-        double minY = Math.round(
-                Collections.min(GlobalVariables.systemCorridor.getDistances()) / 100) * 100 - 100;
-        double maxY = Math.round(
-                Collections.max(GlobalVariables.systemCorridor.getDistances()) / 100) * 100 + 100;
-        double scaleY = Math.round(0.1 * (maxY - minY) / 100) * 100;
+        CorridorGeometry geometry = GlobalVariables.systemCorridor.getGeometry();
+        double minY = geometry.getAxisMinY();
+        double maxY = geometry.getAxisMaxY();
+        double scaleY = geometry.getAxisScaleY();
         NumberAxis axis =  new NumberAxis("Distance (ft)", minY, maxY, scaleY);
         axis.setTickLabelFont(Font.font(16));
         axis.setMinorTickCount(4);
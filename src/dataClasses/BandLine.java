@@ -7,12 +7,17 @@ import javafx.scene.shape.Line;
 
 /**
  * Created by Edward on 5/21/2015. A line that can be represented by point-slope
- * form The line can be converted to a series with the toSeries() method
+ * form The line can be converted to a series with the toSeries() method. A
+ * line can also bend at a list of vertices, for bands through links with
+ * different speeds. It then follows the slope past its first and last vertex
  */
 public class BandLine extends Line {
 
     private double slope;
     private Point2D point;
+    //the vertices of a bent line in increasing y order, or null for a straight line
+    private double[] xs;
+    private double[] ys;
 
     public BandLine() {
         super();
@@ -69,6 +74,27 @@ public class BandLine extends Line {
         setEndY(otherY);
     }
 
+    /**
+     * creates a line that bends at every vertex. The vertices must be in
+     * increasing y order, and x must only ever move one way along them
+     *
+     * @param xs    the x value of each vertex
+     * @param ys    the y value of each vertex
+     * @param slope the slope of the line before the first vertex and after
+     *              the last one
+     */
+    public BandLine(double[] xs, double[] ys, double slope) {
+        super();
+        this.slope = slope;
+        this.point = new Point2D(xs[0], ys[0]);
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        setStartX(xs[0]);
+        setStartY(ys[0]);
+        setEndX(xs[xs.length - 1]);
+        setEndY(ys[ys.length - 1]);
+    }
+
     /**
      * extrapolates an x value given a y value
      *
@@ -76,7 +102,18 @@ public class BandLine extends Line {
      * @return the corresponding x value
      */
     public double extrapXVal(double yVal) {
-        return (yVal - point.getY()) / slope + point.getX();
+        if (xs == null || yVal <= ys[0]) {
+            return (yVal - point.getY()) / slope + point.getX();
+        }
+        int last = ys.length - 1;
+        if (yVal >= ys[last]) {
+            return (yVal - ys[last]) / slope + xs[last];
+        }
+        int k = 0;
+        while (ys[k + 1] < yVal) {
+            k++;
+        }
+        return xs[k] + (xs[k + 1] - xs[k]) * (yVal - ys[k]) / (ys[k + 1] - ys[k]);
     }
 
     /**
@@ -86,7 +123,19 @@ public class BandLine extends Line {
      * @return the corresponding y value
      */
     public double extrapYVal(double xVal) {
-        return slope * (xVal - point.getX()) + point.getY();
+        if (xs == null) {
+            return slope * (xVal - point.getX()) + point.getY();
+        }
+        for (int k = 0; k + 1 < xs.length; k++) {
+            if (xs[k] != xs[k + 1] && Math.min(xs[k], xs[k + 1]) <= xVal
+                && xVal <= Math.max(xs[k], xs[k + 1])) {
+                return ys[k] + (ys[k + 1] - ys[k]) * (xVal - xs[k]) / (xs[k + 1] - xs[k]);
+            }
+        }
+        //past the vertices: follow the slope from the nearer end
+        int last = xs.length - 1;
+        int end = Math.abs(xVal - xs[0]) <= Math.abs(xVal - xs[last]) ? 0 : last;
+        return slope * (xVal - xs[end]) + ys[end];
     }
 
     /**
@@ -102,7 +151,15 @@ public class BandLine extends Line {
         Data<Double, Double> dataStart = new Data<>(extrapXVal(highY), highY);
         Data<Double, Double> dataEnd = new Data<>(extrapXVal(lowY), lowY);
         Series<Double, Double> result = new Series<>();
-        result.getData().addAll(dataStart, dataEnd);
+        result.getData().add(dataStart);
+        if (xs != null) {
+            for (int k = ys.length - 1; k >= 0; k--) {
+                if (ys[k] < highY && ys[k] > lowY) {
+                    result.getData().add(new Data<>(xs[k], ys[k]));
+                }
+            }
+        }
+        result.getData().add(dataEnd);
         return result;
     }
 
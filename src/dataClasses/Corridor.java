@@ -1,9 +1,22 @@
 package dataClasses;
 
 import controls.GlobalVariables;
-import controls.Process;
+import engine.ApproachVolumes;
+import engine.BandEngine;
+import engine.BandIndex;
+import engine.BandResult;
+import engine.BandWindows;
+import engine.CorridorGeometry;
+import engine.CorridorSpec;
+import engine.IntersectionSpec;
+import engine.OffsetProfile;
+import engine.PairTable;
+import engine.PairTables;
+import engine.TravelTimes;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.chart.NumberAxis;
@@ -27,6 +40,8 @@ import java.util.Collections;
 public class Corridor {
 
     private DoubleProperty speed = new SimpleDoubleProperty();
+    //how far either side of the speed a platoon may travel. 0 gives single-speed bands
+    private DoubleProperty speedTolerance = new SimpleDoubleProperty(0);
     private ObservableList<Intersection> intersections = FXCollections.observableArrayList();
 
     //represent inbound and outbound bands as ranges along the 0 intersection
@@ -35,6 +50,47 @@ public class Corridor {
 
     private ObservableList<Series<Number, Number>> bands = FXCollections.observableArrayList();
 
+    //kept up to date while sliders are dragged so a drag does not recompute every intersection
+    private BandIndex bandIndex;
+
+    //overlap tables for adjacent intersections. Brought up to date with the bands, which only
+    //rebuilds the pairs whose cycles, distance or speed changed since
+    private PairTables pairTables = new PairTables();
+
+    //distances, travel times and axis bounds. Thrown away when a distance or the speed changes
+    private CorridorGeometry geometry;
+    //the running sum of the link travel times, at the link speeds and at the slowest and fastest
+    //tolerated speeds. A link speed change moves them in place, anything else throws them away
+    private TravelTimes travelTimes;
+    private TravelTimes fastTimes;
+    private TravelTimes slowTimes;
+    private ChangeListener<Number> geometryListener = (observable, oldValue, newValue) -> {
+        geometry = null;
+        travelTimes = null;
+    };
+    private ChangeListener<Number> linkSpeedListener = (observable, oldValue, newValue) -> {
+        for (int i = 0; i < intersections.size(); i++) {
+            if (intersections.get(i).linkSpeedProperty() == observable) {
+                retimeLink(i);
+                return;
+            }
+        }
+    };
+    private ListChangeListener<Intersection> intersectionsListener = change -> {
+        while (change.next()) {
+            for (Intersection removed : change.getRemoved()) {
+                removed.distProperty().removeListener(geometryListener);
+                removed.linkSpeedProperty().removeListener(linkSpeedListener);
+            }
+            for (Intersection added : change.getAddedSubList()) {
+                added.distProperty().addListener(geometryListener);
+                added.linkSpeedProperty().addListener(linkSpeedListener);
+            }
+        }
+        geometry = null;
+        travelTimes = null;
+    };
+
     //constructors
 
     /**
@@ -44,6 +100,7 @@ public class Corridor {
      */
     public Corridor(ArrayList<Intersection> intersections) {
         this.intersections = FXCollections.observableArrayList(intersections);
+        listenForGeometryChanges();
         if (this.intersections.size() != 0) {
             updateBands();
         }
@@ -56,6 +113,7 @@ public class Corridor {
      * @param size the size of the corridor
      */
     public Corridor(int size) {
+        listenForGeometryChanges();
         intersections.clear();
         for (int i = 0; i < size; i++) {
             intersections.add(new Intersection());
@@ -67,6 +125,7 @@ public class Corridor {
      * size of this corridor accordingly
      */
     public Corridor() {
+        listenForGeometryChanges();
         GlobalVariables.numIntersections.addListener((observable, oldValue, newValue) -> {
                 if (newValue != null && !newValue.equals(Double.NaN) && !newValue.equals(0)) {
                     setNumIntersections(GlobalVariables.numIntersections.get());
@@ -74,6 +133,21 @@ public class Corridor {
         });
     }
 
+    /**
+     * throws the cached geometry and travel times away whenever the speed, the list of
+     * intersections or any intersection's distance changes, and moves the travel times when a
+     * link speed changes
+     */
+    private void listenForGeometryChanges() {
+        speed.addListener(geometryListener);
+        speedTolerance.addListener(geometryListener);
+        for (Intersection curr : intersections) {
+            curr.distProperty().addListener(geometryListener);
+            curr.linkSpeedProperty().addListener(linkSpeedListener);
+        }
+        intersections.addListener(intersectionsListener);
+    }
+
     /**
      * sets the number of intersections to a given size. if the current size is greater than the
      * inputted size, intersections from the end of the ArrayList will be removed. If the given size
@@ -99,49 +173,238 @@ public class Corridor {
      */
     public void updateBands() {
         if (this.isFull()) {
-            calcInboundBand();
-            calcOutboudBand();
-            calcVisible();
+            CorridorSpec spec = bandSpec();
+            GlobalVariables.singleCycle.set(spec.isSingleCycle());
+            bandIndex = new BandIndex(spec);
+            showBands(bandIndex.getBands());
+            pairTables.update(toSpec());
+        } else {
+            bandIndex = null;
+            pairTables.clear();
         }
     }
 
-    //normalize cycles
+    /**
+     * shifts the inbound and outbound cycles of one intersection by delta and updates the bands
+     * incrementally. Only the shifted intersection is re-normalized, so this stays fast while a
+     * slider is being dragged no matter how long the corridor is
+     *
+     * @param index the index of the intersection to shift
+     * @param delta the shift in seconds
+     */
+    public void shiftIntersection(int index, double delta) {
+        Intersection curr = intersections.get(index);
+        curr.getCycleOut().shift(delta);
+        curr.getCycleIn().shift(delta);
+        if (bandIndex == null || bandIndex.size() != intersections.size()) {
+            updateBands();
+        } else {
+            bandIndex.shift(index, delta);
+            showBands(bandIndex.getBands());
+        }
+    }
 
     /**
-     * normalized the outbound cycles. This means that it shifts the cycles over by the distance a
-     * car would have traveled by the time it gets to this intersection from the first one.
+     * calculates the inbound, outbound and total bandwidth for every shift of one intersection
+     * over the next cycle, relative to where it is now
      *
-     * @return a new ArrayList of cycles
+     * @param index the index of the intersection
+     * @return the bandwidth profile, or null if the corridor is not filled out
      */
-    private ArrayList<Cycle> normalizeCyclesOut() {
-        ArrayList<Cycle> result = new ArrayList<>();
-        for (Intersection curr : intersections) {
-            Cycle cycle = new Cycle(curr.getCycleOut());
-            double dist = curr.getDist();
-            double timeShift = dist / -speed.get();
-            cycle.shift(timeShift);
-            result.add(cycle);
+    public OffsetProfile offsetProfile(int index) {
+        if (bandIndex == null || bandIndex.size() != intersections.size()) {
+            updateBands();
         }
-        return result;
+        return bandIndex == null ? null : bandIndex.profile(index);
+    }
+
+    /**
+     * gets the shared inbound and outbound green of every adjacent pair of intersections for every
+     * relative offset between them, as of the last time the bands were updated. Only the tables of
+     * pairs whose cycles, distance or speed changed were rebuilt since
+     *
+     * @return the table of each pair in corridor order, or an empty array if the corridor is not
+     * filled out or its intersections do not all run the system cycle with one green window
+     */
+    public PairTable[] getPairTables() {
+        return pairTables.toArray();
+    }
+
+    /**
+     * shifts the inbound and outbound cycles of every intersection at once, as when an offset plan
+     * is adopted, and recalculates the bands a single time
+     *
+     * @param deltas the shift of each intersection in seconds
+     */
+    public void applyShifts(double[] deltas) {
+        for (int i = 0; i < deltas.length && i < intersections.size(); i++) {
+            Intersection curr = intersections.get(i);
+            curr.getCycleOut().shift(deltas[i]);
+            curr.getCycleIn().shift(deltas[i]);
+        }
+        updateBands();
+    }
+
+    /**
+     * puts a stored time-of-day plan on the corridor and shows bands that were already calculated
+     * for it, so switching between plans does not recalculate anything. The corridor has to have
+     * the plan's geometry and cycle length
+     *
+     * @param plan  the corridor run with the plan, as from {@link engine.PlanSet#toSpec(int)}
+     * @param bands the bands of the plan
+     */
+    public void showPlan(CorridorSpec plan, BandResult bands) {
+        for (int i = 0; i < plan.size() && i < intersections.size(); i++) {
+            intersections.get(i).set(plan.getIntersection(i));
+        }
+        GlobalVariables.singleCycle.set(plan.isSingleCycle());
+        bandIndex = null;
+        showBands(bands);
+    }
+
+    /**
+     * moves the travel times downstream of a link whose speed has changed and updates the bands
+     * incrementally. Only the intersections past the link are re-normalized
+     *
+     * @param link the index of the link, which is the index of the intersection it leads to
+     */
+    private void retimeLink(int link) {
+        boolean tolerant = isSpeedTolerant();
+        if (travelTimes == null || bandIndex == null || bandIndex.size() != intersections.size()
+            || tolerant != (fastTimes != travelTimes)) {
+            geometry = null;
+            travelTimes = null;
+            updateBands();
+            return;
+        }
+        double linkSpeed = linkSpeed(link);
+        double delta = travelTimes.setLinkSpeed(link, linkSpeed);
+        double fastDelta = delta;
+        double slowDelta = delta;
+        if (tolerant) {
+            fastDelta = fastTimes.setLinkSpeed(link, linkSpeed + speedTolerance.get());
+            slowDelta = slowTimes.setLinkSpeed(link, linkSpeed - speedTolerance.get());
+        }
+        geometry = null;
+        bandIndex.retime(link, fastDelta, slowDelta - fastDelta);
+        showBands(bandIndex.getBands());
+    }
+
+    /**
+     * @param link the index of a link
+     * @return the speed on the link, which is the corridor speed unless the link has its own
+     */
+    private double linkSpeed(int link) {
+        double linkSpeed = intersections.get(link).getLinkSpeed();
+        return linkSpeed > 0 ? linkSpeed : speed.get();
+    }
+
+    /**
+     * gets the running sum of the link travel times, building it if anything but a link speed
+     * has changed since the last call
+     *
+     * @return the travel time to every intersection at the link speeds
+     */
+    private TravelTimes getTravelTimes() {
+        if (travelTimes == null) {
+            int size = intersections.size();
+            double[] dist = new double[size];
+            double[] speeds = new double[size];
+            for (int i = 0; i < size; i++) {
+                dist[i] = intersections.get(i).getDist();
+                speeds[i] = linkSpeed(i);
+            }
+            travelTimes = new TravelTimes(dist, speeds);
+            fastTimes = travelTimes;
+            slowTimes = travelTimes;
+            if (isSpeedTolerant()) {
+                double[] fast = new double[size];
+                double[] slow = new double[size];
+                for (int i = 0; i < size; i++) {
+                    fast[i] = speeds[i] + speedTolerance.get();
+                    slow[i] = speeds[i] - speedTolerance.get();
+                }
+                fastTimes = new TravelTimes(dist, fast);
+                slowTimes = new TravelTimes(dist, slow);
+            }
+        }
+        return travelTimes;
     }
 
     /**
-     * normalized the inbound cycles. (see outbound cycle description)
+     * replaces the band ranges with the windows in a BandResult and recalculates the plottable
+     * series
      *
-     * @return a new ArrayList of cycles
+     * @param result the inbound and outbound band windows
      */
-    private ArrayList<Cycle> normalizeCyclesIn() {
-        ArrayList<Cycle> result = new ArrayList<>();
+    private void showBands(BandResult result) {
+        inboundBandRanges.setAll(toRanges(result.getInbound()));
+        outboundBandRanges.setAll(toRanges(result.getOutbound()));
+        calcVisible();
+    }
+
+    /**
+     * takes a snapshot of this corridor and the global signal settings as an
+     * immutable CorridorSpec that the band engine can work on off the FX
+     * thread
+     *
+     * @return a new CorridorSpec
+     */
+    public CorridorSpec toSpec() {
+        ArrayList<IntersectionSpec> specs = new ArrayList<>();
         for (Intersection curr : intersections) {
-            if (!curr.equals(new Intersection())) {
-                Cycle cycle = new Cycle(curr.getCycleIn());
-                double dist = curr.getDist();
-                double timeShift = dist / speed.get();
-                cycle.shift(timeShift);
-                result.add(cycle);
+            specs.add(curr.toSpec());
+        }
+        return CorridorSpec.of(GlobalVariables.cycleLen.get(), GlobalVariables.startUpLoss.get(),
+                GlobalVariables.extOfGreen.get(), getTravelTimes().toArray(), specs);
+    }
+
+    /**
+     * takes a snapshot of the through volumes entered for each intersection, in the same order as
+     * toSpec(). Volumes that were not entered count as no traffic, and every approach is given
+     * the saturation flow of one lane
+     *
+     * @return a new ApproachVolumes
+     */
+    public ApproachVolumes toVolumes() {
+        int size = intersections.size();
+        double[] volumeIn = new double[size];
+        double[] volumeOut = new double[size];
+        for (int i = 0; i < size; i++) {
+            double in = intersections.get(i).getVolumeIn();
+            double out = intersections.get(i).getVolumeOut();
+            volumeIn[i] = in > 0 ? in : 0;
+            volumeOut[i] = out > 0 ? out : 0;
+        }
+        return ApproachVolumes.of(volumeIn, volumeOut, ApproachVolumes.LANE_SATURATION);
+    }
+
+    /**
+     * @return whether the bands are the departures that clear every intersection for the whole
+     * range of speeds around each link's speed instead of the speed alone
+     */
+    public boolean isSpeedTolerant() {
+        if (!(speedTolerance.get() > 0)) {
+            return false;
+        }
+        for (int i = 0; i < intersections.size(); i++) {
+            if (!(speedTolerance.get() < linkSpeed(i))) {
+                return false;
             }
         }
-        return result;
+        return true;
+    }
+
+    /**
+     * takes the snapshot the bands are calculated from. This is toSpec() swept across the
+     * tolerated range of speeds when there is one
+     *
+     * @return a new CorridorSpec
+     */
+    public CorridorSpec bandSpec() {
+        CorridorSpec spec = toSpec();
+        return fastTimes != travelTimes ? spec.withTravelTimes(fastTimes.toArray(),
+                slowTimes.toArray()) : spec;
     }
 
     /**
@@ -149,19 +412,7 @@ public class Corridor {
      * track of as ranges along the dist = 0 axis.
      */
     public void calcOutboudBand() {
-        ArrayList<Range> redRegions = new ArrayList<>();
-        for (Cycle cycle : normalizeCyclesOut()) {
-            Range redRange = cycle.getRedAsRange();
-            redRange.setEnd(redRange.getEnd() + GlobalVariables.startUpLoss.get());
-            redRange.setStart(redRange.getStart() + GlobalVariables.extOfGreen.get());
-            redRegions.add(redRange);
-            redRegions.add(redRange.shift(GlobalVariables.cycleLen.get()));
-            redRegions.add(redRange.shift(-GlobalVariables.cycleLen.get()));
-        }
-        Range greenRange = intersections.get(0).getCycleOut().getGreenAsRange();
-        greenRange.setStart(greenRange.getStart() + GlobalVariables.startUpLoss.get());
-        greenRange.setEnd(greenRange.getEnd() + GlobalVariables.extOfGreen.get());
-        outboundBandRanges.setAll(greenRange.excludeAll(redRegions));
+        outboundBandRanges.setAll(toRanges(BandEngine.outbound(bandSpec())));
     }
 
     /**
@@ -169,23 +420,21 @@ public class Corridor {
      * track of as ranges along the dist = 0 axis.
      */
     public void calcInboundBand() {
-        ArrayList<Range> redRegions = new ArrayList<>();
-        for (Cycle cycle : normalizeCyclesIn()) {
-            Range redRange = cycle.getRedAsRange();
-            redRange.setEnd(redRange.getEnd() + GlobalVariables.startUpLoss.get());
-            redRange.setStart(redRange.getStart() + GlobalVariables.extOfGreen.get());
-            redRegions.add(redRange);
-            redRegions.add(redRange.shift(GlobalVariables.cycleLen.get()));
-            redRegions.add(redRange.shift(-GlobalVariables.cycleLen.get()));
-        }
-        //System.out.println(redRegions);
-        Range greenRange = intersections.get(0).getCycleIn().getGreenAsRange();
-        greenRange.setStart(greenRange.getStart() + GlobalVariables.startUpLoss.get());
-        greenRange.setEnd(greenRange.getEnd() + GlobalVariables.extOfGreen.get());
-        inboundBandRanges.setAll(greenRange.excludeAll(redRegions));
-        for (int i = 0; i < inboundBandRanges.size(); i++) {
-            inboundBandRanges.set(i, inboundBandRanges.get(i).shift(GlobalVariables.cycleLen.get()));
+        inboundBandRanges.setAll(toRanges(BandEngine.inbound(bandSpec())));
+    }
+
+    /**
+     * converts band windows from the engine into Ranges that can be plotted
+     *
+     * @param windows the band windows
+     * @return a new ArrayList of Ranges
+     */
+    private static ArrayList<Range> toRanges(BandWindows windows) {
+        ArrayList<Range> result = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            result.add(new Range(windows.getStart(i), windows.getEnd(i)));
         }
+        return result;
     }
 
     /**
@@ -259,6 +508,14 @@ public class Corridor {
         return speed;
     }
 
+    public double getSpeedTolerance() {
+        return speedTolerance.get();
+    }
+
+    public DoubleProperty speedToleranceProperty() {
+        return speedTolerance;
+    }
+
     public int getNumIntersections() {
         return intersections.size();
     }
@@ -266,11 +523,32 @@ public class Corridor {
     /**
      * get the distance offsets of all of the intersections in this corridor.
      *
-     * @return
+     * @return the distances as a new ArrayList
      */
     public ArrayList<Double> getDistances() {
-        return intersections.stream().map(Intersection::getDist)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        CorridorGeometry geometry = getGeometry();
+        ArrayList<Double> result = new ArrayList<>(geometry.size());
+        for (int i = 0; i < geometry.size(); i++) {
+            result.add(geometry.getDist(i));
+        }
+        return result;
+    }
+
+    /**
+     * gets the distances, travel times and axis bounds of this corridor. The summary is cached and
+     * only rebuilt after a distance or the speed has changed
+     *
+     * @return the current CorridorGeometry
+     */
+    public CorridorGeometry getGeometry() {
+        if (geometry == null) {
+            double[] dist = new double[intersections.size()];
+            for (int i = 0; i < dist.length; i++) {
+                dist[i] = intersections.get(i).getDist();
+            }
+            geometry = new CorridorGeometry(dist, getTravelTimes().toArray(), speed.get());
+        }
+        return geometry;
     }
 
     /**
@@ -304,10 +582,13 @@ public class Corridor {
      */
     public ObservableList<Series> getOutboundBandAsSeries() {
         ObservableList<Series> result = FXCollections.observableArrayList();
+        CorridorGeometry geometry = getGeometry();
         for (Range curr : outboundBandRanges) {
-            ArrayList<Series<Double, Double>> serises = curr.toBand(speed.get())
-                    .toSeries(Collections.max(getDistances()) + 100,
-                            Collections.min(getDistances()) - 100);
+            getTravelTimes();
+            Band band = curr.toBand(geometry.getDistances(), fastTimes.toArray(),
+                    slowTimes.toArray(), speed.get());
+            ArrayList<Series<Double, Double>> serises = band.toSeries(geometry.getMaxDist() + 100,
+                    geometry.getMinDist() - 100);
             for (Series series : serises) {
                 series.setName("OBD");
             }
@@ -315,19 +596,18 @@ public class Corridor {
             Label text = new Label("" + Math.round((double) curr.getMagnitude()) + "s");
             text.setFont(Font.font(16));
             rangeLabel.setNode(text);
-            double center = curr.shift(Collections.min(getDistances()) / speed.get()).getStart()
+            double center = curr.shift(geometry.getMinDist() / speed.get()).getStart()
                             + (double) curr.getMagnitude() / 2;
             double offset;
             try {
                 offset = (((NumberAxis) GlobalVariables.chart.getYAxis()).getUpperBound()
                           - ((NumberAxis) GlobalVariables.chart.getYAxis()).getLowerBound()) / 20;
             } catch (NullPointerException e) {
-                offset = (Process.calcAxisY().getUpperBound() - Process.calcAxisY().getLowerBound())
-                         / 20;
+                offset = (geometry.getAxisMaxY() - geometry.getAxisMinY()) / 20;
                 System.out.println("using default band label vertical offset");
             }
             rangeLabel.setXValue(center + offset / speed.get());
-            rangeLabel.setYValue(Collections.min(getDistances()) + offset);
+            rangeLabel.setYValue(geometry.getMinDist() + offset);
             Series<Double, Double> label = new Series<>(FXCollections
                     .observableList(Collections.singletonList(rangeLabel)));
             label.setName("label");
@@ -346,10 +626,14 @@ public class Corridor {
      */
     public ObservableList<Series> getInboundBandAsSeries() {
         ObservableList<Series> result = FXCollections.observableArrayList();
+        CorridorGeometry geometry = getGeometry();
         for (Range curr : inboundBandRanges) {
-            ArrayList<Series<Double, Double>> serises = curr.toBand(-speed.get())
-                    .toSeries(Collections.max(getDistances()) + 100,
-                            Collections.min(getDistances()) - 100);
+            //inbound platoons reach the dist = 0 axis, so the slow ones left earliest
+            getTravelTimes();
+            Band band = curr.toBand(geometry.getDistances(), negate(slowTimes.toArray()),
+                    negate(fastTimes.toArray()), -speed.get());
+            ArrayList<Series<Double, Double>> serises = band.toSeries(geometry.getMaxDist() + 100,
+                    geometry.getMinDist() - 100);
             for (Series series : serises) {
                 series.setName("IBD");
             }
@@ -357,18 +641,17 @@ public class Corridor {
             Label text = new Label("" + Math.round((double) curr.getMagnitude()) + "s");
             text.setFont(Font.font(16));
             rangeLabel.setNode(text);
-            double center = curr.shift(-Collections.min(getDistances()) / speed.get()).getStart()
+            double center = curr.shift(-geometry.getMinDist() / speed.get()).getStart()
                             + (double) curr.getMagnitude() / 2;
             double offset;
             try {
                 offset = (((NumberAxis) GlobalVariables.chart.getYAxis()).getUpperBound()
                           - ((NumberAxis) GlobalVariables.chart.getYAxis()).getLowerBound()) / 20;
             } catch (NullPointerException e) {
-                offset = (Process.calcAxisY().getUpperBound() - Process.calcAxisY().getLowerBound())
-                         / 20;
+                offset = (geometry.getAxisMaxY() - geometry.getAxisMinY()) / 20;
             }
             rangeLabel.setXValue(center - offset / speed.get());
-            rangeLabel.setYValue(Collections.min(getDistances()) + offset);
+            rangeLabel.setYValue(geometry.getMinDist() + offset);
             Series<Double, Double> label = new Series<>(FXCollections.observableList(
                     Collections.singletonList(rangeLabel)));
             label.setName("label");
@@ -379,6 +662,13 @@ public class Corridor {
         return result;
     }
 
+    private static double[] negate(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -values[i];
+        }
+        return values;
+    }
+
     /**
      * checks to see if there are any empty intersections
      *
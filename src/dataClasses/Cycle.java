@@ -1,5 +1,7 @@
 package dataClasses;
 
+import engine.CycleSpec;
+import engine.GreenWindows;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -8,7 +10,16 @@ import javafx.beans.property.SimpleDoubleProperty;
  * Created by Edward on 5/20/2015. Represents a signal cycle. Has offset
  * (reference point is start of green), redTime, greenTime and cycle length
  * properties (cycle length is a bound property dependent on the red and green
- * time)
+ * time). This is the bound view the UI edits. Calculations work on
+ * immutable CycleSpec snapshots taken with toSpec()
+ * <p>
+ * A cycle that serves its movement in several windows keeps them as
+ * GreenWindows. The red and green time then describe the first window and
+ * the red after it, and the windows are dropped as soon as either one is
+ * changed on its own. The ring-barrier form only has two phases per ring,
+ * so every movement it enters is one window. Several windows only come
+ * from a CycleSpec that has them, through set(CycleSpec) or the CycleSpec
+ * constructor
  *
  * @author Edward Foyle
  * @version 1.0
@@ -28,6 +39,8 @@ public class Cycle {
             return redTime.get() + greenTime.get();
         }
     };
+    //the green windows when the movement is served more than once per cycle, null for one window
+    private GreenWindows windows;
 
     /**
      * copies another cycle
@@ -38,6 +51,7 @@ public class Cycle {
         this.offset.set(other.getOffset());
         this.redTime.set(other.getRedTime());
         this.greenTime.set(other.getGreenTime());
+        this.windows = other.windows;
         //this.cycleLen = other.getCycleLen();
     }
 
@@ -58,6 +72,15 @@ public class Cycle {
                 : (offset % cycleLen.get()));
     }
 
+    /**
+     * creates a cycle from an immutable CycleSpec
+     *
+     * @param spec the cycle values
+     */
+    public Cycle(CycleSpec spec) {
+        set(spec);
+    }
+
     /**
      * default no-arg constructor
      */
@@ -95,6 +118,41 @@ public class Cycle {
         return cycleLen;
     }
 
+    /**
+     * @return every green window of the cycle relative to the offset. A
+     * single window unless several were set and the red and green time still
+     * match them
+     */
+    public GreenWindows getGreenWindows() {
+        if (windows != null && windows.getEnd(0) == greenTime.get()
+            && windows.getCycleLen() - windows.getEnd(0) == redTime.get()) {
+            return windows;
+        }
+        return GreenWindows.single(greenTime.get(), getCycleLen());
+    }
+
+    /**
+     * @return an immutable snapshot of this cycle
+     */
+    public CycleSpec toSpec() {
+        GreenWindows curr = getGreenWindows();
+        return curr.size() > 1 ? new CycleSpec(offset.get(), curr)
+                : new CycleSpec(offset.get(), redTime.get(), greenTime.get());
+    }
+
+    /**
+     * syncs this cycle's properties to the values in a CycleSpec. Listeners
+     * on the properties fire as usual
+     *
+     * @param spec the new cycle values
+     */
+    public void set(CycleSpec spec) {
+        windows = spec.getGreenWindows().size() > 1 ? spec.getGreenWindows() : null;
+        redTime.set(spec.getRedTime());
+        greenTime.set(spec.getGreenTime());
+        offset.set(spec.getOffset());
+    }
+
     /**
      * creates a new Cycle that is this cycle shifted by delta
      * @param delta the shift to perform on this cycle
@@ -139,7 +197,8 @@ public class Cycle {
         }
         Cycle that = (Cycle) other;
         return this.offset.getValue() == that.getOffset() && this.redTime.get() == that.getRedTime()
-               && this.greenTime.get() == that.getGreenTime();
+               && this.greenTime.get() == that.getGreenTime()
+               && getGreenWindows().equals(that.getGreenWindows());
     }
 
     /**
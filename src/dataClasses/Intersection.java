@@ -1,6 +1,8 @@
 package dataClasses;
 
 import controls.GlobalVariables;
+import engine.GreenWindows;
+import engine.IntersectionSpec;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.*;
@@ -17,7 +19,10 @@ import javafx.scene.shape.Rectangle;
  * Represents an intersection. Has a distance offset from 0, a series of inbound
  * signal times and outbound signal times, as well as a slider data point with
  * custom node. Listens for clicks on the node and changes the 'isSelected'
- * property to 'true' when dragging the slider
+ * property to 'true' when dragging the slider. The slider and its gradients
+ * are only built the first time the slider is asked for, so intersections
+ * that are only used for calculations never create them. Calculations work
+ * on immutable IntersectionSpec snapshots taken with toSpec()
  *
  * @author Edward Foyle
  * @version 1.0
@@ -25,6 +30,12 @@ import javafx.scene.shape.Rectangle;
 public class Intersection {
 
     private DoubleProperty dist = new SimpleDoubleProperty();
+    //the speed on the link from the previous intersection (from dist = 0 for the first one). Not
+    //a positive number means the corridor speed is used
+    private DoubleProperty linkSpeed = new SimpleDoubleProperty(Double.NaN);
+    //the through volumes in vehicles per hour. Not a number means none was entered
+    private DoubleProperty volumeIn = new SimpleDoubleProperty(Double.NaN);
+    private DoubleProperty volumeOut = new SimpleDoubleProperty(Double.NaN);
 
     private StringProperty crossStName = new SimpleStringProperty("");
 
@@ -53,18 +64,9 @@ public class Intersection {
 
         @Override
         protected Rectangle computeValue() {
-            double colorStopIn = cycleIn.get().getRedTime() / cycleIn.get().getCycleLen();
             Rectangle rect = new Rectangle(10 * cycleIn.get().getCycleLen(),
                     GlobalVariables.DEFAULT_INTERSECTION_WIDTH / 2);
-            Stop[] stopsIn = new Stop[]{new Stop(0, Color.RED),
-                    new Stop(colorStopIn, Color.RED),
-                    new Stop(colorStopIn, Color.GREEN),
-                    new Stop(1, Color.GREEN)};
-            LinearGradient gradientIn =
-                    new LinearGradient(cycleIn.get().getOffset() - cycleIn.get().getRedTime(),
-                            0, cycleIn.get().getOffset() + cycleIn.get().getGreenTime(), 0,
-                            false, CycleMethod.REPEAT, stopsIn);
-            rect.setFill(gradientIn);
+            rect.setFill(fill(cycleIn.get()));
             rect.setTranslateY(-1);
             return rect;
         }
@@ -76,23 +78,35 @@ public class Intersection {
 
         @Override
         protected Rectangle computeValue() {
-            double colorStopOut = cycleOut.get().getRedTime() / cycleOut.get().getCycleLen();
             Rectangle rect = new Rectangle(10 * cycleIn.get().getCycleLen(),
                     GlobalVariables.DEFAULT_INTERSECTION_WIDTH / 2);
-            Stop[] stopsOut = new Stop[]{new Stop(0, Color.RED),
-                    new Stop(colorStopOut, Color.RED),
-                    new Stop(colorStopOut, Color.GREEN),
-                    new Stop(1, Color.GREEN)};
-            LinearGradient gradientOut =
-                    new LinearGradient(cycleOut.get().getOffset() - cycleOut.get().getRedTime(),
-                            0, cycleOut.get().getOffset() + cycleOut.get().getGreenTime(), 0,
-                            false, CycleMethod.REPEAT, stopsOut);
-            rect.setFill(gradientOut);
+            rect.setFill(fill(cycleOut.get()));
             rect.setTranslateY(GlobalVariables.DEFAULT_INTERSECTION_WIDTH / 2);
             return rect;
         }
     };
 
+    /**
+     * paints a cycle's reds and greens, one cycle per repeat of the gradient
+     * starting at the offset, with every green window in its place
+     * @param cycle the cycle to paint
+     * @return the gradient
+     */
+    private static LinearGradient fill(Cycle cycle) {
+        GreenWindows windows = cycle.getGreenWindows();
+        double cycleLen = cycle.getCycleLen();
+        Stop[] stops = new Stop[4 * windows.size() + 1];
+        for (int w = 0; w < windows.size(); w++) {
+            stops[4 * w] = new Stop(windows.getStart(w) / cycleLen, Color.RED);
+            stops[4 * w + 1] = new Stop(windows.getStart(w) / cycleLen, Color.GREEN);
+            stops[4 * w + 2] = new Stop(windows.getEnd(w) / cycleLen, Color.GREEN);
+            stops[4 * w + 3] = new Stop(windows.getEnd(w) / cycleLen, Color.RED);
+        }
+        stops[stops.length - 1] = new Stop(1, Color.RED);
+        return new LinearGradient(cycle.getOffset(), 0, cycle.getOffset() + cycleLen, 0, false,
+                CycleMethod.REPEAT, stops);
+    }
+
     private boolean isRef = false;
     private BooleanProperty isSelected = new SimpleBooleanProperty(false);
     //debugging
@@ -114,7 +128,16 @@ public class Intersection {
         this.dist.set(dist);
         cycleIn.set(new Cycle(offsetIn, redTimeIn, cycleLen - redTimeIn));
         cycleOut.set(new Cycle(offsetOut, redTimeOut, cycleLen - redTimeOut));
-        initVisible();
+    }
+
+    /**
+     * creates an intersection from an immutable IntersectionSpec
+     * @param spec the intersection values
+     */
+    public Intersection(IntersectionSpec spec) {
+        this.dist.set(spec.getDist());
+        cycleIn.set(new Cycle(spec.getCycleIn()));
+        cycleOut.set(new Cycle(spec.getCycleOut()));
     }
 
     /**
@@ -124,10 +147,15 @@ public class Intersection {
     }
 
     /**
-     * gets the slider bar associated with this intersection
-     * @return the slider as a data point w/ custom node
+     * gets the slider bar associated with this intersection. The slider is
+     * created the first time this is called
+     * @return the slider as a data point w/ custom node, or null if this
+     * intersection is empty
      */
     public Data<Double, Double> getSlider() {
+        if (slider == null && !isEmpty()) {
+            initVisible();
+        }
         return slider;
     }
 
@@ -142,6 +170,42 @@ public class Intersection {
         return dist;
     }
 
+    /**
+     * @return the speed on the link leading to this intersection, or NaN if
+     * the link runs at the corridor speed
+     */
+    public double getLinkSpeed() {
+        return linkSpeed.get();
+    }
+
+    public DoubleProperty linkSpeedProperty() {
+        return linkSpeed;
+    }
+
+    /**
+     * @return the inbound through volume in vehicles per hour, or NaN if
+     * none was entered
+     */
+    public double getVolumeIn() {
+        return volumeIn.get();
+    }
+
+    public DoubleProperty volumeInProperty() {
+        return volumeIn;
+    }
+
+    /**
+     * @return the outbound through volume in vehicles per hour, or NaN if
+     * none was entered
+     */
+    public double getVolumeOut() {
+        return volumeOut.get();
+    }
+
+    public DoubleProperty volumeOutProperty() {
+        return volumeOut;
+    }
+
     /**
      * create the slider based on the inputted cycle information
      * also initializes the listeners that will registers clicks and drags on
@@ -231,6 +295,25 @@ public class Intersection {
         return crossStName;
     }
 
+    /**
+     * @return an immutable snapshot of this intersection
+     */
+    public IntersectionSpec toSpec() {
+        return new IntersectionSpec(dist.get(), cycleIn.get().toSpec(), cycleOut.get().toSpec());
+    }
+
+    /**
+     * syncs this intersection's distance and cycles to the values in an
+     * IntersectionSpec. The cycle objects are kept so the slider and any
+     * offset listeners stay attached
+     * @param spec the new intersection values
+     */
+    public void set(IntersectionSpec spec) {
+        dist.set(spec.getDist());
+        cycleIn.get().set(spec.getCycleIn());
+        cycleOut.get().set(spec.getCycleOut());
+    }
+
     public boolean equals(Object other) {
         if (other == null || !(other instanceof Intersection)) {
             return false;
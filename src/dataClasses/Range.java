@@ -1,5 +1,7 @@
 package dataClasses;
 
+import engine.IntervalSet;
+import engine.RangeValue;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -7,14 +9,14 @@ import javafx.geometry.Point2D;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * Created by Edward on 5/21/2015. This class represents a single continuous
  * value range. It provides methods such as contains, eclude and union of ranges
  * Disjoint ranges are represented as an ArrayList of Ranges Magnitude is a
- * bound property to the start and end values
+ * bound property to the start and end values. Calculations use the
+ * immutable RangeValue; this class is kept as the bound view the UI plots
  *
  * @author Edward Foyle
  * @version 1.0
@@ -58,6 +60,22 @@ public class Range implements Comparable<Range> {
         }
     }
 
+    /**
+     * initializes this range from an immutable RangeValue
+     *
+     * @param value the range values
+     */
+    public Range(RangeValue value) {
+        this(value.getStart(), value.getEnd());
+    }
+
+    /**
+     * @return an immutable snapshot of this range
+     */
+    public RangeValue toValue() {
+        return new RangeValue(start.get(), end.get());
+    }
+
     public double getStart() {
         return start.get();
     }
@@ -180,43 +198,28 @@ public class Range implements Comparable<Range> {
     }
 
     /**
-     * An extremely inefficient algorithm for excluding multiple ranges from
-     * this range and returning the minimum number of disjoint
-     * ranges to span the solution set.
+     * excludes multiple ranges from this range and returns the minimum
+     * number of disjoint ranges to span the solution set. The excluded
+     * ranges are sorted and merged once and then swept against this range
+     * in a single pass
      * @param ranges a list of ranges to be excluded from this one
      * @return an ArrayList of ranges spanning values in this Range and not
      * in any of the input ranges
      */
     public ArrayList<Range> excludeAll(List<Range> ranges) {
-        ArrayList<Range> result = new ArrayList<>(Collections.singletonList(this));
-        ArrayList<Range> temps = new ArrayList<>();
-        for (Range range : ranges) {
-            temps.clear();
-            temps.addAll(result);
-            result.clear();
-            for (Range temp : temps) {
-                result.addAll(temp.exclude(range));
-            }
-        }
-        result = union(result);
-        return result;
+        return toRanges(IntervalSet.of(start.get(), end.get()).subtract(toIntervalSet(ranges)));
     }
 
     /**
-     * Another extremely inefficient algorithm for excluding one list of ranges
-     * from another list of Ranges.
+     * excludes one list of ranges from another list of Ranges. Both lists
+     * are merged into sorted interval sets and swept against each other
      *
      * @param ranges    the original ranges
      * @param excluding the ranges to be excluded
      * @return a new array list of ranges
      */
     public static ArrayList<Range> exclude(List<Range> ranges, List<Range> excluding) {
-        ArrayList<Range> result = new ArrayList<>();
-        for (Range range : ranges) {
-            result.addAll(range.excludeAll(excluding));
-        }
-        result = union(result);
-        return result;
+        return toRanges(toIntervalSet(ranges).subtract(toIntervalSet(excluding)));
     }
 
     /**
@@ -249,6 +252,57 @@ public class Range implements Comparable<Range> {
         return new Band(front, back);
     }
 
+    /**
+     * converts this range to a band whose lines bend at every intersection,
+     * for when each link has its own speed. The front and back may take
+     * different times to reach an intersection, which draws a band for a
+     * range of speeds as a fan
+     * @param dist the distance offset of each intersection
+     * @param frontTimes how long after the start of this range the front of
+     * the band reaches each intersection. Negative for an inbound band
+     * @param backTimes how long after the end of this range the back of the
+     * band reaches each intersection
+     * @param slope the slope of the lines past the first and last
+     * intersection
+     * @return the range as a Band object
+     */
+    public Band toBand(double[] dist, double[] frontTimes, double[] backTimes, double slope) {
+        return new Band(bend(start.get(), dist, frontTimes, slope),
+                bend(end.get(), dist, backTimes, slope));
+    }
+
+    /**
+     * builds a bent line through (from, 0) and every intersection
+     */
+    private static BandLine bend(double from, double[] dist, double[] times, double slope) {
+        int size = dist.length;
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(dist[a], dist[b]));
+        double[] xs = new double[size + 1];
+        double[] ys = new double[size + 1];
+        int count = 0;
+        boolean axis = false;
+        for (int i : order) {
+            if (!axis && dist[i] >= 0) {
+                axis = true;
+                if (dist[i] > 0) {
+                    xs[count] = from;
+                    ys[count++] = 0;
+                }
+            }
+            xs[count] = from + times[i];
+            ys[count++] = dist[i];
+        }
+        if (!axis) {
+            xs[count] = from;
+            ys[count++] = 0;
+        }
+        return new BandLine(Arrays.copyOf(xs, count), Arrays.copyOf(ys, count), slope);
+    }
+
     /**
      * output a new range that is this range shifted by delta
      * @param delta the amount of shift
@@ -278,44 +332,35 @@ public class Range implements Comparable<Range> {
      * @return the minimum spanning set
      */
     public static ArrayList<Range> union(List<Range> ranges) {
-        Collections.sort(ranges);
-        ArrayList<Range> result = new ArrayList<Range>();
-        int idx = 0;
-        for (Range range : ranges) {
-            if (result.isEmpty()) { //if first time through
-                result.add(range);
-            } else if (!result.get(idx).contains(range) &&
-                       result.get(idx).intersects(range)) {
-                result.set(idx, result.get(idx).union(range));
-            } else if (!result.get(idx).intersects(range)) {
-                result.add(range);
-                idx++;
-            }
-        }
-        return result;
+        return toRanges(toIntervalSet(ranges));
     }
 
     /**
-     * compute the union of 2 ranges. The ranges must intersect
-     * @param r1 the first range
-     * @param r2 the second range
-     * @return the union of the ranges
+     * merges a list of ranges into a sorted IntervalSet
+     * @param ranges the inputted ranges
+     * @return a new IntervalSet covering all of the ranges
      */
-    private static Range union(Range r1, Range r2) {
-        return new Range(
-                Collections.min(Arrays.asList(r1.getStart(), r2.getStart())),
-                Collections.max(Arrays.asList(r1.getEnd(), r2.getEnd())));
+    public static IntervalSet toIntervalSet(List<Range> ranges) {
+        double[] starts = new double[ranges.size()];
+        double[] ends = new double[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            starts[i] = ranges.get(i).getStart();
+            ends[i] = ranges.get(i).getEnd();
+        }
+        return IntervalSet.fromUnsorted(starts, ends, ranges.size());
     }
 
     /**
-     * compute the union of this range with another. The ranges must intersect
-     * @param r1 the other range
-     * @return the union of the ranges
+     * converts an IntervalSet to a list of ranges
+     * @param set the interval set
+     * @return a new ArrayList with one Range per interval
      */
-    private Range union(Range r1) {
-        return new Range(
-                Collections.min(Arrays.asList(this.start.get(), r1.getStart())),
-                Collections.max(Arrays.asList(this.end.get(), r1.getEnd())));
+    public static ArrayList<Range> toRanges(IntervalSet set) {
+        ArrayList<Range> result = new ArrayList<>();
+        for (int i = 0; i < set.size(); i++) {
+            result.add(new Range(set.getStart(i), set.getEnd(i)));
+        }
+        return result;
     }
 
     /**
@@ -0,0 +1,73 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * The traffic on the through approaches of a corridor, for
+ * {@link FlowProfileEngine}. Volumes and saturation flows are in vehicles
+ * per hour and are held in primitive arrays indexed by intersection, in the
+ * same order as the {@link CorridorSpec} they go with. Like the spec, the
+ * arrays are copied on the way in, so the volumes can be shared between
+ * threads.
+ */
+public final class ApproachVolumes {
+
+    //a typical saturation flow for one through lane
+    public static final double LANE_SATURATION = 1800;
+
+    private final double[] volumeIn;
+    private final double[] volumeOut;
+    private final double[] saturationIn;
+    private final double[] saturationOut;
+
+    /**
+     * @param volumeIn      the inbound through volume at each intersection
+     * @param volumeOut     the outbound through volume at each intersection
+     * @param saturationIn  the inbound saturation flow at each intersection
+     * @param saturationOut the outbound saturation flow at each intersection
+     */
+    public ApproachVolumes(double[] volumeIn, double[] volumeOut, double[] saturationIn,
+                           double[] saturationOut) {
+        int size = volumeIn.length;
+        if (volumeOut.length != size || saturationIn.length != size
+            || saturationOut.length != size) {
+            throw new IllegalArgumentException("all approach arrays must be the same length");
+        }
+        this.volumeIn = volumeIn.clone();
+        this.volumeOut = volumeOut.clone();
+        this.saturationIn = saturationIn.clone();
+        this.saturationOut = saturationOut.clone();
+    }
+
+    /**
+     * @param volumeIn   the inbound through volume at each intersection
+     * @param volumeOut  the outbound through volume at each intersection
+     * @param saturation the saturation flow of every approach
+     * @return the volumes
+     */
+    public static ApproachVolumes of(double[] volumeIn, double[] volumeOut, double saturation) {
+        double[] saturations = new double[volumeIn.length];
+        Arrays.fill(saturations, saturation);
+        return new ApproachVolumes(volumeIn, volumeOut, saturations, saturations);
+    }
+
+    public int size() {
+        return volumeIn.length;
+    }
+
+    public double getVolumeIn(int i) {
+        return volumeIn[i];
+    }
+
+    public double getVolumeOut(int i) {
+        return volumeOut[i];
+    }
+
+    public double getSaturationIn(int i) {
+        return saturationIn[i];
+    }
+
+    public double getSaturationOut(int i) {
+        return saturationOut[i];
+    }
+}
@@ -0,0 +1,155 @@
+package engine;
+
+/**
+ * Calculates the inbound and outbound bands through a corridor. This is the
+ * same calculation Corridor has always done (normalize each cycle by the
+ * travel time to its intersection, subtract every red region from the first
+ * intersection's green) but it works on a {@link CorridorSpec} instead of the
+ * JavaFX properties, so it can be called from any thread. When the spec
+ * covers a range of speeds each red region is swept across every arrival
+ * time in the range, so the bands are the departures that clear every
+ * intersection at any of those speeds.
+ * <p>
+ * When intersections run cycles of different lengths the bands are found
+ * over the whole hyperperiod of the corridor (see
+ * {@link CorridorSpec#getHyperperiod()}). The reds of all the intersections
+ * that share a cycle length are still wrapped and merged once, on a circle
+ * of that length, and each of those circles is unrolled only across the
+ * first intersection's greens, so nothing is copied for every repetition
+ * of every cycle.
+ * <p>
+ * The engine has no state of its own. Each call only allocates the arrays it
+ * needs for that call.
+ */
+public final class BandEngine {
+
+    private BandEngine() {}
+
+    /**
+     * calculates both bands for a corridor
+     *
+     * @param spec the corridor
+     * @return the inbound and outbound band windows
+     */
+    public static BandResult compute(CorridorSpec spec) {
+        return new BandResult(inbound(spec), outbound(spec));
+    }
+
+    /**
+     * calculates the outbound band. Outbound cycles are shifted back by the
+     * travel time to their intersection
+     *
+     * @param spec the corridor
+     * @return the outbound band windows along the dist = 0 axis
+     */
+    public static BandWindows outbound(CorridorSpec spec) {
+        if (spec.size() == 0) {
+            return BandWindows.EMPTY;
+        }
+        int size = spec.size();
+        double[] offsets = new double[size];
+        double[] earlier = new double[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = spec.getOffsetOut(i) - spec.getTravelTime(i);
+            earlier[i] = spec.getTravelSpread(i);
+        }
+        return calcBand(spec, spec.getOffsetOut(0), spec.getWindowsOut(), offsets, earlier,
+                new double[size]);
+    }
+
+    /**
+     * calculates the inbound band. Inbound cycles are shifted forward by the
+     * travel time to their intersection and the result is moved up one cycle
+     * so it lines up with the outbound band on the chart
+     *
+     * @param spec the corridor
+     * @return the inbound band windows along the dist = 0 axis
+     */
+    public static BandWindows inbound(CorridorSpec spec) {
+        if (spec.size() == 0) {
+            return BandWindows.EMPTY;
+        }
+        int size = spec.size();
+        double[] offsets = new double[size];
+        double[] later = new double[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = spec.getOffsetIn(i) + spec.getTravelTime(i);
+            later[i] = spec.getTravelSpread(i);
+        }
+        return calcBand(spec, spec.getOffsetIn(0), spec.getWindowsIn(), offsets,
+                new double[size], later).shift(spec.getCycleLen());
+    }
+
+    /**
+     * subtracts the red regions of every (already shifted) cycle from the
+     * greens of the first intersection. Red regions are widened by the
+     * start-up loss and narrowed by the extension of green, wrapped onto a
+     * single cycle and merged once, then unrolled across the first
+     * intersection's greens. An intersection with several green windows has
+     * a red before each of them, and the reds between the first
+     * intersection's own windows are what split its greens apart. Reds are
+     * wrapped on one circle per distinct cycle length, and the first
+     * intersection's greens are repeated across the hyperperiod
+     *
+     * @param spec        the corridor
+     * @param firstOffset the un-shifted offset of the first intersection
+     * @param windows     the green windows of every intersection
+     * @param offsets     the shifted offset of each intersection
+     * @param earlier     how much earlier each red region starts when it is
+     *                    swept across a range of speeds
+     * @param later       how much later each red region ends when it is
+     *                    swept across a range of speeds
+     * @return the band windows
+     */
+    private static BandWindows calcBand(CorridorSpec spec, double firstOffset,
+                                        GreenTable windows, double[] offsets, double[] earlier,
+                                        double[] later) {
+        double greenStart = firstOffset + spec.getStartUpLoss();
+        double greenEnd = firstOffset + windows.getSpan(0) + spec.getExtOfGreen();
+        if (!(greenStart < greenEnd)) {
+            return BandWindows.EMPTY;
+        }
+        double firstPeriod = windows.getCycleLen(0);
+        double last = greenEnd + spec.getHyperperiod() - firstPeriod;
+        IntervalSet band = IntervalSet.of(greenStart, last).intersect(IntervalSet
+                .of(greenStart, greenEnd).unroll(firstPeriod, greenStart, last));
+        double[] redStarts = new double[windows.getWindowCount()];
+        double[] redEnds = new double[windows.getWindowCount()];
+        boolean[] done = new boolean[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            if (done[i]) {
+                continue;
+            }
+            double period = windows.getCycleLen(i);
+            int count = 0;
+            for (int j = i; j < offsets.length; j++) {
+                if (windows.getCycleLen(j) != period) {
+                    continue;
+                }
+                done[j] = true;
+                double offset = mod(offsets[j], period);
+                for (int w = windows.getFirst(j); w < windows.getFirst(j + 1); w++) {
+                    redStarts[count] = offset + windows.getRedStart(w) - earlier[j]
+                                       + spec.getExtOfGreen();
+                    redEnds[count++] = offset + windows.getStart(w) + later[j]
+                                       + spec.getStartUpLoss();
+                }
+            }
+            IntervalSet redRegions = IntervalSet.wrap(redStarts, redEnds, count, period);
+            band = band.subtract(redRegions.unroll(period, greenStart, last));
+        }
+        return band.toWindows();
+    }
+
+    /**
+     * mods a value into [0, modulus) the same way Cycle normalizes offsets
+     *
+     * @param value   the value
+     * @param modulus the modulus
+     * @return the modded value
+     */
+    static double mod(double value, double modulus) {
+        double result = value % modulus;
+        return result < 0 ? result + modulus : result;
+    }
+}
@@ -0,0 +1,288 @@
+package engine;
+
+/**
+ * Keeps the bands of a corridor up to date as single intersections move.
+ * <p>
+ * Each intersection's green (the time its red does not block, after the
+ * start-up loss and extension of green) is wrapped onto one cycle and stored
+ * in a leaf of a balanced binary tree. Every internal node holds the
+ * intersection of its two children, so the root is the time that is green at
+ * every intersection. Shifting one intersection only rebuilds its leaf and
+ * the nodes above it, which is O(log n) merges instead of re-normalizing the
+ * whole corridor. Reading the bands then only intersects the root with the
+ * first intersection's green.
+ * <p>
+ * Leaves are circular sets on their own intersection's cycle, and a node
+ * holds its children repeated out to the period they share, so a corridor
+ * with half or double cycled intersections only pays for the longer period
+ * in the nodes above them. The root's set is then unrolled across the
+ * first intersection's greens over the hyperperiod.
+ * <p>
+ * An index is meant to be owned by one thread (Corridor keeps one for the FX
+ * thread). Use {@link #toSpec()} to hand a snapshot to another thread.
+ */
+public final class BandIndex {
+
+    private final CorridorSpec base;
+    private final int size;
+    private final int leaves;
+
+    private final double[] offsetIn;
+    private final double[] offsetOut;
+    private final double[] travelTime;
+    private final double[] travelSpread;
+
+    private final IntervalSet[] treeIn;
+    private final IntervalSet[] treeOut;
+    //the period each node's set repeats with
+    private final double[] periodIn;
+    private final double[] periodOut;
+
+    /**
+     * builds the index for a corridor
+     *
+     * @param spec the corridor
+     */
+    public BandIndex(CorridorSpec spec) {
+        this.base = spec;
+        this.size = spec.size();
+        int leaves = 1;
+        while (leaves < size) {
+            leaves *= 2;
+        }
+        this.leaves = leaves;
+        offsetIn = new double[size];
+        offsetOut = new double[size];
+        travelTime = new double[size];
+        travelSpread = new double[size];
+        treeIn = new IntervalSet[2 * leaves];
+        treeOut = new IntervalSet[2 * leaves];
+        periodIn = new double[2 * leaves];
+        periodOut = new double[2 * leaves];
+        IntervalSet fullCycle = IntervalSet.of(0, spec.getCycleLen());
+        for (int i = 0; i < leaves; i++) {
+            periodIn[leaves + i] = i < size ? spec.getWindowsIn().getCycleLen(i)
+                    : spec.getCycleLen();
+            periodOut[leaves + i] = i < size ? spec.getWindowsOut().getCycleLen(i)
+                    : spec.getCycleLen();
+            if (i < size) {
+                offsetIn[i] = spec.getOffsetIn(i);
+                offsetOut[i] = spec.getOffsetOut(i);
+                travelTime[i] = spec.getTravelTime(i);
+                travelSpread[i] = spec.getTravelSpread(i);
+                treeIn[leaves + i] = calcGreenIn(i);
+                treeOut[leaves + i] = calcGreenOut(i);
+            } else {
+                treeIn[leaves + i] = fullCycle;
+                treeOut[leaves + i] = fullCycle;
+            }
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            merge(node);
+        }
+    }
+
+    /**
+     * rebuilds a node from its two children
+     */
+    private void merge(int node) {
+        int left = 2 * node;
+        int right = left + 1;
+        periodIn[node] = GreenTable.commonPeriod(periodIn[left], periodIn[right]);
+        periodOut[node] = GreenTable.commonPeriod(periodOut[left], periodOut[right]);
+        treeIn[node] = repeat(treeIn[left], periodIn[left], periodIn[node])
+                .intersect(repeat(treeIn[right], periodIn[right], periodIn[node]));
+        treeOut[node] = repeat(treeOut[left], periodOut[left], periodOut[node])
+                .intersect(repeat(treeOut[right], periodOut[right], periodOut[node]));
+    }
+
+    /**
+     * @return a circular set on [0, period) as the same set on the longer
+     * circle [0, newPeriod)
+     */
+    private static IntervalSet repeat(IntervalSet set, double period, double newPeriod) {
+        if (period == newPeriod) {
+            return set;
+        }
+        return IntervalSet.of(0, newPeriod).intersect(set.unroll(period, 0, newPeriod));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * shifts the inbound and outbound cycles of one intersection by the same
+     * delta, the same way dragging its slider does, and updates the path
+     * from its leaf to the root
+     *
+     * @param index the index of the intersection
+     * @param delta the shift in seconds
+     */
+    public void shift(int index, double delta) {
+        offsetIn[index] += delta;
+        offsetOut[index] += delta;
+        int node = leaves + index;
+        treeIn[node] = calcGreenIn(index);
+        treeOut[node] = calcGreenOut(index);
+        for (node /= 2; node > 0; node /= 2) {
+            merge(node);
+        }
+    }
+
+    /**
+     * moves the travel time of every intersection from one on by the same
+     * delta, which is what changing the speed of a single link does (see
+     * {@link TravelTimes}). Only the leaves of those intersections and the
+     * nodes above them are rebuilt
+     *
+     * @param from        the index of the first intersection that moves
+     * @param delta       the change in travel time in seconds
+     * @param spreadDelta the change in travel time spread, for an index built
+     *                    for a range of speeds
+     */
+    public void retime(int from, double delta, double spreadDelta) {
+        if (from >= size) {
+            return;
+        }
+        for (int i = from; i < size; i++) {
+            travelTime[i] += delta;
+            travelSpread[i] += spreadDelta;
+            treeIn[leaves + i] = calcGreenIn(i);
+            treeOut[leaves + i] = calcGreenOut(i);
+        }
+        for (int lo = (leaves + from) / 2, hi = (leaves + size - 1) / 2; hi > 0;
+             lo /= 2, hi /= 2) {
+            for (int node = lo; node <= hi; node++) {
+                merge(node);
+            }
+        }
+    }
+
+    /**
+     * @return the current inbound and outbound bands
+     */
+    public BandResult getBands() {
+        if (size == 0) {
+            return new BandResult(BandWindows.EMPTY, BandWindows.EMPTY);
+        }
+        BandWindows outbound = clip(treeOut[1], periodOut[1], offsetOut[0],
+                base.getWindowsOut());
+        BandWindows inbound = clip(treeIn[1], periodIn[1], offsetIn[0], base.getWindowsIn())
+                .shift(base.getCycleLen());
+        return new BandResult(inbound, outbound);
+    }
+
+    /**
+     * computes how the bandwidth in each direction would change if one
+     * intersection were shifted anywhere in the next cycle. The green shared
+     * by every other intersection comes straight out of the tree (the
+     * siblings along the intersection's path to the root), so this costs
+     * O(log n) merges plus a sweep over the resulting windows
+     *
+     * @param index the index of the intersection being moved
+     * @return the bandwidth profile of that intersection, or null if the
+     * intersections do not all run the system cycle
+     */
+    public OffsetProfile profile(int index) {
+        if (!base.isSingleCycle()) {
+            return null;
+        }
+        double cycleLen = base.getCycleLen();
+        double[][] inbound = profile(index, treeIn, offsetIn[0],
+                base.getWindowsIn().getSpan(0));
+        double[][] outbound = profile(index, treeOut, offsetOut[0],
+                base.getWindowsOut().getSpan(0));
+        return OffsetProfile.combine(cycleLen, inbound, outbound);
+    }
+
+    private double[][] profile(int index, IntervalSet[] tree, double firstOffset,
+                               double firstSpan) {
+        double cycleLen = base.getCycleLen();
+        IntervalSet others = IntervalSet.of(0, cycleLen);
+        for (int node = leaves + index; node > 1; node /= 2) {
+            others = others.intersect(tree[node ^ 1]);
+        }
+        IntervalSet moving = tree[leaves + index];
+        double greenStart = firstOffset + base.getStartUpLoss();
+        double greenEnd = firstOffset + firstSpan + base.getExtOfGreen();
+        IntervalSet firstWindow = IntervalSet.of(greenStart, greenEnd);
+        if (index == 0) {
+            //the first intersection's green window moves along with it
+            IntervalSet sliding = firstWindow.intersect(moving.unroll(cycleLen, greenStart,
+                    greenEnd));
+            IntervalSet fixed = others.unroll(cycleLen, greenStart, greenEnd + cycleLen);
+            return OffsetProfile.slide(fixed, sliding, cycleLen);
+        }
+        IntervalSet fixed = firstWindow.intersect(others.unroll(cycleLen, greenStart, greenEnd));
+        IntervalSet sliding = moving.unroll(cycleLen, greenStart - cycleLen, greenEnd);
+        return OffsetProfile.slide(fixed, sliding, cycleLen);
+    }
+
+    /**
+     * @return an immutable snapshot of the corridor as it currently stands
+     */
+    public CorridorSpec toSpec() {
+        double[] deltas = new double[size];
+        double[] latest = new double[size];
+        for (int i = 0; i < size; i++) {
+            deltas[i] = offsetOut[i] - base.getOffsetOut(i);
+            latest[i] = travelTime[i] + travelSpread[i];
+        }
+        return base.shiftOffsets(deltas).withTravelTimes(travelTime, latest);
+    }
+
+    /**
+     * intersects the circular green common to every intersection with the
+     * (un-shifted) green of the first intersection, repeated over the
+     * hyperperiod. The first intersection's own leaf already removes the
+     * reds between its windows, so the span of its windows is clipped as one
+     */
+    private BandWindows clip(IntervalSet commonGreen, double commonPeriod, double firstOffset,
+                             GreenTable windows) {
+        double greenStart = firstOffset + base.getStartUpLoss();
+        double greenEnd = firstOffset + windows.getSpan(0) + base.getExtOfGreen();
+        if (!(greenStart < greenEnd)) {
+            return BandWindows.EMPTY;
+        }
+        double firstPeriod = windows.getCycleLen(0);
+        double last = greenEnd + base.getHyperperiod() - firstPeriod;
+        return IntervalSet.of(greenStart, last)
+                .intersect(IntervalSet.of(greenStart, greenEnd).unroll(firstPeriod, greenStart,
+                        last))
+                .intersect(commonGreen.unroll(commonPeriod, greenStart, last))
+                .toWindows();
+    }
+
+    private IntervalSet calcGreenOut(int i) {
+        return usableGreen(offsetOut[i] - travelTime[i], base.getWindowsOut(), i,
+                travelSpread[i], 0);
+    }
+
+    private IntervalSet calcGreenIn(int i) {
+        return usableGreen(offsetIn[i] + travelTime[i], base.getWindowsIn(), i, 0,
+                travelSpread[i]);
+    }
+
+    /**
+     * computes the part of one cycle that is not blocked by the red regions
+     * of an (already shifted) cycle, one before each of its green windows,
+     * with the reds widened by earlier and later when the spec covers a
+     * range of speeds
+     */
+    private IntervalSet usableGreen(double shiftedOffset, GreenTable windows, int i,
+                                    double earlier, double later) {
+        double cycleLen = windows.getCycleLen(i);
+        double offset = BandEngine.mod(shiftedOffset, cycleLen);
+        int count = windows.getCount(i);
+        double[] redStarts = new double[count];
+        double[] redEnds = new double[count];
+        for (int r = 0; r < count; r++) {
+            int w = windows.getFirst(i) + r;
+            redStarts[r] = offset + windows.getRedStart(w) - earlier + base.getExtOfGreen();
+            redEnds[r] = offset + windows.getStart(w) + later + base.getStartUpLoss();
+        }
+        IntervalSet fullCycle = IntervalSet.of(0, cycleLen);
+        return fullCycle.subtract(IntervalSet.wrap(redStarts, redEnds, count, cycleLen));
+    }
+}
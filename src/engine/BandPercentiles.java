@@ -0,0 +1,140 @@
+package engine;
+
+/**
+ * The spread of bandwidths found by {@link RobustnessAnalysis}. Samples are
+ * kept as histograms with {@link #RESOLUTION} wide bins rather than one by
+ * one, so millions of them take no more memory than a few, and a percentile
+ * is read to within that resolution.
+ */
+public final class BandPercentiles {
+
+    //the width of a histogram bin, in seconds
+    public static final double RESOLUTION = 0.05;
+
+    private final long[] inbound;
+    private final long[] outbound;
+    private final long[] total;
+    private final double nominalInbound;
+    private final double nominalOutbound;
+    private long samples;
+
+    /**
+     * @param maxWidth        the widest a band can be in one direction
+     * @param nominalInbound  the inbound bandwidth with no perturbation
+     * @param nominalOutbound the outbound bandwidth with no perturbation
+     */
+    BandPercentiles(double maxWidth, double nominalInbound, double nominalOutbound) {
+        int bins = bin(Math.max(maxWidth, 0)) + 2;
+        inbound = new long[bins];
+        outbound = new long[bins];
+        total = new long[2 * bins];
+        this.nominalInbound = nominalInbound;
+        this.nominalOutbound = nominalOutbound;
+    }
+
+    private static int bin(double width) {
+        return (int) (width / RESOLUTION);
+    }
+
+    /**
+     * records one sample
+     */
+    void add(double inboundWidth, double outboundWidth) {
+        inbound[Math.min(bin(inboundWidth), inbound.length - 1)]++;
+        outbound[Math.min(bin(outboundWidth), outbound.length - 1)]++;
+        total[Math.min(bin(inboundWidth + outboundWidth), total.length - 1)]++;
+        samples++;
+    }
+
+    /**
+     * adds every sample of another set, which must have been made for the
+     * same corridor, to this one
+     */
+    void merge(BandPercentiles other) {
+        for (int b = 0; b < inbound.length; b++) {
+            inbound[b] += other.inbound[b];
+            outbound[b] += other.outbound[b];
+        }
+        for (int b = 0; b < total.length; b++) {
+            total[b] += other.total[b];
+        }
+        samples += other.samples;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public double getNominalInbound() {
+        return nominalInbound;
+    }
+
+    public double getNominalOutbound() {
+        return nominalOutbound;
+    }
+
+    /**
+     * @param p a fraction in [0, 1]
+     * @return the inbound bandwidth that a fraction p of samples are at or
+     * below
+     */
+    public double getInbound(double p) {
+        return percentile(inbound, p);
+    }
+
+    /**
+     * @param p a fraction in [0, 1]
+     * @return the outbound bandwidth that a fraction p of samples are at or
+     * below
+     */
+    public double getOutbound(double p) {
+        return percentile(outbound, p);
+    }
+
+    /**
+     * @param p a fraction in [0, 1]
+     * @return the two way bandwidth that a fraction p of samples are at or
+     * below
+     */
+    public double getTotal(double p) {
+        return percentile(total, p);
+    }
+
+    /**
+     * the robustness score of the plan: the two way bandwidth that nine
+     * cycles in ten do at least as well as, over the two way bandwidth of the
+     * plan as timed, both read to the same resolution. 1 means variability
+     * costs the plan nothing
+     *
+     * @return the score, or NaN if the plan has no band to begin with
+     */
+    public double getScore() {
+        double nominal = bin(nominalInbound + nominalOutbound) * RESOLUTION;
+        return nominal > 0 ? Math.min(getTotal(0.1) / nominal, 1) : Double.NaN;
+    }
+
+    /**
+     * @return the lower edge of the bin holding the sample at fraction p
+     */
+    private double percentile(long[] histogram, double p) {
+        if (samples == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.max(0, Math.min(p, 1)) * samples));
+        long seen = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            seen += histogram[b];
+            if (seen >= rank) {
+                return b * RESOLUTION;
+            }
+        }
+        return (histogram.length - 1) * RESOLUTION;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OBD p10 %.1f p50 %.1f, IBD p10 %.1f p50 %.1f, score %.2f",
+                getOutbound(0.1), getOutbound(0.5), getInbound(0.1), getInbound(0.5),
+                getScore());
+    }
+}
@@ -0,0 +1,28 @@
+package engine;
+
+/**
+ * The inbound and outbound band windows computed for a single corridor
+ */
+public final class BandResult {
+
+    private final BandWindows inbound;
+    private final BandWindows outbound;
+
+    public BandResult(BandWindows inbound, BandWindows outbound) {
+        this.inbound = inbound;
+        this.outbound = outbound;
+    }
+
+    public BandWindows getInbound() {
+        return inbound;
+    }
+
+    public BandWindows getOutbound() {
+        return outbound;
+    }
+
+    @Override
+    public String toString() {
+        return "{IBD: " + inbound + " OBD: " + outbound + "}";
+    }
+}
@@ -0,0 +1,95 @@
+package engine;
+
+/**
+ * An immutable, sorted list of disjoint band windows for one direction.
+ * Windows are kept track of as [start, end] pairs along the dist = 0 axis,
+ * the same way Corridor keeps track of its band ranges.
+ */
+public final class BandWindows {
+
+    public static final BandWindows EMPTY = new BandWindows(new double[0], new double[0], 0);
+
+    private final double[] starts;
+    private final double[] ends;
+
+    /**
+     * creates a set of windows from the first count entries of the inputted
+     * arrays. The arrays are copied
+     *
+     * @param starts the window start times in increasing order
+     * @param ends   the window end times
+     * @param count  the number of windows
+     */
+    public BandWindows(double[] starts, double[] ends, int count) {
+        this.starts = new double[count];
+        this.ends = new double[count];
+        System.arraycopy(starts, 0, this.starts, 0, count);
+        System.arraycopy(ends, 0, this.ends, 0, count);
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public double getStart(int i) {
+        return starts[i];
+    }
+
+    public double getEnd(int i) {
+        return ends[i];
+    }
+
+    public double getWidth(int i) {
+        return ends[i] - starts[i];
+    }
+
+    /**
+     * @return the sum of the widths of all of the windows
+     */
+    public double totalWidth() {
+        double result = 0;
+        for (int i = 0; i < starts.length; i++) {
+            result += ends[i] - starts[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the width of the widest window, or 0 if there are no windows
+     */
+    public double maxWidth() {
+        double result = 0;
+        for (int i = 0; i < starts.length; i++) {
+            result = Math.max(result, ends[i] - starts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * output a new set of windows that is this set shifted by delta
+     *
+     * @param delta the amount of shift
+     * @return a new, shifted BandWindows
+     */
+    public BandWindows shift(double delta) {
+        double[] newStarts = new double[starts.length];
+        double[] newEnds = new double[ends.length];
+        for (int i = 0; i < starts.length; i++) {
+            newStarts[i] = starts[i] + delta;
+            newEnds[i] = ends[i] + delta;
+        }
+        return new BandWindows(newStarts, newEnds, starts.length);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < starts.length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append("[").append(starts[i]).append(", ").append(ends[i]).append("]");
+        }
+        return result.append("]").toString();
+    }
+}
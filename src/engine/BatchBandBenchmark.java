@@ -0,0 +1,107 @@
+package engine;
+
+import java.util.Random;
+
+/**
+ * Times {@link BatchBandEngine} against the scalar path it replaces,
+ * {@link BandEngine#compute(CorridorSpec)} on a shifted snapshot per plan,
+ * on random corridors and plans from a fixed seed. Every plan's bandwidths
+ * are also compared between the two, so a speedup that comes from a wrong
+ * answer shows up as a large difference.
+ * <p>
+ * Run it with the number of intersections of each corridor to time, for
+ * example {@code java -cp out engine.BatchBandBenchmark 10 50}. With no
+ * arguments it times 10 and 50 intersections.
+ */
+public final class BatchBandBenchmark {
+
+    private static final long SEED = 5;
+    //candidates per batch
+    private static final int CANDIDATES = 4096;
+    //rounds run before timing starts, so both paths are compiled
+    private static final int WARMUP = 10;
+    private static final int ROUNDS = 10;
+    private static final double CYCLE_LEN = 100;
+    private static final double SPEED = 40;
+
+    private BatchBandBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{10, 50} : new int[args.length];
+        for (int s = 0; s < args.length; s++) {
+            sizes[s] = Integer.parseInt(args[s]);
+        }
+        Random random = new Random(SEED);
+        for (int size : sizes) {
+            run(random, size);
+        }
+    }
+
+    /**
+     * times one random corridor and prints the time per candidate of both
+     * paths, the speedup and the largest difference in bandwidth
+     */
+    private static void run(Random random, int size) {
+        CorridorSpec spec = randomCorridor(random, size);
+        CandidateBatch batch = new CandidateBatch(size, CANDIDATES);
+        double[][] plans = new double[CANDIDATES][];
+        for (int k = 0; k < CANDIDATES; k++) {
+            for (int i = 0; i < size; i++) {
+                batch.setDelta(k, i, random.nextDouble() * CYCLE_LEN);
+            }
+            plans[k] = batch.getPlan(k);
+        }
+        BatchBandEngine engine = new BatchBandEngine(spec);
+        double[] inbound = new double[CANDIDATES];
+        double[] outbound = new double[CANDIDATES];
+        long batchTime = 0;
+        long scalarTime = 0;
+        double worst = 0;
+        for (int round = 0; round < WARMUP + ROUNDS; round++) {
+            long start = System.nanoTime();
+            engine.evaluate(batch, inbound, outbound);
+            long middle = System.nanoTime();
+            for (int k = 0; k < CANDIDATES; k++) {
+                BandResult result = BandEngine.compute(spec.shiftOffsets(plans[k]));
+                worst = Math.max(worst, Math.abs(inbound[k] - result.getInbound().totalWidth()));
+                worst = Math.max(worst, Math.abs(outbound[k]
+                                                 - result.getOutbound().totalWidth()));
+            }
+            long end = System.nanoTime();
+            if (round >= WARMUP) {
+                batchTime += middle - start;
+                scalarTime += end - middle;
+            }
+        }
+        double perBatch = (double) batchTime / ROUNDS / CANDIDATES;
+        double perScalar = (double) scalarTime / ROUNDS / CANDIDATES;
+        System.out.printf("%d intersections: batch %.0f ns, scalar %.0f ns per candidate "
+                          + "(%.1fx), largest difference %.1e s%n", size, perBatch, perScalar,
+                perScalar / perBatch, worst);
+    }
+
+    /**
+     * @return a corridor with random distances, splits and offsets
+     */
+    private static CorridorSpec randomCorridor(Random random, int size) {
+        double[] dist = new double[size];
+        double[] offsetIn = new double[size];
+        double[] redIn = new double[size];
+        double[] greenIn = new double[size];
+        double[] offsetOut = new double[size];
+        double[] redOut = new double[size];
+        double[] greenOut = new double[size];
+        for (int i = 0; i < size; i++) {
+            dist[i] = i == 0 ? 0 : dist[i - 1] + 100 + random.nextInt(1500);
+            greenIn[i] = 10 + random.nextInt((int) CYCLE_LEN - 20);
+            redIn[i] = CYCLE_LEN - greenIn[i];
+            greenOut[i] = 10 + random.nextInt((int) CYCLE_LEN - 20);
+            redOut[i] = CYCLE_LEN - greenOut[i];
+            offsetIn[i] = random.nextDouble() * CYCLE_LEN;
+            offsetOut[i] = random.nextDouble() * CYCLE_LEN;
+        }
+        return new CorridorSpec(CYCLE_LEN, 2, 1, dist, CorridorSpec.travelTimes(dist, SPEED),
+                offsetIn, redIn, greenIn, offsetOut, redOut, greenOut);
+    }
+}
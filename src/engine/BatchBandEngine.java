@@ -0,0 +1,278 @@
+package engine;
+
+/**
+ * Evaluates the bandwidth of a whole {@link CandidateBatch} of offset plans
+ * at once. The result for each plan is the same total band width that
+ * {@link BandEngine} gives for the corridor shifted by that plan, including
+ * the start-up loss and extension of green.
+ * <p>
+ * The work is done in two passes. The first goes one red at a time and, for
+ * every candidate in a tight loop over contiguous memory, places that red
+ * relative to the candidate's first green. Intersections with several
+ * green windows have a red before each, taken from the spec's
+ * {@link GreenTable}s, and each red moves with its intersection's delta. That
+ * loop has no branches or calls, so the JIT is free to vectorize it. The
+ * second pass goes one candidate at a time and sweeps its red pieces out of
+ * the first green. Nothing is allocated per candidate.
+ * <p>
+ * Cycles have to be the system cycle length long (red + green = cycleLen),
+ * which is how every Intersection is built unless it is half or double
+ * cycled (see {@link CorridorSpec#isSingleCycle()}). Other corridors are
+ * rejected; {@link BitsetBandEngine} evaluates them across the hyperperiod.
+ * <p>
+ * The engine is immutable and can be shared between threads.
+ */
+public final class BatchBandEngine {
+
+    private final CorridorSpec spec;
+    private final int size;
+    private final double cycleLen;
+
+    //where each red starts before any candidate shift, how long it is and whose it is
+    private final double[] redStartIn;
+    private final double[] redStartOut;
+    private final double[] redLengthIn;
+    private final double[] redLengthOut;
+    private final int[] ownerIn;
+    private final int[] ownerOut;
+
+    /**
+     * prepares a corridor for batch evaluation
+     *
+     * @param spec the corridor. Offsets in it are the zero point that
+     *             candidate deltas are applied to
+     * @throws IllegalArgumentException if some intersection is half or
+     *                                  double cycled
+     */
+    public BatchBandEngine(CorridorSpec spec) {
+        if (!spec.isSingleCycle()) {
+            throw new IllegalArgumentException("every intersection needs the system cycle length");
+        }
+        this.spec = spec;
+        this.size = spec.size();
+        this.cycleLen = spec.getCycleLen();
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        GreenTable windowsIn = spec.getWindowsIn();
+        GreenTable windowsOut = spec.getWindowsOut();
+        redStartIn = new double[windowsIn.getWindowCount()];
+        redStartOut = new double[windowsOut.getWindowCount()];
+        redLengthIn = new double[redStartIn.length];
+        redLengthOut = new double[redStartOut.length];
+        ownerIn = new int[redStartIn.length];
+        ownerOut = new int[redStartOut.length];
+        for (int i = 0; i < size; i++) {
+            double spread = spec.getTravelSpread(i);
+            for (int w = windowsIn.getFirst(i); w < windowsIn.getFirst(i + 1); w++) {
+                redStartIn[w] = spec.getOffsetIn(i) + spec.getTravelTime(i)
+                                + windowsIn.getRedStart(w) + ext;
+                redLengthIn[w] = windowsIn.getStart(w) - windowsIn.getRedStart(w) + spread + sul
+                                 - ext;
+                ownerIn[w] = i;
+            }
+            for (int w = windowsOut.getFirst(i); w < windowsOut.getFirst(i + 1); w++) {
+                redStartOut[w] = spec.getOffsetOut(i) - spec.getTravelTime(i) - spread
+                                 + windowsOut.getRedStart(w) + ext;
+                redLengthOut[w] = windowsOut.getStart(w) - windowsOut.getRedStart(w) + spread
+                                  + sul - ext;
+                ownerOut[w] = i;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * scratch space for evaluating batches of up to a given number of plans.
+     * Each thread evaluating at the same time needs its own
+     */
+    public static final class Scratch {
+
+        private final double[] relative;
+        private final double[] starts;
+        private final double[] ends;
+
+        private Scratch(int reds, int count, int repeats) {
+            relative = new double[reds * count];
+            starts = new double[reds * repeats];
+            ends = new double[reds * repeats];
+        }
+    }
+
+    /**
+     * @param count the number of plans in the batches that will be evaluated
+     * @return a new Scratch for this engine
+     */
+    public Scratch newScratch(int count) {
+        if (size == 0) {
+            return new Scratch(0, 0, 0);
+        }
+        double longest = Math.max(spec.getWindowsIn().getSpan(0), spec.getWindowsOut().getSpan(0))
+                         + spec.getExtOfGreen() - spec.getStartUpLoss();
+        int repeats = (int) Math.ceil(Math.max(longest, 0) / cycleLen) + 1;
+        return new Scratch(Math.max(redStartIn.length, redStartOut.length), count, repeats);
+    }
+
+    /**
+     * evaluates every plan in a batch
+     *
+     * @param batch    the candidate plans. Must have one delta per
+     *                 intersection of this engine's corridor
+     * @param inbound  receives the inbound band width of each plan
+     * @param outbound receives the outbound band width of each plan
+     */
+    public void evaluate(CandidateBatch batch, double[] inbound, double[] outbound) {
+        evaluate(batch, batch.getCount(), newScratch(batch.getCount()), inbound, outbound, null,
+                null);
+    }
+
+    /**
+     * evaluates the first count plans in a batch and also finds where the
+     * widest band window of each starts. Starts are on the dist = 0 axis,
+     * the same as {@link BandEngine}, and are NaN when there is no band
+     *
+     * @param batch         the candidate plans. Must have one delta per
+     *                      intersection of this engine's corridor
+     * @param count         the number of plans to evaluate
+     * @param scratch       scratch from {@link #newScratch(int)} for at
+     *                      least batch.getCount() plans
+     * @param inbound       receives the inbound band width of each plan
+     * @param outbound      receives the outbound band width of each plan
+     * @param inboundStart  receives the start of each plan's widest inbound
+     *                      window, or null to skip it
+     * @param outboundStart receives the start of each plan's widest
+     *                      outbound window, or null to skip it
+     */
+    public void evaluate(CandidateBatch batch, int count, Scratch scratch, double[] inbound,
+                         double[] outbound, double[] inboundStart, double[] outboundStart) {
+        if (batch.size() != size) {
+            throw new IllegalArgumentException("expected plans for " + size + " intersections");
+        }
+        if (size == 0) {
+            for (int k = 0; k < count; k++) {
+                inbound[k] = 0;
+                outbound[k] = 0;
+                if (inboundStart != null) {
+                    inboundStart[k] = Double.NaN;
+                }
+                if (outboundStart != null) {
+                    outboundStart[k] = Double.NaN;
+                }
+            }
+            return;
+        }
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        double windowStartIn = spec.getOffsetIn(0) + sul;
+        double windowStartOut = spec.getOffsetOut(0) + sul;
+        evaluate(batch, count, windowStartIn, spec.getWindowsIn().getSpan(0) + ext - sul,
+                redStartIn, redLengthIn, ownerIn, scratch, inbound, inboundStart);
+        evaluate(batch, count, windowStartOut, spec.getWindowsOut().getSpan(0) + ext - sul,
+                redStartOut, redLengthOut, ownerOut, scratch, outbound, outboundStart);
+        //place the widest windows the way BandEngine does, inbound a cycle later
+        double[] deltas = batch.getDeltas();
+        for (int k = 0; inboundStart != null && k < count; k++) {
+            inboundStart[k] += windowStartIn + deltas[k] + cycleLen;
+        }
+        for (int k = 0; outboundStart != null && k < count; k++) {
+            outboundStart[k] += windowStartOut + deltas[k];
+        }
+    }
+
+    /**
+     * @param windowStart  the start of the first intersection's green before
+     *                     any shift
+     * @param windowLength the length of the first intersection's greens,
+     *                     from the start of the first to the end of the last
+     * @param owners       the intersection each red belongs to
+     * @param widestStart  receives where the widest window starts after the
+     *                     window start, or null
+     */
+    private void evaluate(CandidateBatch batch, int count, double windowStart,
+                          double windowLength, double[] redStarts, double[] redLengths,
+                          int[] owners, Scratch scratch, double[] result,
+                          double[] widestStart) {
+        int stride = batch.getCount();
+        double[] deltas = batch.getDeltas();
+        double[] relative = scratch.relative;
+        if (!(windowLength > 0)) {
+            for (int k = 0; k < count; k++) {
+                result[k] = 0;
+                if (widestStart != null) {
+                    widestStart[k] = Double.NaN;
+                }
+            }
+            return;
+        }
+        //pass one: each red relative to the window, in [0, cycleLen)
+        for (int r = 0; r < redStarts.length; r++) {
+            double base = redStarts[r] - windowStart;
+            int row = r * stride;
+            int ownerRow = owners[r] * stride;
+            for (int k = 0; k < count; k++) {
+                double x = base + deltas[ownerRow + k] - deltas[k];
+                relative[row + k] = x - cycleLen * Math.floor(x / cycleLen);
+            }
+        }
+        //pass two: sweep each candidate's reds out of the window
+        for (int k = 0; k < count; k++) {
+            result[k] = openTime(relative, k, stride, redLengths, windowLength, scratch,
+                    widestStart);
+        }
+    }
+
+    /**
+     * @return how much of [0, windowLength] is not covered by candidate k's
+     * reds
+     */
+    private double openTime(double[] relative, int k, int stride, double[] redLengths,
+                            double windowLength, Scratch scratch, double[] widestStart) {
+        double[] starts = scratch.starts;
+        double[] ends = scratch.ends;
+        if (widestStart != null) {
+            widestStart[k] = Double.NaN;
+        }
+        //reds that wrap past the end of the cycle cover the start of the window
+        double coveredFromZero = 0;
+        int pieces = 0;
+        for (int r = 0; r < redLengths.length; r++) {
+            double length = redLengths[r];
+            if (!(length > 0)) {
+                continue;
+            }
+            if (length >= cycleLen) {
+                return 0;
+            }
+            for (double start = relative[r * stride + k] - cycleLen; start < windowLength;
+                 start += cycleLen) {
+                double end = Math.min(start + length, windowLength);
+                if (start <= 0) {
+                    coveredFromZero = Math.max(coveredFromZero, end);
+                } else {
+                    starts[pieces] = start;
+                    ends[pieces++] = end;
+                }
+            }
+        }
+        IntervalSet.sort(starts, ends, 0, pieces - 1);
+        double open = 0;
+        double widest = IntervalSet.EPSILON;
+        double cursor = coveredFromZero;
+        for (int p = 0; p <= pieces; p++) {
+            double gapEnd = p < pieces ? starts[p] : windowLength;
+            if (gapEnd > cursor) {
+                open += gapEnd - cursor;
+                if (widestStart != null && gapEnd - cursor > widest) {
+                    widest = gapEnd - cursor;
+                    widestStart[k] = cursor;
+                }
+            }
+            if (p < pieces) {
+                cursor = Math.max(cursor, ends[p]);
+            }
+        }
+        return open;
+    }
+}
@@ -0,0 +1,103 @@
+package engine;
+
+/**
+ * The bandwidths and band start times of a list of offset plans, held in
+ * primitive arrays indexed the same way as the plans. Start times are the
+ * start of each plan's widest window along the dist = 0 axis and are NaN
+ * when a plan has no band in that direction.
+ */
+public final class BatchResult {
+
+    private final double[] inbound;
+    private final double[] outbound;
+    private final double[] inboundStart;
+    private final double[] outboundStart;
+
+    BatchResult(double[] inbound, double[] outbound, double[] inboundStart,
+                double[] outboundStart) {
+        this.inbound = inbound;
+        this.outbound = outbound;
+        this.inboundStart = inboundStart;
+        this.outboundStart = outboundStart;
+    }
+
+    /**
+     * copies the results of count plans in, starting at plan from
+     */
+    void fill(int from, int count, double[] inbound, double[] outbound, double[] inboundStart,
+              double[] outboundStart) {
+        System.arraycopy(inbound, 0, this.inbound, from, count);
+        System.arraycopy(outbound, 0, this.outbound, from, count);
+        System.arraycopy(inboundStart, 0, this.inboundStart, from, count);
+        System.arraycopy(outboundStart, 0, this.outboundStart, from, count);
+    }
+
+    /**
+     * @return the number of plans
+     */
+    public int size() {
+        return inbound.length;
+    }
+
+    public double getInbound(int i) {
+        return inbound[i];
+    }
+
+    public double getOutbound(int i) {
+        return outbound[i];
+    }
+
+    public double getTotal(int i) {
+        return inbound[i] + outbound[i];
+    }
+
+    public double getInboundStart(int i) {
+        return inboundStart[i];
+    }
+
+    public double getOutboundStart(int i) {
+        return outboundStart[i];
+    }
+
+    /**
+     * @return a copy of every plan's inbound bandwidth
+     */
+    public double[] getInbound() {
+        return inbound.clone();
+    }
+
+    /**
+     * @return a copy of every plan's outbound bandwidth
+     */
+    public double[] getOutbound() {
+        return outbound.clone();
+    }
+
+    /**
+     * @return a copy of the start of every plan's widest inbound window
+     */
+    public double[] getInboundStart() {
+        return inboundStart.clone();
+    }
+
+    /**
+     * @return a copy of the start of every plan's widest outbound window
+     */
+    public double[] getOutboundStart() {
+        return outboundStart.clone();
+    }
+
+    /**
+     * @return the index of the plan with the most total bandwidth, or -1 if
+     * there are no plans. Ties go to the earliest plan
+     */
+    public int best() {
+        int best = -1;
+        for (int i = 0; i < inbound.length; i++) {
+            if (best < 0 || getTotal(i) > getTotal(best) + IntervalSet.EPSILON) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,328 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * An approximate band engine for bulk plan evaluation. The hyperperiod (the
+ * system cycle unless some intersection is half or double cycled) is cut
+ * into equal slots and the band becomes a long[] bitset: the first
+ * intersection's greens are set, then the red before every green window of
+ * every intersection is cleared, once per repeat of that intersection's own
+ * cycle across the hyperperiod. Shifting a cycle by its travel time and by a
+ * candidate offset is just moving where its reds start (a rotation of the
+ * bitset), and the bandwidth is a popcount of what is left. With a 100 s
+ * cycle at 0.1 s slots that is 16 words per direction.
+ * <p>
+ * Error bound: the slot width actually used is
+ * {@link #getResolution()} = hyperperiod / ceil(hyperperiod / resolution),
+ * which is never wider than the resolution asked for. Each run starts at the
+ * slot nearest to its exact start and is rounded to a whole number of slots,
+ * so each run end is within one slot width of exact. Every edge of a band
+ * window is the edge of one of these runs, so each window is within two slot
+ * widths of the width {@link BandEngine} reports (see
+ * {@link #getErrorBound()}). The bandwidth reported is the total width of
+ * all band windows in a direction, the same as
+ * {@link BandWindows#totalWidth()}.
+ * <p>
+ * A corridor swept across a range of speeds (see
+ * {@link CorridorSpec#getTravelSpread(int)}) has every red widened by its
+ * spread, later inbound and earlier outbound, the same as in
+ * {@link BandEngine}.
+ * <p>
+ * The engine itself is immutable and can be shared between threads. Each
+ * thread needs its own scratch array from {@link #newScratch()}.
+ */
+public final class BitsetBandEngine {
+
+    private final int size;
+    private final int slots;
+    private final int words;
+    private final double resolution;
+    private final double perSlot;
+
+    //start slot (before any candidate shift), length in slots and intersection of each red
+    private final double[] redStartIn;
+    private final double[] redStartOut;
+    private final int[] redLengthIn;
+    private final int[] redLengthOut;
+    private final int[] ownerIn;
+    private final int[] ownerOut;
+
+    //the first intersection's greens, which every band has to fit inside, one per repeat
+    private final double[] windowStartIn;
+    private final double[] windowStartOut;
+    private final int windowLengthIn;
+    private final int windowLengthOut;
+
+    /**
+     * quantizes a corridor at the given resolution
+     *
+     * @param spec       the corridor. Offsets in it are the zero point that
+     *                   candidate deltas are applied to
+     * @param resolution the widest slot to use, in seconds
+     */
+    public BitsetBandEngine(CorridorSpec spec, double resolution) {
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+        double hyperperiod = spec.getHyperperiod();
+        this.size = spec.size();
+        this.slots = (int) Math.ceil(hyperperiod / resolution);
+        this.words = (slots + 63) / 64;
+        this.resolution = hyperperiod / slots;
+        this.perSlot = slots / hyperperiod;
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        GreenTable windowsIn = spec.getWindowsIn();
+        GreenTable windowsOut = spec.getWindowsOut();
+        int redsIn = 0;
+        int redsOut = 0;
+        for (int i = 0; i < size; i++) {
+            redsIn += windowsIn.getCount(i) * repeats(hyperperiod, windowsIn.getCycleLen(i));
+            redsOut += windowsOut.getCount(i) * repeats(hyperperiod, windowsOut.getCycleLen(i));
+        }
+        redStartIn = new double[redsIn];
+        redStartOut = new double[redsOut];
+        redLengthIn = new int[redsIn];
+        redLengthOut = new int[redsOut];
+        ownerIn = new int[redsIn];
+        ownerOut = new int[redsOut];
+        int in = 0;
+        int out = 0;
+        for (int i = 0; i < size; i++) {
+            //a red from offset + redStart + ext to offset + start + sul. Across a range of
+            //speeds inbound reds end later and outbound reds start earlier
+            double spread = spec.getTravelSpread(i);
+            double periodIn = windowsIn.getCycleLen(i);
+            double offsetIn = spec.getOffsetIn(i) + spec.getTravelTime(i);
+            for (int k = 0; k < repeats(hyperperiod, periodIn); k++) {
+                for (int w = windowsIn.getFirst(i); w < windowsIn.getFirst(i + 1); w++) {
+                    redStartIn[in] = toStart(offsetIn + k * periodIn + windowsIn.getRedStart(w)
+                                             + ext, hyperperiod);
+                    redLengthIn[in] = toSlots(windowsIn.getStart(w) - windowsIn.getRedStart(w)
+                                              + sul - ext + spread);
+                    ownerIn[in++] = i;
+                }
+            }
+            double periodOut = windowsOut.getCycleLen(i);
+            double offsetOut = spec.getOffsetOut(i) - spec.getTravelTime(i);
+            for (int k = 0; k < repeats(hyperperiod, periodOut); k++) {
+                for (int w = windowsOut.getFirst(i); w < windowsOut.getFirst(i + 1); w++) {
+                    redStartOut[out] = toStart(offsetOut + k * periodOut
+                                               + windowsOut.getRedStart(w) + ext - spread,
+                            hyperperiod);
+                    redLengthOut[out] = toSlots(windowsOut.getStart(w)
+                                                - windowsOut.getRedStart(w) + sul - ext
+                                                + spread);
+                    ownerOut[out++] = i;
+                }
+            }
+        }
+        if (size > 0) {
+            windowStartIn = windowStarts(spec.getOffsetIn(0) + sul, windowsIn.getCycleLen(0),
+                    hyperperiod);
+            windowStartOut = windowStarts(spec.getOffsetOut(0) + sul, windowsOut.getCycleLen(0),
+                    hyperperiod);
+            windowLengthIn = toSlots(windowsIn.getSpan(0) + ext - sul);
+            windowLengthOut = toSlots(windowsOut.getSpan(0) + ext - sul);
+        } else {
+            windowStartIn = new double[0];
+            windowStartOut = new double[0];
+            windowLengthIn = 0;
+            windowLengthOut = 0;
+        }
+    }
+
+    /**
+     * @return how many cycles of a period fit in the hyperperiod
+     */
+    private static int repeats(double hyperperiod, double period) {
+        return Math.max(1, (int) Math.round(hyperperiod / period));
+    }
+
+    /**
+     * @return the start slot of the first intersection's green in each of
+     * its cycles across the hyperperiod
+     */
+    private double[] windowStarts(double start, double period, double hyperperiod) {
+        double[] result = new double[repeats(hyperperiod, period)];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = toStart(start + k * period, hyperperiod);
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the slot width actually used, in seconds
+     */
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return the most any single band window's width can be off from the
+     * exact engine, in seconds
+     */
+    public double getErrorBound() {
+        return 2 * resolution;
+    }
+
+    /**
+     * @return a scratch array big enough for one evaluation. Each thread
+     * evaluating at the same time needs its own
+     */
+    public long[] newScratch() {
+        return new long[words];
+    }
+
+    /**
+     * evaluates the bands with every intersection shifted by a delta. Nothing
+     * is allocated
+     *
+     * @param deltas  the shift of each intersection in seconds, starting at
+     *                index from
+     * @param from    the index in deltas of the first intersection's shift
+     * @param scratch a scratch array from {@link #newScratch()}
+     * @param result  receives the inbound bandwidth at index 0 and the
+     *                outbound bandwidth at index 1
+     */
+    public void evaluate(double[] deltas, int from, long[] scratch, double[] result) {
+        result[0] = band(deltas, from, scratch, windowStartIn, windowLengthIn, redStartIn,
+                redLengthIn, ownerIn);
+        result[1] = band(deltas, from, scratch, windowStartOut, windowLengthOut, redStartOut,
+                redLengthOut, ownerOut);
+    }
+
+    private double band(double[] deltas, int from, long[] bits, double[] windowStarts,
+                        int windowLength, double[] redStarts, int[] redLengths, int[] owners) {
+        if (size == 0) {
+            return 0;
+        }
+        Arrays.fill(bits, 0, words, 0L);
+        for (double windowStart : windowStarts) {
+            setRun(bits, toSlot(windowStart, deltas[from]), windowLength);
+        }
+        for (int r = 0; r < redStarts.length; r++) {
+            clearRun(bits, toSlot(redStarts[r], deltas[from + owners[r]]), redLengths[r]);
+        }
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(bits[w]);
+        }
+        return count * resolution;
+    }
+
+    /**
+     * rounds an unshifted start (in slots) plus a shift (in seconds) to the
+     * nearest slot in [0, slots)
+     */
+    private int toSlot(double start, double delta) {
+        long slot = (long) Math.floor(start + delta * perSlot + 0.5);
+        if (slot >= 0 && slot < slots) {
+            return (int) slot;
+        }
+        slot %= slots;
+        return (int) (slot < 0 ? slot + slots : slot);
+    }
+
+    private double toStart(double time, double hyperperiod) {
+        return BandEngine.mod(time, hyperperiod) * perSlot;
+    }
+
+    private int toSlots(double duration) {
+        return (int) Math.max(0, Math.min(slots, Math.round(duration / resolution)));
+    }
+
+    /**
+     * sets a run of length bits starting at start, wrapping around the end
+     * of the hyperperiod
+     */
+    private void setRun(long[] bits, int start, int length) {
+        if (length >= slots) {
+            set(bits, 0, slots);
+            return;
+        }
+        int end = start + length;
+        if (end <= slots) {
+            set(bits, start, end);
+        } else {
+            set(bits, start, slots);
+            set(bits, 0, end - slots);
+        }
+    }
+
+    /**
+     * clears a run of length bits starting at start, wrapping around the end
+     * of the hyperperiod
+     */
+    private void clearRun(long[] bits, int start, int length) {
+        if (length >= slots) {
+            clear(bits, 0, slots);
+            return;
+        }
+        int end = start + length;
+        if (end <= slots) {
+            clear(bits, start, end);
+        } else {
+            clear(bits, start, slots);
+            clear(bits, 0, end - slots);
+        }
+    }
+
+    /**
+     * sets bits [from, to). Only the words at either end need a mask
+     */
+    private static void set(long[] bits, int from, int to) {
+        if (to <= from) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        if (first == last) {
+            bits[first] |= mask(from - 64 * first, to - 64 * first);
+            return;
+        }
+        bits[first] |= mask(from - 64 * first, 64);
+        for (int w = first + 1; w < last; w++) {
+            bits[w] = -1L;
+        }
+        bits[last] |= mask(0, to - 64 * last);
+    }
+
+    /**
+     * clears bits [from, to). Only the words at either end need a mask
+     */
+    private static void clear(long[] bits, int from, int to) {
+        if (to <= from) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        if (first == last) {
+            bits[first] &= ~mask(from - 64 * first, to - 64 * first);
+            return;
+        }
+        bits[first] &= ~mask(from - 64 * first, 64);
+        for (int w = first + 1; w < last; w++) {
+            bits[w] = 0;
+        }
+        bits[last] &= ~mask(0, to - 64 * last);
+    }
+
+    /**
+     * @return a mask with bits [from, to) of one word set
+     */
+    private static long mask(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, 64);
+        if (to <= from) {
+            return 0;
+        }
+        long high = to == 64 ? -1L : (1L << to) - 1;
+        return high & (-1L << from);
+    }
+}
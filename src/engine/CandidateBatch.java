@@ -0,0 +1,87 @@
+package engine;
+
+/**
+ * A batch of candidate offset plans laid out struct-of-arrays: all of the
+ * candidates' deltas for intersection 0, then all of them for intersection
+ * 1, and so on. Loops that work on one intersection at a time then read
+ * every candidate from one contiguous run of memory.
+ * <p>
+ * A batch is a reusable buffer. Fill it, evaluate it, and fill it again.
+ */
+public final class CandidateBatch {
+
+    private final int size;
+    private final int count;
+    private final double[] deltas;
+
+    /**
+     * creates a batch of plans that are all zero (the corridor as it is)
+     *
+     * @param size  the number of intersections in each plan
+     * @param count the number of candidate plans
+     */
+    public CandidateBatch(int size, int count) {
+        this.size = size;
+        this.count = count;
+        this.deltas = new double[size * count];
+    }
+
+    /**
+     * @return the number of intersections in each plan
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of candidate plans
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param candidate    the index of the plan
+     * @param intersection the index of the intersection
+     * @return how far that plan shifts that intersection, in seconds
+     */
+    public double getDelta(int candidate, int intersection) {
+        return deltas[intersection * count + candidate];
+    }
+
+    public void setDelta(int candidate, int intersection, double delta) {
+        deltas[intersection * count + candidate] = delta;
+    }
+
+    /**
+     * copies a whole plan into the batch
+     *
+     * @param candidate the index of the plan
+     * @param plan      the shift of each intersection in seconds
+     */
+    public void setPlan(int candidate, double[] plan) {
+        for (int i = 0; i < size; i++) {
+            deltas[i * count + candidate] = plan[i];
+        }
+    }
+
+    /**
+     * @param candidate the index of the plan
+     * @return a copy of the shift of each intersection in that plan
+     */
+    public double[] getPlan(int candidate) {
+        double[] plan = new double[size];
+        for (int i = 0; i < size; i++) {
+            plan[i] = deltas[i * count + candidate];
+        }
+        return plan;
+    }
+
+    /**
+     * @return the backing array. Intersection i of candidate k is at
+     * i * getCount() + k
+     */
+    double[] getDeltas() {
+        return deltas;
+    }
+}
@@ -0,0 +1,130 @@
+package engine;
+
+/**
+ * A summary of where a corridor's intersections are: their distances as a
+ * primitive array, the smallest and largest distance, the travel time to
+ * each intersection at the progression speed (or at each link's own
+ * speed), and the chart axis bounds that follow from those. Corridor keeps
+ * one cached and only builds a new one when a distance or a speed changes.
+ */
+public final class CorridorGeometry {
+
+    private final double[] dist;
+    private final double[] travelTime;
+    private final double speed;
+    private final double minDist;
+    private final double maxDist;
+
+    /**
+     * @param dist  the distance offset of each intersection. The array is
+     *              copied
+     * @param speed the progression speed
+     */
+    public CorridorGeometry(double[] dist, double speed) {
+        this(dist, CorridorSpec.travelTimes(dist, speed), speed);
+    }
+
+    /**
+     * @param dist       the distance offset of each intersection. The array
+     *                   is copied
+     * @param travelTime the travel time to each intersection when the links
+     *                   have their own speeds (see {@link TravelTimes}). The
+     *                   array is copied
+     * @param speed      the corridor progression speed
+     */
+    public CorridorGeometry(double[] dist, double[] travelTime, double speed) {
+        this.dist = dist.clone();
+        this.travelTime = travelTime.clone();
+        this.speed = speed;
+        double min = dist.length == 0 ? 0 : Double.POSITIVE_INFINITY;
+        double max = dist.length == 0 ? 0 : Double.NEGATIVE_INFINITY;
+        for (double curr : dist) {
+            min = Math.min(min, curr);
+            max = Math.max(max, curr);
+        }
+        this.minDist = min;
+        this.maxDist = max;
+    }
+
+    public int size() {
+        return dist.length;
+    }
+
+    public double getDist(int i) {
+        return dist[i];
+    }
+
+    /**
+     * @return a copy of the distance offset of every intersection
+     */
+    public double[] getDistances() {
+        return dist.clone();
+    }
+
+    public double getTravelTime(int i) {
+        return travelTime[i];
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return the smallest distance offset, or 0 if there are no
+     * intersections
+     */
+    public double getMinDist() {
+        return minDist;
+    }
+
+    /**
+     * @return the largest distance offset, or 0 if there are no
+     * intersections
+     */
+    public double getMaxDist() {
+        return maxDist;
+    }
+
+    /**
+     * @param cycleLen the system cycle length
+     * @return the upper bound of the time axis: long enough to see a band
+     * make it to the far intersection, and at least three cycles
+     */
+    public double getAxisMaxX(double cycleLen) {
+        double maxTravelTime = dist.length == 0 ? 0 : Double.NEGATIVE_INFINITY;
+        for (double curr : travelTime) {
+            maxTravelTime = Math.max(maxTravelTime, curr);
+        }
+        double maxX = Math.max(maxTravelTime + cycleLen, 3 * cycleLen);
+        return Math.round(maxX / 10) * 10;
+    }
+
+    /**
+     * @param cycleLen the system cycle length
+     * @return the tick spacing of the time axis
+     */
+    public double getAxisScaleX(double cycleLen) {
+        return Math.round(0.1 * getAxisMaxX(cycleLen) / 10) * 10;
+    }
+
+    /**
+     * @return the lower bound of the distance axis
+     */
+    public double getAxisMinY() {
+        return Math.round(minDist / 100) * 100 - 100;
+    }
+
+    /**
+     * @return the upper bound of the distance axis
+     */
+    public double getAxisMaxY() {
+        return Math.round(maxDist / 100) * 100 + 100;
+    }
+
+    /**
+     * @return the tick spacing of the distance axis
+     */
+    public double getAxisScaleY() {
+        return Math.round(0.1 * (getAxisMaxY() - getAxisMinY()) / 100) * 100;
+    }
+}
@@ -0,0 +1,406 @@
+package engine;
+
+import java.util.List;
+
+/**
+ * An immutable description of a corridor that the band engine can work on
+ * without touching any JavaFX properties. Every per-intersection value is
+ * held in a primitive array indexed by intersection, and the arrays are
+ * copied on the way in and never handed out, so a spec can be shared freely
+ * between threads.
+ * <p>
+ * Offsets use the same reference point as {@link dataClasses.Cycle} (start
+ * of green) and travel times are the time it takes to get from the dist = 0
+ * axis to each intersection at the progression speed.
+ * <p>
+ * Each direction also has a {@link GreenTable} of green windows. It holds
+ * one window per intersection unless the spec was built from cycles with
+ * several windows, in which case the red and green arrays describe only
+ * the first window. {@link BandEngine}, {@link BandIndex},
+ * {@link BatchBandEngine} and {@link FlowProfileEngine} read the tables, and
+ * the other calculations see the first window alone.
+ * <p>
+ * An intersection may run a cycle that is a whole multiple or fraction of
+ * the system cycle (see {@link GreenTable#getCycleLen(int)}). Bands then
+ * repeat over the hyperperiod, the shortest time after which every cycle
+ * and the system cycle line up again. {@link BandEngine} and
+ * {@link BandIndex} handle such corridors, and everything else expects
+ * {@link #isSingleCycle()}.
+ */
+public final class CorridorSpec {
+
+    private final double cycleLen;
+    private final double startUpLoss;
+    private final double extOfGreen;
+
+    private final double[] dist;
+    private final double[] travelTime;
+    private final double[] travelSpread;
+
+    private final double[] offsetIn;
+    private final double[] redIn;
+    private final double[] greenIn;
+    private final double[] offsetOut;
+    private final double[] redOut;
+    private final double[] greenOut;
+
+    private final GreenTable windowsIn;
+    private final GreenTable windowsOut;
+    private final double hyperperiod;
+
+    /**
+     * creates a corridor description from per-intersection arrays. All of
+     * the arrays must be the same length
+     *
+     * @param cycleLen    the system cycle length in seconds
+     * @param startUpLoss the start-up lost time in seconds
+     * @param extOfGreen  the extension of green in seconds
+     * @param dist        the distance offset of each intersection
+     * @param travelTime  the travel time from dist = 0 to each intersection
+     * @param offsetIn    the inbound offsets (start of green)
+     * @param redIn       the inbound red times
+     * @param greenIn     the inbound green times
+     * @param offsetOut   the outbound offsets (start of green)
+     * @param redOut      the outbound red times
+     * @param greenOut    the outbound green times
+     */
+    public CorridorSpec(double cycleLen, double startUpLoss, double extOfGreen,
+                        double[] dist, double[] travelTime,
+                        double[] offsetIn, double[] redIn, double[] greenIn,
+                        double[] offsetOut, double[] redOut, double[] greenOut) {
+        this(cycleLen, startUpLoss, extOfGreen, dist, travelTime, new double[dist.length],
+                offsetIn, redIn, greenIn, offsetOut, redOut, greenOut,
+                GreenTable.single(redIn, greenIn, cycleLen),
+                GreenTable.single(redOut, greenOut, cycleLen));
+    }
+
+    private CorridorSpec(double cycleLen, double startUpLoss, double extOfGreen,
+                         double[] dist, double[] travelTime, double[] travelSpread,
+                         double[] offsetIn, double[] redIn, double[] greenIn,
+                         double[] offsetOut, double[] redOut, double[] greenOut,
+                         GreenTable windowsIn, GreenTable windowsOut) {
+        int size = dist.length;
+        if (travelTime.length != size || offsetIn.length != size || redIn.length != size
+            || greenIn.length != size || offsetOut.length != size || redOut.length != size
+            || greenOut.length != size || windowsIn.size() != size
+            || windowsOut.size() != size) {
+            throw new IllegalArgumentException("all intersection arrays must be the same length");
+        }
+        this.cycleLen = cycleLen;
+        this.startUpLoss = startUpLoss;
+        this.extOfGreen = extOfGreen;
+        this.dist = dist.clone();
+        this.travelTime = travelTime.clone();
+        this.travelSpread = travelSpread.clone();
+        this.offsetIn = offsetIn.clone();
+        this.redIn = redIn.clone();
+        this.greenIn = greenIn.clone();
+        this.offsetOut = offsetOut.clone();
+        this.redOut = redOut.clone();
+        this.greenOut = greenOut.clone();
+        this.windowsIn = windowsIn;
+        this.windowsOut = windowsOut;
+        double common = cycleLen;
+        for (int i = 0; i < size; i++) {
+            common = GreenTable.commonPeriod(common, windowsIn.getCycleLen(i));
+            common = GreenTable.commonPeriod(common, windowsOut.getCycleLen(i));
+        }
+        this.hyperperiod = common;
+    }
+
+    /**
+     * creates a corridor description from a list of immutable intersections
+     * and a single progression speed
+     *
+     * @param cycleLen      the system cycle length in seconds
+     * @param startUpLoss   the start-up lost time in seconds
+     * @param extOfGreen    the extension of green in seconds
+     * @param speed         the progression speed
+     * @param intersections the intersections, in corridor order
+     * @return a new CorridorSpec
+     */
+    public static CorridorSpec of(double cycleLen, double startUpLoss, double extOfGreen,
+                                  double speed, List<IntersectionSpec> intersections) {
+        double[] dist = new double[intersections.size()];
+        for (int i = 0; i < dist.length; i++) {
+            dist[i] = intersections.get(i).getDist();
+        }
+        return of(cycleLen, startUpLoss, extOfGreen, travelTimes(dist, speed), intersections);
+    }
+
+    /**
+     * creates a corridor description from a list of immutable intersections
+     * and the travel time to each of them, as when every link has its own
+     * speed (see {@link TravelTimes})
+     *
+     * @param cycleLen      the system cycle length in seconds
+     * @param startUpLoss   the start-up lost time in seconds
+     * @param extOfGreen    the extension of green in seconds
+     * @param travelTime    the travel time from dist = 0 to each intersection
+     * @param intersections the intersections, in corridor order
+     * @return a new CorridorSpec
+     */
+    public static CorridorSpec of(double cycleLen, double startUpLoss, double extOfGreen,
+                                  double[] travelTime, List<IntersectionSpec> intersections) {
+        int size = intersections.size();
+        double[] dist = new double[size];
+        double[] offsetIn = new double[size];
+        double[] redIn = new double[size];
+        double[] greenIn = new double[size];
+        double[] offsetOut = new double[size];
+        double[] redOut = new double[size];
+        double[] greenOut = new double[size];
+        GreenWindows[] windowsIn = new GreenWindows[size];
+        GreenWindows[] windowsOut = new GreenWindows[size];
+        for (int i = 0; i < size; i++) {
+            IntersectionSpec curr = intersections.get(i);
+            windowsIn[i] = curr.getCycleIn().getGreenWindows();
+            windowsOut[i] = curr.getCycleOut().getGreenWindows();
+            dist[i] = curr.getDist();
+            offsetIn[i] = curr.getCycleIn().getOffset();
+            redIn[i] = curr.getCycleIn().getRedTime();
+            greenIn[i] = curr.getCycleIn().getGreenTime();
+            offsetOut[i] = curr.getCycleOut().getOffset();
+            redOut[i] = curr.getCycleOut().getRedTime();
+            greenOut[i] = curr.getCycleOut().getGreenTime();
+        }
+        return new CorridorSpec(cycleLen, startUpLoss, extOfGreen, dist, travelTime,
+                new double[size], offsetIn, redIn, greenIn, offsetOut, redOut, greenOut,
+                GreenTable.of(windowsIn, cycleLen), GreenTable.of(windowsOut, cycleLen));
+    }
+
+    /**
+     * computes the travel time to each intersection from a single
+     * progression speed
+     *
+     * @param dist  the distance offset of each intersection
+     * @param speed the progression speed
+     * @return a new array of travel times
+     */
+    public static double[] travelTimes(double[] dist, double speed) {
+        double[] result = new double[dist.length];
+        for (int i = 0; i < dist.length; i++) {
+            result[i] = dist[i] / speed;
+        }
+        return result;
+    }
+
+    public int size() {
+        return dist.length;
+    }
+
+    public double getCycleLen() {
+        return cycleLen;
+    }
+
+    /**
+     * @return the shortest time after which the system cycle and the cycle
+     * of every intersection repeat together
+     */
+    public double getHyperperiod() {
+        return hyperperiod;
+    }
+
+    /**
+     * @return whether every intersection runs at the system cycle length
+     */
+    public boolean isSingleCycle() {
+        for (int i = 0; i < size(); i++) {
+            if (windowsIn.getCycleLen(i) != cycleLen || windowsOut.getCycleLen(i) != cycleLen) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public double getStartUpLoss() {
+        return startUpLoss;
+    }
+
+    public double getExtOfGreen() {
+        return extOfGreen;
+    }
+
+    public double getDist(int i) {
+        return dist[i];
+    }
+
+    public double getTravelTime(int i) {
+        return travelTime[i];
+    }
+
+    /**
+     * @param i the index of the intersection
+     * @return how much later than the travel time a platoon may reach the
+     * intersection. This is 0 unless the spec covers a range of speeds
+     */
+    public double getTravelSpread(int i) {
+        return travelSpread[i];
+    }
+
+    public double getOffsetIn(int i) {
+        return offsetIn[i];
+    }
+
+    public double getRedIn(int i) {
+        return redIn[i];
+    }
+
+    public double getGreenIn(int i) {
+        return greenIn[i];
+    }
+
+    public double getOffsetOut(int i) {
+        return offsetOut[i];
+    }
+
+    public double getRedOut(int i) {
+        return redOut[i];
+    }
+
+    public double getGreenOut(int i) {
+        return greenOut[i];
+    }
+
+    /**
+     * @return every inbound green window of every intersection
+     */
+    public GreenTable getWindowsIn() {
+        return windowsIn;
+    }
+
+    /**
+     * @return every outbound green window of every intersection
+     */
+    public GreenTable getWindowsOut() {
+        return windowsOut;
+    }
+
+    /**
+     * @param i the index of the intersection
+     * @return the intersection at index i as an IntersectionSpec
+     */
+    public IntersectionSpec getIntersection(int i) {
+        return new IntersectionSpec(dist[i],
+                cycle(offsetIn[i], redIn[i], greenIn[i], windowsIn, i),
+                cycle(offsetOut[i], redOut[i], greenOut[i], windowsOut, i));
+    }
+
+    private static CycleSpec cycle(double offset, double red, double green, GreenTable windows,
+                                   int i) {
+        return windows.getCount(i) == 1 ? new CycleSpec(offset, red, green)
+                : new CycleSpec(offset, windows.getWindows(i));
+    }
+
+    /**
+     * creates a copy of this corridor with every intersection's inbound and
+     * outbound offsets shifted by the corresponding delta. This is the same
+     * thing dragging a slider does to an intersection
+     *
+     * @param deltas the shift for each intersection in seconds
+     * @return a new, shifted CorridorSpec
+     */
+    public CorridorSpec shiftOffsets(double[] deltas) {
+        return shiftOffsets(deltas, deltas);
+    }
+
+    /**
+     * creates a copy of this corridor with the inbound and outbound offsets
+     * of every intersection shifted separately, as when a lead/lag change
+     * moves one through green within the cycle and not the other
+     *
+     * @param deltasIn  the inbound shift for each intersection in seconds
+     * @param deltasOut the outbound shift for each intersection in seconds
+     * @return a new, shifted CorridorSpec
+     */
+    public CorridorSpec shiftOffsets(double[] deltasIn, double[] deltasOut) {
+        if (deltasIn.length != size() || deltasOut.length != size()) {
+            throw new IllegalArgumentException("expected " + size() + " offset deltas");
+        }
+        double[] newIn = new double[size()];
+        double[] newOut = new double[size()];
+        for (int i = 0; i < size(); i++) {
+            newIn[i] = offsetIn[i] + deltasIn[i];
+            newOut[i] = offsetOut[i] + deltasOut[i];
+        }
+        return new CorridorSpec(cycleLen, startUpLoss, extOfGreen, dist, travelTime,
+                travelSpread, newIn, redIn, greenIn, newOut, redOut, greenOut, windowsIn,
+                windowsOut);
+    }
+
+    /**
+     * creates a copy of this corridor run at a different cycle length. Green
+     * times and offsets are kept and every red time becomes the new cycle
+     * length minus the green, the same way RingBarrierEntryController
+     * builds an Intersection from the entered durations. Intersections with
+     * several green windows keep every window where it is after the offset,
+     * and half or double cycled intersections stay half or double cycled
+     *
+     * @param newCycleLen the new system cycle length
+     * @return a new CorridorSpec, or null if a green is longer than its
+     * new cycle
+     */
+    public CorridorSpec withCycleLen(double newCycleLen) {
+        GreenTable newWindowsIn = windowsIn.withCycleLen(newCycleLen);
+        GreenTable newWindowsOut = windowsOut.withCycleLen(newCycleLen);
+        if (newWindowsIn == null || newWindowsOut == null) {
+            return null;
+        }
+        double[] newRedIn = new double[size()];
+        double[] newRedOut = new double[size()];
+        for (int i = 0; i < size(); i++) {
+            newRedIn[i] = newWindowsIn.getCycleLen(i) - greenIn[i];
+            newRedOut[i] = newWindowsOut.getCycleLen(i) - greenOut[i];
+            if (newRedIn[i] < 0 || newRedOut[i] < 0) {
+                return null;
+            }
+        }
+        return new CorridorSpec(newCycleLen, startUpLoss, extOfGreen, dist, travelTime,
+                travelSpread, offsetIn, newRedIn, greenIn, offsetOut, newRedOut, greenOut,
+                newWindowsIn, newWindowsOut);
+    }
+
+    /**
+     * creates a copy of this corridor for platoons that may move at any
+     * speed in a range. The travel time to each intersection becomes the one
+     * at the fastest speed and the spread is how much longer the trip takes
+     * at the slowest speed, so the band engine can sweep every red region
+     * across the whole range of arrival times at once
+     *
+     * @param minSpeed the slowest progression speed
+     * @param maxSpeed the fastest progression speed
+     * @return a new CorridorSpec
+     */
+    public CorridorSpec withSpeedRange(double minSpeed, double maxSpeed) {
+        if (!(minSpeed > 0 && minSpeed <= maxSpeed)) {
+            throw new IllegalArgumentException("expected 0 < minSpeed <= maxSpeed");
+        }
+        return withTravelTimes(travelTimes(dist, maxSpeed), travelTimes(dist, minSpeed));
+    }
+
+    /**
+     * creates a copy of this corridor for platoons that may reach each
+     * intersection at any time between two travel times, as when every link
+     * has its own range of speeds
+     *
+     * @param earliest the travel time to each intersection at the fastest
+     *                 speeds
+     * @param latest   the travel time to each intersection at the slowest
+     *                 speeds
+     * @return a new CorridorSpec
+     */
+    public CorridorSpec withTravelTimes(double[] earliest, double[] latest) {
+        if (earliest.length != size() || latest.length != size()) {
+            throw new IllegalArgumentException("expected " + size() + " travel times");
+        }
+        double[] newTravelTime = new double[size()];
+        double[] newSpread = new double[size()];
+        for (int i = 0; i < size(); i++) {
+            newTravelTime[i] = Math.min(earliest[i], latest[i]);
+            newSpread[i] = Math.abs(latest[i] - earliest[i]);
+        }
+        return new CorridorSpec(cycleLen, startUpLoss, extOfGreen, dist, newTravelTime,
+                newSpread, offsetIn, redIn, greenIn, offsetOut, redOut, greenOut, windowsIn,
+                windowsOut);
+    }
+}
@@ -0,0 +1,123 @@
+package engine;
+
+/**
+ * An immutable signal cycle: offset (reference point is start of green), red
+ * time and green time. This is the computational counterpart of
+ * {@link dataClasses.Cycle}, which stays around as the bound view the UI
+ * edits. Offsets are always normalized into [0, cycle length).
+ * <p>
+ * A cycle may also serve its movement in more than one window, held as
+ * {@link GreenWindows}. The red and green times then describe the first
+ * window (the one starting at the offset) and the red that follows it, and
+ * calculations that only know about one window per cycle see that one.
+ */
+public final class CycleSpec {
+
+    private final double offset;
+    private final double redTime;
+    private final double greenTime;
+    private final GreenWindows windows;
+
+    /**
+     * creates a cycle from the inputted offset, redTime and greenTime
+     *
+     * @param offset    the time offset of the cycle. It will be modded with
+     *                  the cycle length
+     * @param redTime   the red time
+     * @param greenTime the green time
+     */
+    public CycleSpec(double offset, double redTime, double greenTime) {
+        this(offset, redTime, greenTime, GreenWindows.single(greenTime, redTime + greenTime));
+    }
+
+    /**
+     * creates a cycle that serves its movement in several windows
+     *
+     * @param offset  the start of the first window. It will be modded with
+     *                the cycle length
+     * @param windows the green windows relative to the offset
+     */
+    public CycleSpec(double offset, GreenWindows windows) {
+        this(offset, windows.getCycleLen() - windows.getEnd(0), windows.getEnd(0), windows);
+    }
+
+    private CycleSpec(double offset, double redTime, double greenTime, GreenWindows windows) {
+        this.redTime = redTime;
+        this.greenTime = greenTime;
+        this.offset = BandEngine.mod(offset, redTime + greenTime);
+        this.windows = windows;
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    public double getRedTime() {
+        return redTime;
+    }
+
+    public double getGreenTime() {
+        return greenTime;
+    }
+
+    public double getCycleLen() {
+        return redTime + greenTime;
+    }
+
+    /**
+     * @return every green window of the cycle, relative to the offset
+     */
+    public GreenWindows getGreenWindows() {
+        return windows;
+    }
+
+    /**
+     * creates a new cycle that is this cycle shifted by delta
+     *
+     * @param delta the shift to perform on this cycle
+     * @return a new CycleSpec shifted by delta from this cycle
+     */
+    public CycleSpec shift(double delta) {
+        return new CycleSpec(offset + delta, redTime, greenTime, windows);
+    }
+
+    /**
+     * @return the red time as the single range ending at the offset
+     */
+    public RangeValue getRedAsRange() {
+        return new RangeValue(offset - redTime, offset);
+    }
+
+    /**
+     * @return the green time as the single range starting at the offset
+     */
+    public RangeValue getGreenAsRange() {
+        return new RangeValue(offset, offset + greenTime);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == null || !(other instanceof CycleSpec)) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        CycleSpec that = (CycleSpec) other;
+        return offset == that.offset && redTime == that.redTime && greenTime == that.greenTime
+               && windows.equals(that.windows);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Double.hashCode(offset);
+        result = 31 * result + Double.hashCode(redTime);
+        result = 31 * result + Double.hashCode(greenTime);
+        return 31 * result + windows.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getRedAsRange().toString() + getGreenAsRange().toString();
+    }
+}
@@ -0,0 +1,109 @@
+package engine;
+
+/**
+ * The delay, stops and queues that {@link FlowProfileEngine} found for one
+ * plan, per intersection and direction. Delay is in vehicle-hours per hour
+ * (the average number of vehicles held at the stop line), stops are per
+ * hour, and queues are the longest the queue gets in a cycle, in vehicles.
+ */
+public final class DelayResult {
+
+    private final double[] delayIn;
+    private final double[] delayOut;
+    private final double[] stopsIn;
+    private final double[] stopsOut;
+    private final double[] queueIn;
+    private final double[] queueOut;
+    private final double[] volumeIn;
+    private final double[] volumeOut;
+
+    DelayResult(double[] delayIn, double[] delayOut, double[] stopsIn, double[] stopsOut,
+                double[] queueIn, double[] queueOut, double[] volumeIn, double[] volumeOut) {
+        this.delayIn = delayIn;
+        this.delayOut = delayOut;
+        this.stopsIn = stopsIn;
+        this.stopsOut = stopsOut;
+        this.queueIn = queueIn;
+        this.queueOut = queueOut;
+        this.volumeIn = volumeIn;
+        this.volumeOut = volumeOut;
+    }
+
+    public int size() {
+        return delayIn.length;
+    }
+
+    public double getDelayIn(int i) {
+        return delayIn[i];
+    }
+
+    public double getDelayOut(int i) {
+        return delayOut[i];
+    }
+
+    public double getStopsIn(int i) {
+        return stopsIn[i];
+    }
+
+    public double getStopsOut(int i) {
+        return stopsOut[i];
+    }
+
+    public double getQueueIn(int i) {
+        return queueIn[i];
+    }
+
+    public double getQueueOut(int i) {
+        return queueOut[i];
+    }
+
+    /**
+     * @param i the index of the intersection
+     * @return the average inbound delay per vehicle in seconds, or 0 if there
+     * is no inbound traffic
+     */
+    public double getAverageDelayIn(int i) {
+        return volumeIn[i] > 0 ? delayIn[i] * 3600 / volumeIn[i] : 0;
+    }
+
+    /**
+     * @param i the index of the intersection
+     * @return the average outbound delay per vehicle in seconds, or 0 if
+     * there is no outbound traffic
+     */
+    public double getAverageDelayOut(int i) {
+        return volumeOut[i] > 0 ? delayOut[i] * 3600 / volumeOut[i] : 0;
+    }
+
+    /**
+     * @return the delay of the whole corridor in vehicle-hours per hour
+     */
+    public double getTotalDelay() {
+        double total = 0;
+        for (int i = 0; i < delayIn.length; i++) {
+            total += delayIn[i] + delayOut[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return the stops of the whole corridor per hour
+     */
+    public double getTotalStops() {
+        double total = 0;
+        for (int i = 0; i < stopsIn.length; i++) {
+            total += stopsIn[i] + stopsOut[i];
+        }
+        return total;
+    }
+
+    /**
+     * the TRANSYT performance index, which trades delay off against stops
+     *
+     * @param stopPenalty how many vehicle-hours of delay one stop is worth
+     * @return the total delay plus stopPenalty per stop
+     */
+    public double getPerformanceIndex(double stopPenalty) {
+        return getTotalDelay() + stopPenalty * getTotalStops();
+    }
+}
@@ -0,0 +1,54 @@
+package engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * A random amount of time, in seconds, drawn from a caller's random stream.
+ * Used by {@link RobustnessAnalysis} to perturb the signal timing, so
+ * implementations must not allocate or keep state between draws.
+ */
+@FunctionalInterface
+public interface Distribution {
+
+    /**
+     * @param random the stream to draw from. Only ever used by one thread
+     * @return one sample
+     */
+    double sample(SplittableRandom random);
+
+    /**
+     * @param value the only value
+     * @return a distribution that always gives value
+     */
+    static Distribution constant(double value) {
+        return random -> value;
+    }
+
+    /**
+     * @param min the smallest value
+     * @param max the largest value
+     * @return a distribution spread evenly over [min, max)
+     */
+    static Distribution uniform(double min, double max) {
+        if (!(max >= min)) {
+            throw new IllegalArgumentException("max must not be less than min");
+        }
+        return random -> min + (max - min) * random.nextDouble();
+    }
+
+    /**
+     * @param mean   the mean
+     * @param stdDev the standard deviation
+     * @return a normal distribution, drawn with the Box-Muller transform
+     */
+    static Distribution normal(double mean, double stdDev) {
+        if (!(stdDev >= 0)) {
+            throw new IllegalArgumentException("stdDev must not be negative");
+        }
+        return random -> {
+            //1 - nextDouble is in (0, 1], so the log is finite
+            double radius = Math.sqrt(-2 * Math.log(1 - random.nextDouble()));
+            return mean + stdDev * radius * Math.cos(2 * Math.PI * random.nextDouble());
+        };
+    }
+}
@@ -0,0 +1,393 @@
+package engine;
+
+/**
+ * A TRANSYT style macroscopic traffic model of a corridor. Traffic is held
+ * as cyclic flow profiles: the number of vehicles in each time step of one
+ * cycle, in primitive arrays. Vehicles arrive at the first intersection in
+ * each direction at an even rate, queue at every stop line while it is red,
+ * leave at the saturation flow while it is green, and the profile that
+ * leaves one intersection is carried to the next with Robertson's platoon
+ * dispersion model. Traffic that turns off between two intersections is
+ * taken out of the platoon evenly, and traffic that turns on is added at an
+ * even rate.
+ * <p>
+ * Each stop line is run for two cycles and only the second is counted, so
+ * an undersaturated queue starts from the queue it is left with at the end
+ * of a cycle. Oversaturated queues keep growing and are reported as they
+ * are in the second cycle.
+ * <p>
+ * Greens use the same start-up loss and extension of green as the bands.
+ * Nothing is allocated after construction except the {@link DelayResult}s,
+ * so a whole corridor evaluates in microseconds. Moving one intersection
+ * with {@link #setDelta(int, double)} only re-runs the approaches whose
+ * arrivals change: that intersection and those after it in each direction,
+ * stopping early once a departure profile comes out the same as before.
+ * Like {@link BandIndex}, an engine is meant to be owned by one thread.
+ */
+public final class FlowProfileEngine {
+
+    //Robertson's smoothing factor and travel time factor, as calibrated for TRANSYT
+    public static final double ALPHA = 0.35;
+    public static final double BETA = 0.8;
+    //the length of a step when none is given, in seconds
+    public static final double DEFAULT_STEP = 1;
+    //how many vehicles a departure step can move by and still count as the same
+    private static final double SAME_DEPARTURES = 1e-12;
+
+    private final CorridorSpec spec;
+    private final ApproachVolumes volumes;
+    private final int size;
+    private final int steps;
+    private final double step;
+
+    //how many steps a platoon takes to reach each intersection from the one before it, and
+    //Robertson's smoothing factor for that link
+    private final int[] lagIn;
+    private final int[] lagOut;
+    private final double[] smoothIn;
+    private final double[] smoothOut;
+
+    //the profile leaving each intersection, one row of steps per intersection
+    private final double[] departIn;
+    private final double[] departOut;
+    private final double[] arrival;
+    private final double[] green;
+    //the shift of each intersection in the last evaluation
+    private final double[] deltas;
+
+    private final double[] delayIn;
+    private final double[] delayOut;
+    private final double[] stopsIn;
+    private final double[] stopsOut;
+    private final double[] queueIn;
+    private final double[] queueOut;
+
+    /**
+     * creates an engine with one second steps
+     *
+     * @param spec    the corridor
+     * @param volumes the traffic on each approach of the corridor
+     */
+    public FlowProfileEngine(CorridorSpec spec, ApproachVolumes volumes) {
+        this(spec, volumes, DEFAULT_STEP);
+    }
+
+    /**
+     * @param spec    the corridor
+     * @param volumes the traffic on each approach of the corridor
+     * @param step    the length of a profile step in seconds. It is rounded so
+     *                a whole number of steps fills the cycle
+     */
+    public FlowProfileEngine(CorridorSpec spec, ApproachVolumes volumes, double step) {
+        if (volumes.size() != spec.size()) {
+            throw new IllegalArgumentException("expected volumes for " + spec.size()
+                                               + " intersections");
+        }
+        if (!(step > 0)) {
+            throw new IllegalArgumentException("step must be positive");
+        }
+        this.spec = spec;
+        this.volumes = volumes;
+        this.size = spec.size();
+        this.steps = Math.max(1, (int) Math.round(spec.getCycleLen() / step));
+        this.step = spec.getCycleLen() / steps;
+        lagIn = new int[size];
+        lagOut = new int[size];
+        smoothIn = new double[size];
+        smoothOut = new double[size];
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                double time = Math.abs(spec.getTravelTime(i) - spec.getTravelTime(i - 1));
+                lagOut[i] = (int) Math.round(BETA * time / this.step);
+                smoothOut[i] = 1 / (1 + ALPHA * BETA * time / this.step);
+            }
+            if (i < size - 1) {
+                double time = Math.abs(spec.getTravelTime(i + 1) - spec.getTravelTime(i));
+                lagIn[i] = (int) Math.round(BETA * time / this.step);
+                smoothIn[i] = 1 / (1 + ALPHA * BETA * time / this.step);
+            }
+        }
+        departIn = new double[size * steps];
+        departOut = new double[size * steps];
+        arrival = new double[steps];
+        green = new double[steps];
+        deltas = new double[size];
+        delayIn = new double[size];
+        delayOut = new double[size];
+        stopsIn = new double[size];
+        stopsOut = new double[size];
+        queueIn = new double[size];
+        queueOut = new double[size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of steps in a cycle
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the length of a step in seconds
+     */
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * evaluates the corridor as it is in the spec
+     *
+     * @return the total delay in vehicle-hours per hour
+     */
+    public double evaluate() {
+        return evaluate(null);
+    }
+
+    /**
+     * evaluates the corridor with every intersection shifted, the same as
+     * {@link CorridorSpec#shiftOffsets(double[])}
+     *
+     * @param deltas the shift of each intersection, or null for none
+     * @return the total delay in vehicle-hours per hour
+     */
+    public double evaluate(double[] deltas) {
+        if (deltas != null && deltas.length != size) {
+            throw new IllegalArgumentException("expected shifts for " + size + " intersections");
+        }
+        for (int i = 0; i < size; i++) {
+            this.deltas[i] = deltas == null ? 0 : deltas[i];
+        }
+        for (int i = 0; i < size; i++) {
+            approach(i, true);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            approach(i, false);
+        }
+        return getTotalDelay();
+    }
+
+    /**
+     * moves one intersection to a new shift and re-evaluates the approaches
+     * it affects. The engine must have been evaluated first
+     *
+     * @param i     the index of the intersection
+     * @param delta its new shift
+     * @return the total delay in vehicle-hours per hour
+     */
+    public double setDelta(int i, double delta) {
+        deltas[i] = delta;
+        //an approach only sees the departures of the one before it, so stop once they stay put
+        for (int j = i; j < size; j++) {
+            if (!approach(j, true)) {
+                break;
+            }
+        }
+        for (int j = i; j >= 0; j--) {
+            if (!approach(j, false)) {
+                break;
+            }
+        }
+        return getTotalDelay();
+    }
+
+    /**
+     * @param i the index of the intersection
+     * @return its shift in the last evaluation
+     */
+    public double getDelta(int i) {
+        return deltas[i];
+    }
+
+    /**
+     * @return the total delay of the last evaluation in vehicle-hours per
+     * hour
+     */
+    public double getTotalDelay() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += delayIn[i] + delayOut[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return the total stops of the last evaluation per hour
+     */
+    public double getTotalStops() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += stopsIn[i] + stopsOut[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return a copy of the results of the last evaluation
+     */
+    public DelayResult getResult() {
+        double[] volumeIn = new double[size];
+        double[] volumeOut = new double[size];
+        for (int i = 0; i < size; i++) {
+            volumeIn[i] = volumes.getVolumeIn(i);
+            volumeOut[i] = volumes.getVolumeOut(i);
+        }
+        return new DelayResult(delayIn.clone(), delayOut.clone(), stopsIn.clone(),
+                stopsOut.clone(), queueIn.clone(), queueOut.clone(), volumeIn, volumeOut);
+    }
+
+    /**
+     * copies the profile that left an intersection in the last evaluation
+     *
+     * @param i        the index of the intersection
+     * @param outbound which direction
+     * @param profile  receives the vehicles that leave in each step
+     */
+    public void getDepartures(int i, boolean outbound, double[] profile) {
+        System.arraycopy(outbound ? departOut : departIn, i * steps, profile, 0, steps);
+    }
+
+    /**
+     * builds the arrivals at one approach from the departures upstream of
+     * it, runs its stop line and stores its departures and measures
+     *
+     * @return whether its departures changed
+     */
+    private boolean approach(int i, boolean outbound) {
+        int upstream = outbound ? i - 1 : i + 1;
+        double volume = outbound ? volumes.getVolumeOut(i) : volumes.getVolumeIn(i);
+        double perStep = volume / 3600 * step;
+        if (upstream < 0 || upstream >= size) {
+            for (int k = 0; k < steps; k++) {
+                arrival[k] = perStep;
+            }
+        } else {
+            double upstreamVolume = outbound ? volumes.getVolumeOut(upstream)
+                    : volumes.getVolumeIn(upstream);
+            //the share of the platoon that carries on, and the traffic that turns on
+            double carried = upstreamVolume > 0 ? Math.min(volume, upstreamVolume)
+                                                  / upstreamVolume : 0;
+            double joining = Math.max(0, volume - upstreamVolume) / 3600 * step;
+            disperse(outbound ? departOut : departIn, upstream * steps,
+                    outbound ? lagOut[i] : lagIn[i], outbound ? smoothOut[i] : smoothIn[i]);
+            for (int k = 0; k < steps; k++) {
+                arrival[k] = arrival[k] * carried + joining;
+            }
+        }
+        double offset = (outbound ? spec.getOffsetOut(i) : spec.getOffsetIn(i)) + deltas[i];
+        fillGreen(offset, outbound ? spec.getWindowsOut() : spec.getWindowsIn(), i);
+        double saturation = outbound ? volumes.getSaturationOut(i) : volumes.getSaturationIn(i);
+        return stopLine(i, outbound, saturation / 3600 * step);
+    }
+
+    /**
+     * fills arrival with a profile smoothed by Robertson's recurrence,
+     * arrival[k] = F * depart[k - lag] + (1 - F) * arrival[k - 1]. The profile
+     * is cyclic, so the arrival before the first step is solved for rather
+     * than taken as zero
+     */
+    private void disperse(double[] depart, int row, int lag, double smooth) {
+        double decay = 1 - smooth;
+        int from = Math.floorMod(-lag, steps);
+        double last = 0;
+        for (int k = 0, j = from; k < steps; k++) {
+            last = smooth * depart[row + j] + decay * last;
+            if (++j == steps) {
+                j = 0;
+            }
+        }
+        //the recurrence carries a start value s to s * decay^steps by the end of the cycle
+        double carry = Math.pow(decay, steps);
+        last = carry < 1 ? last / (1 - carry) : 0;
+        for (int k = 0, j = from; k < steps; k++) {
+            last = smooth * depart[row + j] + decay * last;
+            arrival[k] = last;
+            if (++j == steps) {
+                j = 0;
+            }
+        }
+    }
+
+    /**
+     * fills green with the part of each step that the effective greens of
+     * intersection i's windows cover, repeated every cycle
+     */
+    private void fillGreen(double offset, GreenTable windows, int i) {
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        for (int k = 0; k < steps; k++) {
+            green[k] = 0;
+        }
+        for (int w = windows.getFirst(i); w < windows.getFirst(i + 1); w++) {
+            addGreen(offset + windows.getStart(w) + sul,
+                    windows.getEnd(w) - windows.getStart(w) + ext - sul);
+        }
+        for (int k = 0; k < steps; k++) {
+            green[k] = Math.min(1, green[k]);
+        }
+    }
+
+    /**
+     * adds the part of each step that the effective green
+     * [start, start + length) covers, repeated every cycle
+     */
+    private void addGreen(double start, double length) {
+        double cycleLen = spec.getCycleLen();
+        double from = start - cycleLen * Math.floor(start / cycleLen);
+        double to = from + Math.max(0, Math.min(length, cycleLen));
+        for (int k = 0; k < steps; k++) {
+            double a = k * step;
+            double b = a + step;
+            double covered = Math.max(0, Math.min(b, to) - Math.max(a, from))
+                             + Math.max(0, Math.min(b, to - cycleLen) - a);
+            green[k] += covered / step;
+        }
+    }
+
+    /**
+     * runs the arrivals through a stop line for two cycles and records the
+     * departures, delay, stops and longest queue of the second
+     *
+     * @param capacity the vehicles that can leave in a step of green
+     * @return whether the departures are different from the ones stored
+     */
+    private boolean stopLine(int i, boolean outbound, double capacity) {
+        double[] depart = outbound ? departOut : departIn;
+        int row = i * steps;
+        double queue = 0;
+        for (int k = 0; k < steps; k++) {
+            queue = Math.max(0, queue + arrival[k] - capacity * green[k]);
+        }
+        double waiting = 0;
+        double stopped = 0;
+        double longest = queue;
+        boolean changed = false;
+        for (int k = 0; k < steps; k++) {
+            double room = capacity * green[k];
+            double left = Math.min(queue + arrival[k], room);
+            //arrivals go through without stopping only while the queue ahead leaves room
+            stopped += Math.max(0, arrival[k] - Math.max(0, room - queue));
+            double next = queue + arrival[k] - left;
+            waiting += (queue + next) / 2 * step;
+            queue = next;
+            longest = Math.max(longest, queue);
+            changed |= Math.abs(depart[row + k] - left) > SAME_DEPARTURES;
+            depart[row + k] = left;
+        }
+        //per cycle to per hour
+        double cycleLen = spec.getCycleLen();
+        if (outbound) {
+            delayOut[i] = waiting / cycleLen;
+            stopsOut[i] = stopped * 3600 / cycleLen;
+            queueOut[i] = longest;
+        } else {
+            delayIn[i] = waiting / cycleLen;
+            stopsIn[i] = stopped * 3600 / cycleLen;
+            queueIn[i] = longest;
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,239 @@
+package engine;
+
+/**
+ * The green windows of one direction of every intersection in a corridor,
+ * packed into flat arrays in compressed row form: the windows of
+ * intersection i are the entries from getFirst(i) up to getFirst(i + 1),
+ * sorted, relative to the intersection's offset. Next to each window the
+ * table keeps where the red before it starts, so an engine can walk every
+ * red of the corridor in one loop without caring how many windows each
+ * intersection has.
+ * <p>
+ * Each intersection also has its own cycle length, which is a whole
+ * multiple or a whole fraction of the system cycle (a half-cycled
+ * intersection runs twice per system cycle). A cycle length that is neither
+ * is taken as the system cycle, which is how the engines treated every
+ * cycle before intersections could have their own.
+ * <p>
+ * The table is immutable and can be shared between threads.
+ */
+public final class GreenTable {
+
+    //the most cycles of one length that fit in a cycle of another
+    static final int MAX_RATIO = 16;
+
+    private final double cycleLen;
+    private final double[] period;
+    private final int[] first;
+    private final double[] start;
+    private final double[] end;
+    //the end of the window before each one, a cycle earlier for an intersection's first window
+    private final double[] redStart;
+
+    private GreenTable(double cycleLen, double[] period, int[] first, double[] start,
+                       double[] end, double[] redStart) {
+        this.cycleLen = cycleLen;
+        this.period = period;
+        this.first = first;
+        this.start = start;
+        this.end = end;
+        this.redStart = redStart;
+    }
+
+    private GreenTable(double cycleLen, double[] period, int[] first, double[] start,
+                       double[] end) {
+        this(cycleLen, period, first, start, end, new double[start.length]);
+        for (int i = 0; i + 1 < first.length; i++) {
+            int last = first[i + 1] - 1;
+            for (int w = first[i]; w <= last; w++) {
+                redStart[w] = w == first[i] ? end[last] - period[i] : end[w - 1];
+            }
+        }
+    }
+
+    /**
+     * @param reds     the red time of each intersection
+     * @param greens   the green time of each intersection
+     * @param cycleLen the cycle length
+     * @return a table with one window per intersection, starting at the
+     * offset and with the red before it
+     */
+    public static GreenTable single(double[] reds, double[] greens, double cycleLen) {
+        int size = greens.length;
+        int[] first = new int[size + 1];
+        double[] start = new double[size];
+        double[] end = new double[size];
+        double[] redStart = new double[size];
+        double[] period = new double[size];
+        for (int i = 0; i < size; i++) {
+            first[i + 1] = i + 1;
+            end[i] = greens[i];
+            redStart[i] = -reds[i];
+            period[i] = period(reds[i] + greens[i], cycleLen);
+        }
+        return new GreenTable(cycleLen, period, first, start, end, redStart);
+    }
+
+    /**
+     * @param windows  the windows of each intersection
+     * @param cycleLen the cycle length
+     * @return a table holding every window
+     */
+    public static GreenTable of(GreenWindows[] windows, double cycleLen) {
+        int[] first = new int[windows.length + 1];
+        double[] period = new double[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            first[i + 1] = first[i] + windows[i].size();
+            period[i] = period(windows[i].getCycleLen(), cycleLen);
+        }
+        double[] start = new double[first[windows.length]];
+        double[] end = new double[start.length];
+        for (int i = 0; i < windows.length; i++) {
+            for (int w = 0; w < windows[i].size(); w++) {
+                start[first[i] + w] = windows[i].getStart(w);
+                end[first[i] + w] = windows[i].getEnd(w);
+            }
+        }
+        return new GreenTable(cycleLen, period, first, start, end);
+    }
+
+    /**
+     * @param length   the length of an intersection's cycle
+     * @param cycleLen the system cycle length
+     * @return the length snapped to the whole multiple or fraction of the
+     * system cycle it is, or the system cycle if it is neither
+     */
+    static double period(double length, double cycleLen) {
+        double ratio = length / cycleLen;
+        boolean longer = ratio >= 1;
+        double exact = longer ? ratio : 1 / ratio;
+        double whole = Math.rint(exact);
+        if (!(whole >= 1 && whole <= MAX_RATIO && Math.abs(exact - whole) <= 1e-9 * whole)) {
+            return cycleLen;
+        }
+        return longer ? cycleLen * whole : cycleLen / whole;
+    }
+
+    /**
+     * @param a a cycle length
+     * @param b another cycle length, a whole multiple or fraction of a
+     * @return the shortest time both cycles repeat after
+     */
+    static double commonPeriod(double a, double b) {
+        if (a == b) {
+            return a;
+        }
+        for (int k = 1; k <= MAX_RATIO * MAX_RATIO; k++) {
+            double ratio = k * a / b;
+            if (Math.abs(ratio - Math.rint(ratio)) <= 1e-9 * ratio) {
+                return k * a;
+            }
+        }
+        throw new IllegalArgumentException(a + " and " + b + " have no common period");
+    }
+
+    /**
+     * @param newCycleLen the new system cycle length
+     * @return the same windows with every cycle scaled to the new system
+     * cycle, or null if an intersection's windows do not fit in its cycle
+     */
+    public GreenTable withCycleLen(double newCycleLen) {
+        double[] newPeriod = new double[size()];
+        for (int i = 0; i < size(); i++) {
+            newPeriod[i] = period[i] / cycleLen * newCycleLen;
+            if (getSpan(i) > newPeriod[i]) {
+                return null;
+            }
+        }
+        return new GreenTable(newCycleLen, newPeriod, first, start, end);
+    }
+
+    /**
+     * @return the number of intersections
+     */
+    public int size() {
+        return first.length - 1;
+    }
+
+    /**
+     * @param i the index of an intersection
+     * @return the length of its cycle
+     */
+    public double getCycleLen(int i) {
+        return period[i];
+    }
+
+    /**
+     * @return the number of windows over every intersection
+     */
+    public int getWindowCount() {
+        return start.length;
+    }
+
+    /**
+     * @param i the index of an intersection, or size() for the end of the
+     *          table
+     * @return the index of the intersection's first window
+     */
+    public int getFirst(int i) {
+        return first[i];
+    }
+
+    /**
+     * @param i the index of an intersection
+     * @return the number of windows it has
+     */
+    public int getCount(int i) {
+        return first[i + 1] - first[i];
+    }
+
+    /**
+     * @param w the index of a window
+     * @return where the window starts, after the intersection's offset
+     */
+    public double getStart(int w) {
+        return start[w];
+    }
+
+    /**
+     * @param w the index of a window
+     * @return where the window ends, after the intersection's offset
+     */
+    public double getEnd(int w) {
+        return end[w];
+    }
+
+    /**
+     * @param w the index of a window
+     * @return where the red before the window starts, after the
+     * intersection's offset. It ends where the window starts
+     */
+    public double getRedStart(int w) {
+        return redStart[w];
+    }
+
+    /**
+     * @param i the index of an intersection
+     * @return the end of its last window, so all of its green lies in
+     * [0, span] after its offset
+     */
+    public double getSpan(int i) {
+        return end[first[i + 1] - 1];
+    }
+
+    /**
+     * @param i the index of an intersection
+     * @return its windows
+     */
+    public GreenWindows getWindows(int i) {
+        int count = getCount(i);
+        double[] starts = new double[count];
+        double[] lengths = new double[count];
+        for (int w = 0; w < count; w++) {
+            starts[w] = start[first[i] + w];
+            lengths[w] = end[first[i] + w] - starts[w];
+        }
+        return count == 1 ? GreenWindows.single(lengths[0], period[i])
+                : GreenWindows.of(starts, lengths, period[i]);
+    }
+}
@@ -0,0 +1,151 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * The green windows a movement gets in one cycle, for signals such as DDI
+ * crossovers that serve a through movement more than once per cycle. The
+ * windows are held relative to the cycle's offset, sorted and merged, in a
+ * single array of endpoints ([start0, end0, start1, end1, ...]). The offset
+ * is the start of green, so the first window always starts at 0, and every
+ * window lies in [0, cycleLen].
+ */
+public final class GreenWindows {
+
+    private final double cycleLen;
+    private final double[] bounds;
+
+    private GreenWindows(double cycleLen, double[] bounds) {
+        this.cycleLen = cycleLen;
+        this.bounds = bounds;
+    }
+
+    /**
+     * @param green    the green time
+     * @param cycleLen the cycle length
+     * @return a single window starting at the offset
+     */
+    public static GreenWindows single(double green, double cycleLen) {
+        return new GreenWindows(cycleLen, new double[]{0, Math.max(0, Math.min(green,
+                cycleLen))});
+    }
+
+    /**
+     * creates the windows from a list of greens that may overlap, wrap past
+     * the end of the cycle or come in any order
+     *
+     * @param starts   the start of each green relative to the offset
+     * @param lengths  the length of each green
+     * @param cycleLen the cycle length
+     * @return the sorted, merged windows
+     * @throws IllegalArgumentException if no green starts at the offset
+     */
+    public static GreenWindows of(double[] starts, double[] lengths, double cycleLen) {
+        if (starts.length != lengths.length) {
+            throw new IllegalArgumentException("expected one length per start");
+        }
+        double[] wrappedStarts = new double[2 * starts.length];
+        double[] wrappedEnds = new double[2 * starts.length];
+        int count = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (!(lengths[i] > 0)) {
+                continue;
+            }
+            double from = BandEngine.mod(starts[i], cycleLen);
+            double to = from + Math.min(lengths[i], cycleLen);
+            //a green that runs past the end of the cycle carries on from the start of the next
+            wrappedStarts[count] = from;
+            wrappedEnds[count++] = Math.min(to, cycleLen);
+            if (to > cycleLen) {
+                wrappedStarts[count] = 0;
+                wrappedEnds[count++] = to - cycleLen;
+            }
+        }
+        IntervalSet merged = IntervalSet.fromUnsorted(wrappedStarts, wrappedEnds, count);
+        double[] bounds = new double[2 * merged.size()];
+        for (int w = 0; w < merged.size(); w++) {
+            bounds[2 * w] = merged.getStart(w);
+            bounds[2 * w + 1] = merged.getEnd(w);
+        }
+        if (bounds.length == 0 || bounds[0] != 0) {
+            throw new IllegalArgumentException("the offset must be the start of a green");
+        }
+        return new GreenWindows(cycleLen, bounds);
+    }
+
+    /**
+     * @return the number of windows
+     */
+    public int size() {
+        return bounds.length / 2;
+    }
+
+    public double getStart(int w) {
+        return bounds[2 * w];
+    }
+
+    public double getEnd(int w) {
+        return bounds[2 * w + 1];
+    }
+
+    public double getCycleLen() {
+        return cycleLen;
+    }
+
+    /**
+     * @return the end of the last window, so every green of the cycle lies
+     * in [0, span]
+     */
+    public double getSpan() {
+        return bounds[bounds.length - 1];
+    }
+
+    /**
+     * @return the total green time over every window
+     */
+    public double getTotalGreen() {
+        double total = 0;
+        for (int w = 0; w < size(); w++) {
+            total += getEnd(w) - getStart(w);
+        }
+        return total;
+    }
+
+    /**
+     * @param newCycleLen the new cycle length
+     * @return the same windows in a cycle of a different length, or null if
+     * they do not fit in it
+     */
+    public GreenWindows withCycleLen(double newCycleLen) {
+        if (getSpan() > newCycleLen) {
+            return null;
+        }
+        return new GreenWindows(newCycleLen, bounds);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == null || !(other instanceof GreenWindows)) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        GreenWindows that = (GreenWindows) other;
+        return cycleLen == that.cycleLen && Arrays.equals(bounds, that.bounds);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(cycleLen) + Arrays.hashCode(bounds);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int w = 0; w < size(); w++) {
+            result.append('[').append(getStart(w)).append(", ").append(getEnd(w)).append(']');
+        }
+        return result.toString();
+    }
+}
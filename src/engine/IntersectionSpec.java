@@ -0,0 +1,71 @@
+package engine;
+
+/**
+ * An immutable intersection: a distance offset from 0 and an inbound and
+ * outbound cycle. This is the computational counterpart of
+ * {@link dataClasses.Intersection}, without the slider, gradients or
+ * selection state.
+ */
+public final class IntersectionSpec {
+
+    private final double dist;
+    private final CycleSpec cycleIn;
+    private final CycleSpec cycleOut;
+
+    /**
+     * @param dist     distance offset in feet
+     * @param cycleIn  the inbound cycle
+     * @param cycleOut the outbound cycle
+     */
+    public IntersectionSpec(double dist, CycleSpec cycleIn, CycleSpec cycleOut) {
+        this.dist = dist;
+        this.cycleIn = cycleIn;
+        this.cycleOut = cycleOut;
+    }
+
+    public double getDist() {
+        return dist;
+    }
+
+    public CycleSpec getCycleIn() {
+        return cycleIn;
+    }
+
+    public CycleSpec getCycleOut() {
+        return cycleOut;
+    }
+
+    /**
+     * shifts both cycles by the same delta, which is what dragging an
+     * intersection's slider does
+     *
+     * @param delta the shift in seconds
+     * @return a new, shifted IntersectionSpec
+     */
+    public IntersectionSpec shift(double delta) {
+        return new IntersectionSpec(dist, cycleIn.shift(delta), cycleOut.shift(delta));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == null || !(other instanceof IntersectionSpec)) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        IntersectionSpec that = (IntersectionSpec) other;
+        return dist == that.dist && cycleIn.equals(that.cycleIn)
+               && cycleOut.equals(that.cycleOut);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Double.hashCode(dist) + cycleIn.hashCode()) + cycleOut.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "{IBD: " + cycleIn + " OBD: " + cycleOut + "}";
+    }
+}
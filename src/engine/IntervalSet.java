@@ -0,0 +1,437 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of disjoint, closed intervals backed by a single sorted
+ * array of endpoints ([start0, end0, start1, end1, ...]). Union, intersection
+ * and subtraction are all single merge passes over the two endpoint arrays,
+ * so the only super-linear step is sorting unsorted input in
+ * {@link #fromUnsorted(double[], double[], int)}.
+ * <p>
+ * A set can also be treated as circular with some period (a signal cycle).
+ * Circular sets keep all of their endpoints in [0, period) and can be
+ * unrolled over any linear window with {@link #unroll(double, double, double)}
+ * instead of being copied ahead of time.
+ */
+public final class IntervalSet {
+
+    public static final IntervalSet EMPTY = new IntervalSet(new double[0]);
+
+    /**
+     * pieces narrower than this produced by intersect and subtract are
+     * floating point noise and are dropped
+     */
+    static final double EPSILON = 1e-9;
+
+    private final double[] bounds;
+
+    private IntervalSet(double[] bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * creates a set containing a single interval. An interval with end <
+     * start is treated as empty
+     *
+     * @param start the start of the interval
+     * @param end   the end of the interval
+     * @return a new IntervalSet
+     */
+    public static IntervalSet of(double start, double end) {
+        if (!(start <= end)) {
+            return EMPTY;
+        }
+        return new IntervalSet(new double[]{start, end});
+    }
+
+    /**
+     * creates the smallest set of disjoint intervals that covers the first
+     * count of the inputted intervals. Overlapping and touching intervals
+     * are merged and intervals with end < start are ignored. The input
+     * arrays are sorted in place
+     *
+     * @param starts the interval starts
+     * @param ends   the interval ends
+     * @param count  the number of intervals to use
+     * @return a new IntervalSet
+     */
+    public static IntervalSet fromUnsorted(double[] starts, double[] ends, int count) {
+        sort(starts, ends, 0, count - 1);
+        double[] result = new double[2 * count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (!(starts[i] <= ends[i])) {
+                continue;
+            }
+            if (size > 0 && starts[i] <= result[size - 1]) {
+                result[size - 1] = Math.max(result[size - 1], ends[i]);
+            } else {
+                result[size++] = starts[i];
+                result[size++] = ends[i];
+            }
+        }
+        return new IntervalSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * creates a circular set holding a single arc. The arc is moved into
+     * [0, period) and split in two if it wraps past the end of the period
+     *
+     * @param start  the start of the arc
+     * @param length the length of the arc
+     * @param period the period of the circle
+     * @return a new circular IntervalSet
+     */
+    public static IntervalSet arc(double start, double length, double period) {
+        if (!(length > 0)) {
+            return EMPTY;
+        }
+        if (length >= period) {
+            return of(0, period);
+        }
+        double from = BandEngine.mod(start, period);
+        double to = from + length;
+        if (to <= period) {
+            return of(from, to);
+        }
+        return new IntervalSet(new double[]{0, to - period, from, period});
+    }
+
+    /**
+     * wraps the first count of the inputted arcs onto a circle and merges
+     * them into a single circular set
+     *
+     * @param starts the arc starts (may be anywhere on the number line)
+     * @param ends   the arc ends
+     * @param count  the number of arcs to use
+     * @param period the period of the circle
+     * @return a new circular IntervalSet
+     */
+    public static IntervalSet wrap(double[] starts, double[] ends, int count, double period) {
+        double[] wrappedStarts = new double[2 * count];
+        double[] wrappedEnds = new double[2 * count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            double length = ends[i] - starts[i];
+            if (!(length > 0)) {
+                continue;
+            }
+            if (length >= period) {
+                return of(0, period);
+            }
+            double from = BandEngine.mod(starts[i], period);
+            double to = from + length;
+            if (to <= period) {
+                wrappedStarts[size] = from;
+                wrappedEnds[size++] = to;
+            } else {
+                wrappedStarts[size] = 0;
+                wrappedEnds[size++] = to - period;
+                wrappedStarts[size] = from;
+                wrappedEnds[size++] = period;
+            }
+        }
+        return fromUnsorted(wrappedStarts, wrappedEnds, size);
+    }
+
+    public int size() {
+        return bounds.length / 2;
+    }
+
+    public boolean isEmpty() {
+        return bounds.length == 0;
+    }
+
+    public double getStart(int i) {
+        return bounds[2 * i];
+    }
+
+    public double getEnd(int i) {
+        return bounds[2 * i + 1];
+    }
+
+    /**
+     * @return the total length covered by this set
+     */
+    public double measure() {
+        double result = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            result += bounds[i + 1] - bounds[i];
+        }
+        return result;
+    }
+
+    /**
+     * checks if the test value is within any interval of this set
+     *
+     * @param testVal the value to be tested
+     * @return whether or not the value is in this set
+     */
+    public boolean contains(double testVal) {
+        int lo = 0;
+        int hi = size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (bounds[2 * mid + 1] < testVal) {
+                lo = mid + 1;
+            } else if (bounds[2 * mid] > testVal) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * output a new set that is this set shifted by delta
+     *
+     * @param delta the amount of shift
+     * @return a new, shifted IntervalSet
+     */
+    public IntervalSet shift(double delta) {
+        double[] result = new double[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            result[i] = bounds[i] + delta;
+        }
+        return new IntervalSet(result);
+    }
+
+    /**
+     * computes the union of this set and another in a single merge pass
+     *
+     * @param other the other set
+     * @return a new IntervalSet covering both sets
+     */
+    public IntervalSet union(IntervalSet other) {
+        double[] a = bounds;
+        double[] b = other.bounds;
+        double[] result = new double[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            double start;
+            double end;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+                start = a[i];
+                end = a[i + 1];
+                i += 2;
+            } else {
+                start = b[j];
+                end = b[j + 1];
+                j += 2;
+            }
+            if (size > 0 && start <= result[size - 1]) {
+                result[size - 1] = Math.max(result[size - 1], end);
+            } else {
+                result[size++] = start;
+                result[size++] = end;
+            }
+        }
+        return new IntervalSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * computes the intersection of this set and another in a single merge
+     * pass
+     *
+     * @param other the other set
+     * @return a new IntervalSet of the values in both sets
+     */
+    public IntervalSet intersect(IntervalSet other) {
+        double[] a = bounds;
+        double[] b = other.bounds;
+        double[] result = new double[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            double start = Math.max(a[i], b[j]);
+            double end = Math.min(a[i + 1], b[j + 1]);
+            if (end - start > EPSILON) {
+                result[size++] = start;
+                result[size++] = end;
+            }
+            if (a[i + 1] < b[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return new IntervalSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * removes every value in another set from this one in a single merge
+     * pass
+     *
+     * @param other the set to be excluded
+     * @return a new IntervalSet of the values in this set and not the other
+     */
+    public IntervalSet subtract(IntervalSet other) {
+        double[] a = bounds;
+        double[] b = other.bounds;
+        double[] result = new double[a.length + b.length];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < a.length; i += 2) {
+            double cursor = a[i];
+            double end = a[i + 1];
+            while (j < b.length && b[j + 1] <= cursor) {
+                j += 2;
+            }
+            int k = j;
+            while (k < b.length && b[k] < end) {
+                if (b[k] - cursor > EPSILON) {
+                    result[size++] = cursor;
+                    result[size++] = b[k];
+                }
+                cursor = Math.max(cursor, b[k + 1]);
+                k += 2;
+            }
+            if (end - cursor > EPSILON) {
+                result[size++] = cursor;
+                result[size++] = end;
+            }
+        }
+        return new IntervalSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * treats this set as circular with the given period and lays out every
+     * repetition of it that touches [from, to] on the number line
+     *
+     * @param period the period of this circular set
+     * @param from   the start of the linear window
+     * @param to     the end of the linear window
+     * @return a new linear IntervalSet
+     */
+    public IntervalSet unroll(double period, double from, double to) {
+        if (bounds.length == 0 || !(from <= to)) {
+            return EMPTY;
+        }
+        long first = (long) Math.floor((from - bounds[bounds.length - 1]) / period);
+        long last = (long) Math.ceil((to - bounds[0]) / period);
+        double[] result = new double[(int) (last - first + 1) * bounds.length];
+        int size = 0;
+        for (long k = first; k <= last; k++) {
+            double delta = k * period;
+            for (int i = 0; i < bounds.length; i += 2) {
+                double start = bounds[i] + delta;
+                double end = bounds[i + 1] + delta;
+                if (end < from || start > to) {
+                    continue;
+                }
+                //pieces that meet at a period boundary can be a rounding error apart
+                if (size > 0 && start <= result[size - 1] + EPSILON) {
+                    result[size - 1] = Math.max(result[size - 1], end);
+                } else {
+                    result[size++] = start;
+                    result[size++] = end;
+                }
+            }
+        }
+        return new IntervalSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * @return this set as a BandWindows
+     */
+    public BandWindows toWindows() {
+        int count = size();
+        double[] starts = new double[count];
+        double[] ends = new double[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = bounds[2 * i];
+            ends[i] = bounds[2 * i + 1];
+        }
+        return new BandWindows(starts, ends, count);
+    }
+
+    /**
+     * sorts a pair of parallel arrays between lo and hi (inclusive) by the
+     * first array
+     */
+    static void sort(double[] keys, double[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < keys[lo]) {
+                swap(keys, values, mid, lo);
+            }
+            if (keys[hi] < keys[lo]) {
+                swap(keys, values, hi, lo);
+            }
+            if (keys[hi] < keys[mid]) {
+                swap(keys, values, hi, mid);
+            }
+            double pivot = keys[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            //recurse into the smaller half to keep the stack shallow
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j);
+                lo = i;
+            } else {
+                sort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            double key = keys[i];
+            double value = values[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(double[] keys, double[] values, int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == null || !(other instanceof IntervalSet)) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        return Arrays.equals(bounds, ((IntervalSet) other).bounds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bounds);
+    }
+
+    @Override
+    public String toString() {
+        return toWindows().toString();
+    }
+}
@@ -0,0 +1,307 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A grid of coordinated arterials whose intersections may be shared. Every
+ * intersection of the grid is a node, and each arterial is a
+ * {@link CorridorSpec} plus the node at each of its intersections. A node
+ * that sits on two arterials is one signal: its offset is a single shift
+ * that moves its cycles on every arterial through it, so the offsets around
+ * any loop of the grid always close.
+ * <p>
+ * The arterials are kept as they were given (on one shared clock) and the
+ * node shifts are kept apart from them, so shifting a node copies one array
+ * and every arterial is shared with the network it came from. The network
+ * is immutable and can be shared between threads. {@link NetworkBands}
+ * computes the bands of every arterial from it.
+ */
+public final class Network {
+
+    private final CorridorSpec[] arterials;
+    //the node at each intersection of each arterial
+    private final int[][] nodes;
+    //the arterials through each node, in order
+    private final int[][] arterialsAt;
+    //the cycle length each node runs
+    private final double[] period;
+    private final double[] shifts;
+
+    /**
+     * creates a network with every node where its arterials put it
+     *
+     * @param arterials the arterials, all on one clock and with the same
+     *                  system cycle length
+     * @param nodes     the node of each intersection of each arterial.
+     *                  Nodes are numbered from 0 and every number up to the
+     *                  largest has to be used
+     * @throws IllegalArgumentException if an arterial and its nodes do not
+     *                                  match, an arterial passes a node twice
+     *                                  or a node runs different cycle lengths
+     *                                  on different arterials
+     */
+    public Network(List<CorridorSpec> arterials, List<int[]> nodes) {
+        if (arterials.size() != nodes.size()) {
+            throw new IllegalArgumentException("expected nodes for " + arterials.size()
+                                               + " arterials");
+        }
+        this.arterials = arterials.toArray(new CorridorSpec[0]);
+        this.nodes = new int[arterials.size()][];
+        int nodeCount = 0;
+        for (int a = 0; a < this.arterials.length; a++) {
+            this.nodes[a] = nodes.get(a).clone();
+            if (this.nodes[a].length != this.arterials[a].size()) {
+                throw new IllegalArgumentException("arterial " + a + " has "
+                                                   + this.arterials[a].size()
+                                                   + " intersections");
+            }
+            if (this.arterials[a].getCycleLen() != this.arterials[0].getCycleLen()) {
+                throw new IllegalArgumentException("every arterial needs the same cycle length");
+            }
+            for (int node : this.nodes[a]) {
+                if (node < 0) {
+                    throw new IllegalArgumentException("node numbers can not be negative");
+                }
+                nodeCount = Math.max(nodeCount, node + 1);
+            }
+        }
+        List<List<Integer>> through = new ArrayList<>();
+        for (int n = 0; n < nodeCount; n++) {
+            through.add(new ArrayList<>());
+        }
+        period = new double[nodeCount];
+        for (int a = 0; a < this.arterials.length; a++) {
+            for (int k = 0; k < this.nodes[a].length; k++) {
+                int node = this.nodes[a][k];
+                List<Integer> curr = through.get(node);
+                if (!curr.isEmpty() && curr.get(curr.size() - 1) == a) {
+                    throw new IllegalArgumentException("arterial " + a + " passes node " + node
+                                                       + " twice");
+                }
+                double cycleLen = this.arterials[a].getWindowsOut().getCycleLen(k);
+                if (!curr.isEmpty() && period[node] != cycleLen) {
+                    throw new IllegalArgumentException("node " + node
+                                                       + " runs different cycle lengths");
+                }
+                period[node] = cycleLen;
+                curr.add(a);
+            }
+        }
+        arterialsAt = new int[nodeCount][];
+        for (int n = 0; n < nodeCount; n++) {
+            if (through.get(n).isEmpty()) {
+                throw new IllegalArgumentException("node " + n + " is on no arterial");
+            }
+            arterialsAt[n] = new int[through.get(n).size()];
+            for (int j = 0; j < arterialsAt[n].length; j++) {
+                arterialsAt[n][j] = through.get(n).get(j);
+            }
+        }
+        shifts = new double[nodeCount];
+    }
+
+    private Network(Network other, double[] shifts) {
+        this.arterials = other.arterials;
+        this.nodes = other.nodes;
+        this.arterialsAt = other.arterialsAt;
+        this.period = other.period;
+        this.shifts = shifts;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return shifts.length;
+    }
+
+    public int getArterialCount() {
+        return arterials.length;
+    }
+
+    public double getCycleLen() {
+        return arterials.length == 0 ? 0 : arterials[0].getCycleLen();
+    }
+
+    /**
+     * @param a the index of an arterial
+     * @return the arterial as it was given, before any node was shifted
+     */
+    public CorridorSpec getBaseArterial(int a) {
+        return arterials[a];
+    }
+
+    /**
+     * @param a the index of an arterial
+     * @return the arterial with each of its intersections moved by its
+     * node's shift
+     */
+    public CorridorSpec getArterial(int a) {
+        double[] deltas = new double[nodes[a].length];
+        for (int k = 0; k < deltas.length; k++) {
+            deltas[k] = shifts[nodes[a][k]];
+        }
+        return arterials[a].shiftOffsets(deltas);
+    }
+
+    /**
+     * @param a the index of an arterial
+     * @param k the index of an intersection along it
+     * @return the node at that intersection
+     */
+    public int getNode(int a, int k) {
+        return nodes[a][k];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the arterials through it, in order
+     */
+    public int[] getArterialsAt(int node) {
+        return arterialsAt[node].clone();
+    }
+
+    /**
+     * @param node the index of a node
+     * @return how far the node has been shifted from where its arterials put
+     * it, in seconds
+     */
+    public double getShift(int node) {
+        return shifts[node];
+    }
+
+    /**
+     * @param node  the index of a node
+     * @param delta the shift in seconds
+     * @return a copy of this network with one node shifted by delta on every
+     * arterial through it
+     */
+    public Network shift(int node, double delta) {
+        double[] newShifts = shifts.clone();
+        newShifts[node] += delta;
+        return new Network(this, newShifts);
+    }
+
+    /**
+     * @param deltas the shift of each node in seconds
+     * @return a copy of this network with every node shifted
+     */
+    public Network shiftAll(double[] deltas) {
+        if (deltas.length != shifts.length) {
+            throw new IllegalArgumentException("expected shifts for " + shifts.length + " nodes");
+        }
+        double[] newShifts = shifts.clone();
+        for (int n = 0; n < newShifts.length; n++) {
+            newShifts[n] += deltas[n];
+        }
+        return new Network(this, newShifts);
+    }
+
+    /**
+     * @param a     the index of an arterial
+     * @param other another network built from the same arterials
+     * @return whether the arterial is moved the same in both networks, so its
+     * bands are the same
+     */
+    boolean sameArterial(int a, Network other) {
+        if (other.arterials != arterials) {
+            return false;
+        }
+        for (int node : nodes[a]) {
+            if (other.shifts[node] != shifts[node]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * joins an offset plan for each arterial, found on its own (for example
+     * by {@link optimization.MaxbandSolver}), into one shift per node. An
+     * arterial's bands do not change when the whole arterial moves by the
+     * same amount, so each plan is moved as a whole until it agrees with
+     * the plans it shares nodes with, arterial by arterial out from the
+     * first. When the arterials form a loop the last shared node of the
+     * loop may still disagree: the plans do not close around it. The node
+     * keeps the shift of the first arterial to reach it and the disagreement
+     * is reported in the result
+     *
+     * @param plans the shift of each intersection of each arterial, in
+     *              arterial order
+     * @return the shift of each node and how far each is from closing
+     */
+    public NetworkPlan join(List<double[]> plans) {
+        if (plans.size() != arterials.length) {
+            throw new IllegalArgumentException("expected plans for " + arterials.length
+                                               + " arterials");
+        }
+        for (int a = 0; a < arterials.length; a++) {
+            if (plans.get(a).length != nodes[a].length) {
+                throw new IllegalArgumentException("expected a plan for " + nodes[a].length
+                                                   + " intersections on arterial " + a);
+            }
+        }
+        double[] result = new double[shifts.length];
+        boolean[] placed = new boolean[shifts.length];
+        double[] moves = new double[arterials.length];
+        boolean[] reached = new boolean[arterials.length];
+        int[] queue = new int[arterials.length];
+        for (int root = 0; root < arterials.length; root++) {
+            if (reached[root]) {
+                continue;
+            }
+            reached[root] = true;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = root;
+            while (head < tail) {
+                int a = queue[head++];
+                for (int k = 0; k < nodes[a].length; k++) {
+                    int node = nodes[a][k];
+                    if (!placed[node]) {
+                        placed[node] = true;
+                        result[node] = plans.get(a)[k] + moves[a];
+                    }
+                    for (int b : arterialsAt[node]) {
+                        if (!reached[b]) {
+                            reached[b] = true;
+                            moves[b] = result[node] - plans.get(b)[indexOf(b, node)];
+                            queue[tail++] = b;
+                        }
+                    }
+                }
+            }
+        }
+        double[] misclosure = new double[shifts.length];
+        for (int a = 0; a < arterials.length; a++) {
+            for (int k = 0; k < nodes[a].length; k++) {
+                int node = nodes[a][k];
+                double cycleLen = period[node];
+                double off = BandEngine.mod(plans.get(a)[k] + moves[a] - result[node]
+                                            + cycleLen / 2, cycleLen) - cycleLen / 2;
+                misclosure[node] = Math.max(misclosure[node], Math.abs(off));
+            }
+        }
+        return new NetworkPlan(result, misclosure);
+    }
+
+    /**
+     * @return the position of a node along an arterial
+     */
+    private int indexOf(int a, int node) {
+        for (int k = 0; k < nodes[a].length; k++) {
+            if (nodes[a][k] == node) {
+                return k;
+            }
+        }
+        throw new IllegalArgumentException("node " + node + " is not on arterial " + a);
+    }
+
+    @Override
+    public String toString() {
+        return "{arterials: " + Arrays.deepToString(nodes) + " shifts: "
+               + Arrays.toString(shifts) + "}";
+    }
+}
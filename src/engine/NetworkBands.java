@@ -0,0 +1,115 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Keeps the bands of every arterial of a {@link Network} up to date. Each
+ * update is handed a new network, and only the arterials through a node
+ * whose shift changed since the last one are computed again. Those are run
+ * side by side on a fork/join pool, each with {@link BandEngine} on its own
+ * snapshot of the arterial, so nothing is shared between them but the
+ * immutable network.
+ * <p>
+ * The results are meant to be owned by one thread (the one calling
+ * update), the same as a {@link BandIndex}.
+ */
+public final class NetworkBands {
+
+    private final ForkJoinPool pool;
+
+    private Network network;
+    private BandResult[] results = new BandResult[0];
+    private int recomputed;
+
+    /**
+     * @param pool the pool to compute arterials on
+     */
+    public NetworkBands(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * moves to a new state of the network, computing the bands of every
+     * arterial it changed
+     *
+     * @param next the network as it is now
+     * @return the bands of each arterial, in arterial order
+     */
+    public BandResult[] update(Network next) {
+        BandResult[] nextResults = new BandResult[next.getArterialCount()];
+        List<Arterial> stale = new ArrayList<>();
+        for (int a = 0; a < nextResults.length; a++) {
+            if (network != null && a < results.length && next.sameArterial(a, network)) {
+                nextResults[a] = results[a];
+            } else {
+                stale.add(new Arterial(next, a, nextResults));
+            }
+        }
+        if (stale.size() == 1) {
+            stale.get(0).compute();
+        } else if (!stale.isEmpty()) {
+            pool.invoke(new Arterials(stale));
+        }
+        network = next;
+        results = nextResults;
+        recomputed = stale.size();
+        return results.clone();
+    }
+
+    /**
+     * @param a the index of an arterial
+     * @return its bands as of the last update
+     */
+    public BandResult get(int a) {
+        return results[a];
+    }
+
+    /**
+     * @return the network as of the last update, or null before the first
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return how many arterials the last update had to compute
+     */
+    public int getRecomputed() {
+        return recomputed;
+    }
+
+    private static final class Arterial extends RecursiveAction {
+
+        private final Network network;
+        private final int index;
+        private final BandResult[] results;
+
+        private Arterial(Network network, int index, BandResult[] results) {
+            this.network = network;
+            this.index = index;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            results[index] = BandEngine.compute(network.getArterial(index));
+        }
+    }
+
+    private static final class Arterials extends RecursiveAction {
+
+        private final List<Arterial> arterials;
+
+        private Arterials(List<Arterial> arterials) {
+            this.arterials = arterials;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(arterials);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package engine;
+
+/**
+ * One shift per node of a {@link Network}, made by joining the plans of its
+ * arterials, and how far each node is from where the plans of the
+ * arterials through it wanted it
+ */
+public final class NetworkPlan {
+
+    private final double[] shifts;
+    private final double[] misclosure;
+
+    NetworkPlan(double[] shifts, double[] misclosure) {
+        this.shifts = shifts;
+        this.misclosure = misclosure;
+    }
+
+    /**
+     * @return a copy of the shift of each node in seconds, ready for
+     * {@link Network#shiftAll(double[])}
+     */
+    public double[] getShifts() {
+        return shifts.clone();
+    }
+
+    public double getShift(int node) {
+        return shifts[node];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the most any arterial's plan disagrees with the node's shift,
+     * in seconds and at most half a cycle. Only nodes that close a loop of
+     * arterials can disagree
+     */
+    public double getMisclosure(int node) {
+        return misclosure[node];
+    }
+
+    /**
+     * @return the largest misclosure over every node
+     */
+    public double getMaxMisclosure() {
+        double max = 0;
+        for (double curr : misclosure) {
+            max = Math.max(max, curr);
+        }
+        return max;
+    }
+
+    /**
+     * @param tolerance the misclosure in seconds that still counts as closed
+     * @return whether the plans close around every loop
+     */
+    public boolean isClosed(double tolerance) {
+        return getMaxMisclosure() <= tolerance;
+    }
+
+    @Override
+    public String toString() {
+        return "{nodes: " + shifts.length + " misclosure: " + getMaxMisclosure() + "}";
+    }
+}
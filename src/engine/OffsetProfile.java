@@ -0,0 +1,233 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Inbound, outbound and total bandwidth as a function of how far one
+ * intersection is shifted from where it is now, over one cycle [0, cycleLen].
+ * Bandwidth here is the total width of all band windows in a direction.
+ * <p>
+ * Shifting one intersection slides its green across the green that every
+ * other intersection shares, so each direction's bandwidth is a sum of
+ * trapezoids (the overlap of two intervals sliding past each other) and is
+ * piecewise linear. The profile is stored exactly as its breakpoints and is
+ * built in one pass over the slope changes instead of by sampling.
+ */
+public final class OffsetProfile {
+
+    private final double cycleLen;
+    private final double[] deltas;
+    private final double[] inbound;
+    private final double[] outbound;
+
+    private OffsetProfile(double cycleLen, double[] deltas, double[] inbound, double[] outbound) {
+        this.cycleLen = cycleLen;
+        this.deltas = deltas;
+        this.inbound = inbound;
+        this.outbound = outbound;
+    }
+
+    /**
+     * combines the piecewise linear inbound and outbound functions into one
+     * profile over their merged breakpoints
+     *
+     * @param cycleLen the cycle length
+     * @param inbound  the inbound function as {breakpoints, values}
+     * @param outbound the outbound function as {breakpoints, values}
+     * @return a new OffsetProfile
+     */
+    static OffsetProfile combine(double cycleLen, double[][] inbound, double[][] outbound) {
+        double[] merged = new double[inbound[0].length + outbound[0].length];
+        System.arraycopy(inbound[0], 0, merged, 0, inbound[0].length);
+        System.arraycopy(outbound[0], 0, merged, inbound[0].length, outbound[0].length);
+        Arrays.sort(merged);
+        int size = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (size == 0 || merged[i] - merged[size - 1] > IntervalSet.EPSILON) {
+                merged[size++] = merged[i];
+            }
+        }
+        double[] deltas = Arrays.copyOf(merged, size);
+        double[] in = new double[size];
+        double[] out = new double[size];
+        for (int i = 0; i < size; i++) {
+            in[i] = interpolate(inbound[0], inbound[1], deltas[i]);
+            out[i] = interpolate(outbound[0], outbound[1], deltas[i]);
+        }
+        return new OffsetProfile(cycleLen, deltas, in, out);
+    }
+
+    /**
+     * computes the length of fixed intersected with (sliding + delta) for
+     * every delta in [0, cycleLen]
+     *
+     * @param fixed    the set that stays put
+     * @param sliding  the set that is shifted by delta
+     * @param cycleLen the cycle length
+     * @return the function as {breakpoints, values}
+     */
+    static double[][] slide(IntervalSet fixed, IntervalSet sliding, double cycleLen) {
+        int pairs = fixed.size() * sliding.size();
+        double[] eventAt = new double[4 * pairs];
+        double[] slopeChange = new double[4 * pairs];
+        int numEvents = 0;
+        double value = 0;
+        double slope = 0;
+        for (int i = 0; i < fixed.size(); i++) {
+            double fStart = fixed.getStart(i);
+            double fEnd = fixed.getEnd(i);
+            for (int j = 0; j < sliding.size(); j++) {
+                double sStart = sliding.getStart(j);
+                double sEnd = sliding.getEnd(j);
+                //the overlap of [fStart, fEnd] and [sStart + d, sEnd + d] is a trapezoid in d
+                double[] at = {fStart - sEnd, fEnd - sEnd, fStart - sStart, fEnd - sStart};
+                double[] change = {1, -1, -1, 1};
+                for (int k = 0; k < 4; k++) {
+                    if (at[k] <= 0) {
+                        slope += change[k];
+                        value += change[k] * (0 - at[k]);
+                    } else if (at[k] < cycleLen) {
+                        eventAt[numEvents] = at[k];
+                        slopeChange[numEvents] = change[k];
+                        numEvents++;
+                    }
+                }
+            }
+        }
+        IntervalSet.sort(eventAt, slopeChange, 0, numEvents - 1);
+        double[] x = new double[numEvents + 2];
+        double[] y = new double[numEvents + 2];
+        int size = 0;
+        x[size] = 0;
+        y[size++] = value;
+        double prev = 0;
+        for (int i = 0; i < numEvents; i++) {
+            value += slope * (eventAt[i] - prev);
+            prev = eventAt[i];
+            slope += slopeChange[i];
+            x[size] = prev;
+            y[size++] = value;
+        }
+        value += slope * (cycleLen - prev);
+        x[size] = cycleLen;
+        y[size++] = value;
+        return new double[][]{Arrays.copyOf(x, size), Arrays.copyOf(y, size)};
+    }
+
+    public double getCycleLen() {
+        return cycleLen;
+    }
+
+    /**
+     * @return the number of breakpoints in this profile
+     */
+    public int size() {
+        return deltas.length;
+    }
+
+    public double getDelta(int i) {
+        return deltas[i];
+    }
+
+    public double getInbound(int i) {
+        return inbound[i];
+    }
+
+    public double getOutbound(int i) {
+        return outbound[i];
+    }
+
+    public double getTotal(int i) {
+        return inbound[i] + outbound[i];
+    }
+
+    /**
+     * @param delta a shift in seconds. It is modded with the cycle length
+     * @return the inbound bandwidth after shifting by delta
+     */
+    public double inboundAt(double delta) {
+        return interpolate(deltas, inbound, BandEngine.mod(delta, cycleLen));
+    }
+
+    /**
+     * @param delta a shift in seconds. It is modded with the cycle length
+     * @return the outbound bandwidth after shifting by delta
+     */
+    public double outboundAt(double delta) {
+        return interpolate(deltas, outbound, BandEngine.mod(delta, cycleLen));
+    }
+
+    /**
+     * @param delta a shift in seconds. It is modded with the cycle length
+     * @return the inbound plus outbound bandwidth after shifting by delta
+     */
+    public double totalAt(double delta) {
+        return inboundAt(delta) + outboundAt(delta);
+    }
+
+    /**
+     * finds the shift that gives the most total bandwidth. A piecewise linear
+     * function always peaks at one of its breakpoints, so only those are
+     * checked. Ties go to the smallest move
+     *
+     * @return the best shift in (-cycleLen / 2, cycleLen / 2]
+     */
+    public double bestDelta() {
+        return bestDeltaNear(0, cycleLen / 2);
+    }
+
+    /**
+     * finds the shift within reach of a target that gives the most total
+     * bandwidth. Ties go to the shift closest to the target
+     *
+     * @param target the shift being asked for
+     * @param reach  how far from the target to look
+     * @return the best shift in [target - reach, target + reach]
+     */
+    public double bestDeltaNear(double target, double reach) {
+        double best = target;
+        double bestValue = totalAt(target);
+        double[] ends = {target - reach, target + reach};
+        for (double end : ends) {
+            double value = totalAt(end);
+            if (value > bestValue + IntervalSet.EPSILON) {
+                best = end;
+                bestValue = value;
+            }
+        }
+        long first = (long) Math.floor((target - reach) / cycleLen);
+        long last = (long) Math.ceil((target + reach) / cycleLen);
+        for (long k = first; k <= last; k++) {
+            for (int i = 0; i < deltas.length; i++) {
+                double candidate = deltas[i] + k * cycleLen;
+                if (Math.abs(candidate - target) > reach) {
+                    continue;
+                }
+                double value = inbound[i] + outbound[i];
+                if (value > bestValue + IntervalSet.EPSILON
+                    || (Math.abs(value - bestValue) <= IntervalSet.EPSILON
+                        && Math.abs(candidate - target) < Math.abs(best - target))) {
+                    best = candidate;
+                    bestValue = value;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static double interpolate(double[] x, double[] y, double at) {
+        int i = Arrays.binarySearch(x, at);
+        if (i >= 0) {
+            return y[i];
+        }
+        int hi = -i - 1;
+        if (hi == 0) {
+            return y[0];
+        }
+        if (hi == x.length) {
+            return y[x.length - 1];
+        }
+        int lo = hi - 1;
+        return y[lo] + (y[hi] - y[lo]) * (at - x[lo]) / (x[hi] - x[lo]);
+    }
+}
@@ -0,0 +1,188 @@
+package engine;
+
+/**
+ * How much usable green two intersections share in each direction for every
+ * relative offset between them. The relative offset is the second
+ * intersection's outbound offset minus the first's, so dragging either one
+ * only changes where the table is read, not the table itself.
+ * <p>
+ * Each usable green is a single arc of the cycle, so the overlap of two of
+ * them sliding past each other is the circular cross-correlation of two
+ * boxes: a trapezoid made of at most a few linear pieces. The whole table is
+ * built exactly from those pieces with {@link OffsetProfile#slide} instead of
+ * by sampling and transforming the discretized greens.
+ * <p>
+ * Tables are only built for corridors where every intersection runs the
+ * system cycle with one green window per direction (see
+ * {@link #supports(CorridorSpec)}). They read the red times and the system
+ * cycle length alone, so they can not describe a half or double cycled
+ * intersection or a green split into several windows.
+ */
+public final class PairTable {
+
+    //where the inbound to outbound offset differences are kept in the key
+    private static final int IN_OUT_FIRST = 6;
+    private static final int IN_OUT_SECOND = 10;
+
+    private final int first;
+    private final int second;
+    private final double[] key;
+    private final OffsetProfile profile;
+
+    private PairTable(int first, int second, double[] key, OffsetProfile profile) {
+        this.first = first;
+        this.second = second;
+        this.key = key;
+        this.profile = profile;
+    }
+
+    /**
+     * builds the table for two intersections of a corridor
+     *
+     * @param spec   the corridor
+     * @param first  the index of the first intersection
+     * @param second the index of the second intersection
+     * @return a new PairTable
+     * @throws IllegalArgumentException if the corridor is not supported
+     */
+    public static PairTable between(CorridorSpec spec, int first, int second) {
+        if (!supports(spec)) {
+            throw new IllegalArgumentException("pair tables need one green window per direction "
+                                               + "on the system cycle");
+        }
+        double cycleLen = spec.getCycleLen();
+        //every arc is laid out as if the intersection's outbound offset were 0
+        IntervalSet inFirst = usableGreen(spec, inboundStart(spec, first),
+                spec.getRedIn(first));
+        IntervalSet inSecond = usableGreen(spec, inboundStart(spec, second),
+                spec.getRedIn(second));
+        IntervalSet outFirst = usableGreen(spec, outboundStart(spec, first),
+                spec.getRedOut(first));
+        IntervalSet outSecond = usableGreen(spec, outboundStart(spec, second),
+                spec.getRedOut(second));
+        double[][] inbound = OffsetProfile.slide(inFirst,
+                inSecond.unroll(cycleLen, -cycleLen, cycleLen), cycleLen);
+        double[][] outbound = OffsetProfile.slide(outFirst,
+                outSecond.unroll(cycleLen, -cycleLen, cycleLen), cycleLen);
+        return new PairTable(first, second, key(spec, first, second),
+                OffsetProfile.combine(cycleLen, inbound, outbound));
+    }
+
+    /**
+     * @param spec a corridor
+     * @return whether every intersection runs the system cycle with one
+     * green window per direction, so tables can be built for it
+     */
+    public static boolean supports(CorridorSpec spec) {
+        return spec.isSingleCycle() && spec.getWindowsIn().getWindowCount() == spec.size()
+               && spec.getWindowsOut().getWindowCount() == spec.size();
+    }
+
+    /**
+     * @param spec   the corridor
+     * @param first  the index of the first intersection
+     * @param second the index of the second intersection
+     * @return the relative offset the two intersections are at in spec
+     */
+    public static double relativeOffset(CorridorSpec spec, int first, int second) {
+        return spec.getOffsetOut(second) - spec.getOffsetOut(first);
+    }
+
+    /**
+     * checks if this table still describes two intersections of a corridor.
+     * Only the offsets of the two intersections may have changed
+     *
+     * @param spec the corridor
+     * @return whether or not this table can be used for spec
+     */
+    public boolean matches(CorridorSpec spec) {
+        if (second >= spec.size()) {
+            return false;
+        }
+        double[] other = key(spec, first, second);
+        for (int i = 0; i < key.length; i++) {
+            double diff = Math.abs(key[i] - other[i]);
+            if (i == IN_OUT_FIRST || i == IN_OUT_SECOND) {
+                //the inbound to outbound difference can wrap around the cycle
+                diff = Math.min(diff, key[0] - diff);
+            }
+            if (diff > IntervalSet.EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getFirst() {
+        return first;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+
+    /**
+     * @return the whole table as a piecewise linear function of the relative
+     * offset over one cycle
+     */
+    public OffsetProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @param relativeOffset the second intersection's outbound offset minus
+     *                       the first's
+     * @return the inbound green shared at that relative offset
+     */
+    public double inboundAt(double relativeOffset) {
+        return profile.inboundAt(relativeOffset);
+    }
+
+    /**
+     * @param relativeOffset the second intersection's outbound offset minus
+     *                       the first's
+     * @return the outbound green shared at that relative offset
+     */
+    public double outboundAt(double relativeOffset) {
+        return profile.outboundAt(relativeOffset);
+    }
+
+    /**
+     * @param relativeOffset the second intersection's outbound offset minus
+     *                       the first's
+     * @return the inbound plus outbound green shared at that relative offset
+     */
+    public double totalAt(double relativeOffset) {
+        return profile.totalAt(relativeOffset);
+    }
+
+    private static double inboundStart(CorridorSpec spec, int i) {
+        return spec.getOffsetIn(i) - spec.getOffsetOut(i) + spec.getTravelTime(i);
+    }
+
+    private static double outboundStart(CorridorSpec spec, int i) {
+        return -spec.getTravelTime(i);
+    }
+
+    /**
+     * the arc of the cycle a red from offset - red + ext to offset + sul
+     * does not block
+     */
+    private static IntervalSet usableGreen(CorridorSpec spec, double offset, double red) {
+        double sul = spec.getStartUpLoss();
+        return IntervalSet.arc(offset + sul, spec.getCycleLen() - red + spec.getExtOfGreen() - sul,
+                spec.getCycleLen());
+    }
+
+    /**
+     * everything the table depends on besides the two outbound offsets
+     */
+    private static double[] key(CorridorSpec spec, int first, int second) {
+        double cycleLen = spec.getCycleLen();
+        return new double[]{cycleLen, spec.getStartUpLoss(), spec.getExtOfGreen(),
+                spec.getTravelTime(first), spec.getRedIn(first), spec.getRedOut(first),
+                BandEngine.mod(spec.getOffsetIn(first) - spec.getOffsetOut(first), cycleLen),
+                spec.getTravelTime(second), spec.getRedIn(second), spec.getRedOut(second),
+                BandEngine.mod(spec.getOffsetIn(second) - spec.getOffsetOut(second), cycleLen)};
+    }
+}
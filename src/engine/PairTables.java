@@ -0,0 +1,74 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * A cache of the {@link PairTable} for every adjacent pair of intersections
+ * in a corridor. Tables are rebuilt only when something they depend on
+ * changes (a red or green time, a distance, the speed or the global signal
+ * settings). Moving offsets around never throws a table away. Corridors
+ * {@link PairTable#supports(CorridorSpec)} turns down get no tables.
+ * <p>
+ * Like {@link BandIndex}, a cache is meant to be owned by one thread.
+ */
+public final class PairTables {
+
+    private PairTable[] tables = new PairTable[0];
+
+    /**
+     * brings every table up to date with a corridor
+     *
+     * @param spec the corridor
+     * @return the number of tables that had to be rebuilt
+     */
+    public int update(CorridorSpec spec) {
+        if (!PairTable.supports(spec)) {
+            clear();
+            return 0;
+        }
+        int pairs = Math.max(0, spec.size() - 1);
+        if (tables.length != pairs) {
+            tables = Arrays.copyOf(tables, pairs);
+        }
+        int rebuilt = 0;
+        for (int i = 0; i < pairs; i++) {
+            if (tables[i] == null || !tables[i].matches(spec)) {
+                tables[i] = PairTable.between(spec, i, i + 1);
+                rebuilt++;
+            }
+        }
+        return rebuilt;
+    }
+
+    /**
+     * drops every table so they are all rebuilt on the next update
+     */
+    public void clear() {
+        tables = new PairTable[0];
+    }
+
+    /**
+     * @return the number of adjacent pairs as of the last update
+     */
+    public int size() {
+        return tables.length;
+    }
+
+    /**
+     * @param index the index of the first intersection of the pair
+     * @return the table for intersections index and index + 1 as of the last
+     * update
+     */
+    public PairTable get(int index) {
+        return tables[index];
+    }
+
+    /**
+     * @return a copy of every table as of the last update, in corridor
+     * order. The tables themselves are immutable and can be handed to
+     * another thread
+     */
+    public PairTable[] toArray() {
+        return tables.clone();
+    }
+}
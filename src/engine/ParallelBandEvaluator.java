@@ -0,0 +1,135 @@
+package engine;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Evaluates many offset plans for the same corridor across every core. The
+ * plans are split with fork/join into chunks, and each chunk is copied into
+ * a {@link CandidateBatch} and run through a {@link BatchBandEngine}. Every
+ * worker thread keeps its own batch and scratch between chunks, so the only
+ * allocation per call is the result arrays.
+ * <p>
+ * A plan is the shift of each intersection from where it is in the spec, the
+ * same as {@link CorridorSpec#shiftOffsets(double[])}. The evaluator is
+ * thread-safe. The per-thread batches belong to the evaluator, so a caller
+ * that scores plans for one corridor over and over should keep one
+ * evaluator rather than make a new one per call.
+ */
+public final class ParallelBandEvaluator {
+
+    //plans per leaf task. Big enough for the batch loops to pay off
+    private static final int CHUNK = 256;
+
+    private final BatchBandEngine engine;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Chunk> chunks;
+
+    /**
+     * creates an evaluator that runs on the common fork/join pool
+     *
+     * @param spec the corridor
+     */
+    public ParallelBandEvaluator(CorridorSpec spec) {
+        this(spec, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param spec the corridor
+     * @param pool the pool to run on
+     */
+    public ParallelBandEvaluator(CorridorSpec spec, ForkJoinPool pool) {
+        this.engine = new BatchBandEngine(spec);
+        this.pool = pool;
+        this.chunks = ThreadLocal.withInitial(() -> new Chunk(engine));
+    }
+
+    /**
+     * evaluates a list of plans
+     *
+     * @param plans the shift of each intersection for every plan
+     * @return the bandwidths and band starts, in the same order as plans
+     */
+    public BatchResult evaluate(List<double[]> plans) {
+        //copied so that splitting never walks a linked list
+        double[][] array = plans.toArray(new double[plans.size()][]);
+        int count = array.length;
+        for (double[] plan : array) {
+            if (plan.length != engine.size()) {
+                throw new IllegalArgumentException("expected plans for " + engine.size()
+                                                   + " intersections");
+            }
+        }
+        BatchResult result = new BatchResult(new double[count], new double[count],
+                new double[count], new double[count]);
+        if (count > 0) {
+            pool.invoke(new Task(array, 0, count, result));
+        }
+        return result;
+    }
+
+    /**
+     * evaluates a stream of plans. The stream is collected first so the
+     * plans can be split evenly
+     *
+     * @param plans the shift of each intersection for every plan
+     * @return the bandwidths and band starts, in encounter order
+     */
+    public BatchResult evaluate(Stream<double[]> plans) {
+        return evaluate(plans.collect(Collectors.toList()));
+    }
+
+    /**
+     * one worker thread's reusable batch, scratch and result buffers
+     */
+    private static final class Chunk {
+
+        private final CandidateBatch batch;
+        private final BatchBandEngine.Scratch scratch;
+        private final double[] inbound = new double[CHUNK];
+        private final double[] outbound = new double[CHUNK];
+        private final double[] inboundStart = new double[CHUNK];
+        private final double[] outboundStart = new double[CHUNK];
+
+        private Chunk(BatchBandEngine engine) {
+            batch = new CandidateBatch(engine.size(), CHUNK);
+            scratch = engine.newScratch(CHUNK);
+        }
+    }
+
+    private final class Task extends RecursiveAction {
+
+        private final double[][] plans;
+        private final int from;
+        private final int to;
+        private final BatchResult result;
+
+        private Task(double[][] plans, int from, int to, BatchResult result) {
+            this.plans = plans;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = from + (to - from) / 2;
+                invokeAll(new Task(plans, from, mid, result), new Task(plans, mid, to, result));
+                return;
+            }
+            Chunk chunk = chunks.get();
+            int count = to - from;
+            for (int k = 0; k < count; k++) {
+                chunk.batch.setPlan(k, plans[from + k]);
+            }
+            engine.evaluate(chunk.batch, count, chunk.scratch, chunk.inbound, chunk.outbound,
+                    chunk.inboundStart, chunk.outboundStart);
+            result.fill(from, count, chunk.inbound, chunk.outbound, chunk.inboundStart,
+                    chunk.outboundStart);
+        }
+    }
+}
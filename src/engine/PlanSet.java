@@ -0,0 +1,242 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The time-of-day plans of one corridor (AM, midday, PM, overnight...). The
+ * set holds the geometry once (distances, travel times and their spread,
+ * the start-up loss and the extension of green) and a {@link TimingPlan} per
+ * period of the
+ * day. When a plan is added, every intersection it times the same way as a
+ * plan already in the set is swapped for that plan's
+ * {@link IntersectionSpec}, so unchanged intersections are stored once.
+ * <p>
+ * The set is immutable and can be shared between threads. Adding or
+ * removing a plan returns a new set that shares the rest.
+ */
+public final class PlanSet {
+
+    private final double startUpLoss;
+    private final double extOfGreen;
+    private final double[] dist;
+    private final double[] travelTime;
+    private final double[] travelSpread;
+    private final TimingPlan[] plans;
+
+    private PlanSet(double startUpLoss, double extOfGreen, double[] dist, double[] travelTime,
+                    double[] travelSpread, TimingPlan[] plans) {
+        this.startUpLoss = startUpLoss;
+        this.extOfGreen = extOfGreen;
+        this.dist = dist;
+        this.travelTime = travelTime;
+        this.travelSpread = travelSpread;
+        this.plans = plans;
+    }
+
+    /**
+     * @param spec a corridor
+     * @return an empty set with the corridor's geometry
+     */
+    public static PlanSet of(CorridorSpec spec) {
+        double[] dist = new double[spec.size()];
+        double[] travelTime = new double[spec.size()];
+        double[] travelSpread = new double[spec.size()];
+        for (int i = 0; i < dist.length; i++) {
+            dist[i] = spec.getDist(i);
+            travelTime[i] = spec.getTravelTime(i);
+            travelSpread[i] = spec.getTravelSpread(i);
+        }
+        return new PlanSet(spec.getStartUpLoss(), spec.getExtOfGreen(), dist, travelTime,
+                travelSpread, new TimingPlan[0]);
+    }
+
+    /**
+     * @param spec a corridor
+     * @return whether the corridor has this set's geometry, so its timing
+     * can be added as a plan
+     */
+    public boolean fits(CorridorSpec spec) {
+        if (spec.size() != dist.length || spec.getStartUpLoss() != startUpLoss
+            || spec.getExtOfGreen() != extOfGreen) {
+            return false;
+        }
+        for (int i = 0; i < dist.length; i++) {
+            if (spec.getDist(i) != dist[i] || spec.getTravelTime(i) != travelTime[i]
+                || spec.getTravelSpread(i) != travelSpread[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * adds the timing of a corridor as a plan, or replaces the plan with the
+     * same name
+     *
+     * @param name the name of the plan
+     * @param spec the corridor, with this set's geometry
+     * @return a new set holding the plan
+     * @throws IllegalArgumentException if the corridor does not fit this set
+     */
+    public PlanSet withPlan(String name, CorridorSpec spec) {
+        if (!fits(spec)) {
+            throw new IllegalArgumentException("the corridor does not have this plan set's "
+                                               + "geometry");
+        }
+        IntersectionSpec[] intersections = new IntersectionSpec[dist.length];
+        for (int i = 0; i < intersections.length; i++) {
+            intersections[i] = share(i, spec.getIntersection(i));
+        }
+        TimingPlan plan = new TimingPlan(name, spec.getCycleLen(), intersections);
+        int index = indexOf(name);
+        TimingPlan[] newPlans = index < 0 ? Arrays.copyOf(plans, plans.length + 1)
+                : plans.clone();
+        newPlans[index < 0 ? plans.length : index] = plan;
+        return new PlanSet(startUpLoss, extOfGreen, dist, travelTime, travelSpread,
+                newPlans);
+    }
+
+    /**
+     * @return the intersection of a plan already in the set that is timed
+     * the same as the given one, or the given one if there is none
+     */
+    private IntersectionSpec share(int i, IntersectionSpec intersection) {
+        for (TimingPlan curr : plans) {
+            if (curr.getIntersection(i).equals(intersection)) {
+                return curr.getIntersection(i);
+            }
+        }
+        return intersection;
+    }
+
+    /**
+     * @param name the name of a plan
+     * @return a new set without that plan
+     */
+    public PlanSet without(String name) {
+        int index = indexOf(name);
+        if (index < 0) {
+            return this;
+        }
+        List<TimingPlan> newPlans = new ArrayList<>(Arrays.asList(plans));
+        newPlans.remove(index);
+        return new PlanSet(startUpLoss, extOfGreen, dist, travelTime, travelSpread,
+                newPlans.toArray(new TimingPlan[0]));
+    }
+
+    /**
+     * @return the number of plans
+     */
+    public int size() {
+        return plans.length;
+    }
+
+    public TimingPlan getPlan(int k) {
+        return plans[k];
+    }
+
+    /**
+     * @return how many distinct intersection timings the set holds. An
+     * intersection shared by several plans is counted once
+     */
+    public int countIntersections() {
+        int count = 0;
+        for (int k = 0; k < plans.length; k++) {
+            for (int i = 0; i < dist.length; i++) {
+                boolean seen = false;
+                for (int j = 0; j < k && !seen; j++) {
+                    seen = plans[j].getIntersection(i) == plans[k].getIntersection(i);
+                }
+                count += seen ? 0 : 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param name the name of a plan
+     * @return its index, or -1 if there is no plan with that name
+     */
+    public int indexOf(String name) {
+        for (int k = 0; k < plans.length; k++) {
+            if (plans[k].getName().equals(name)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param k the index of a plan
+     * @return the corridor run with that plan
+     */
+    public CorridorSpec toSpec(int k) {
+        CorridorSpec spec = CorridorSpec.of(plans[k].getCycleLen(), startUpLoss, extOfGreen,
+                travelTime, plans[k].getIntersections());
+        double[] latest = new double[travelTime.length];
+        boolean spread = false;
+        for (int i = 0; i < latest.length; i++) {
+            latest[i] = travelTime[i] + travelSpread[i];
+            spread |= travelSpread[i] != 0;
+        }
+        return spread ? spec.withTravelTimes(travelTime, latest) : spec;
+    }
+
+    /**
+     * computes the bands of every plan at once, one task per plan on a
+     * fork/join pool
+     *
+     * @param pool the pool to run on
+     * @return the bands of each plan, in plan order
+     */
+    public BandResult[] evaluate(ForkJoinPool pool) {
+        BandResult[] results = new BandResult[plans.length];
+        List<Plan> tasks = new ArrayList<>();
+        for (int k = 0; k < plans.length; k++) {
+            tasks.add(new Plan(k, results));
+        }
+        if (!tasks.isEmpty()) {
+            pool.invoke(new Plans(tasks));
+        }
+        return results;
+    }
+
+    private final class Plan extends RecursiveAction {
+
+        private final int index;
+        private final BandResult[] results;
+
+        private Plan(int index, BandResult[] results) {
+            this.index = index;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            results[index] = BandEngine.compute(toSpec(index));
+        }
+    }
+
+    private static final class Plans extends RecursiveAction {
+
+        private final List<Plan> plans;
+
+        private Plans(List<Plan> plans) {
+            this.plans = plans;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(plans);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{plans: " + Arrays.toString(plans) + "}";
+    }
+}
@@ -0,0 +1,104 @@
+package engine;
+
+/**
+ * An immutable [start, end] pair. This is the computational counterpart of
+ * {@link dataClasses.Range}: it carries the same values without any
+ * properties or bindings, so it costs two doubles and an object header
+ * instead of a small graph of listeners.
+ */
+public final class RangeValue implements Comparable<RangeValue> {
+
+    private final double start;
+    private final double end;
+
+    /**
+     * initializes the start and end of this range
+     *
+     * @param start the starting value
+     * @param end   the ending value
+     */
+    public RangeValue(double start, double end) {
+        if (!(start <= end)) {
+            throw new IllegalArgumentException(
+                    "starting value must be less than or equal to ending value");
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    public double getStart() {
+        return start;
+    }
+
+    public double getEnd() {
+        return end;
+    }
+
+    public double magnitude() {
+        return end - start;
+    }
+
+    /**
+     * checks if the test value is within this range
+     *
+     * @param testVal the value to be tested
+     * @return a boolean of whether or not the value is in this range
+     */
+    public boolean contains(double testVal) {
+        return start <= testVal && testVal <= end;
+    }
+
+    /**
+     * checks if this range overlaps another range at all
+     *
+     * @param other the test range
+     * @return a boolean of whether or not these ranges overlap
+     */
+    public boolean intersects(RangeValue other) {
+        return start <= other.end && other.start <= end;
+    }
+
+    /**
+     * output a new range that is this range shifted by delta
+     *
+     * @param delta the amount of shift
+     * @return a new, shifted RangeValue
+     */
+    public RangeValue shift(double delta) {
+        return new RangeValue(start + delta, end + delta);
+    }
+
+    /**
+     * @return this range as a single-interval IntervalSet
+     */
+    public IntervalSet toIntervalSet() {
+        return IntervalSet.of(start, end);
+    }
+
+    @Override
+    public int compareTo(RangeValue other) {
+        return Double.compare(start, other.start);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == null || !(other instanceof RangeValue)) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        RangeValue that = (RangeValue) other;
+        return start == that.start && end == that.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(start) + Double.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "]";
+    }
+}
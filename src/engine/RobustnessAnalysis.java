@@ -0,0 +1,277 @@
+package engine;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A Monte Carlo estimate of how a plan's bands hold up when the controllers
+ * do not run exactly as timed. Coordinated-actuated controllers give unused
+ * side street time back to the coordinated phase, so its green starts early
+ * by a different amount every cycle, and their offsets drift as they
+ * recover from preemption and transitions. Each sample draws, for every
+ * intersection, one offset drift shared by both directions and one early
+ * return per direction, then measures the same total band width that
+ * {@link BandEngine} gives.
+ * <p>
+ * An early return of e seconds starts a green e seconds sooner and leaves
+ * its end where it was, so the red before it is e seconds shorter. Negative
+ * draws start the green late. Draws are clamped so no red or green goes
+ * negative.
+ * <p>
+ * Every intersection is sampled as its first green window and the red after
+ * it, so the other windows of a multi-window cycle count as red.
+ * <p>
+ * Samples are split with fork/join into chunks. Each chunk draws from its
+ * own {@link SplittableRandom} split off the seed, so a run is repeatable
+ * for a given seed and pool size does not matter, and nothing is allocated
+ * per sample. The analysis can be shared between threads, and a run can be
+ * cancelled from any of them: chunks that have not started yet are skipped.
+ */
+public final class RobustnessAnalysis {
+
+    //samples per leaf task
+    private static final int CHUNK = 1 << 15;
+
+    private final CorridorSpec spec;
+    private final Distribution earlyReturn;
+    private final Distribution offsetDrift;
+    private final ForkJoinPool pool;
+    private final int size;
+    private final double cycleLen;
+    private final int repeats;
+
+    //where each intersection's red starts as timed, and how long it is
+    private final double[] redStartIn;
+    private final double[] redStartOut;
+    private final double[] redLengthIn;
+    private final double[] redLengthOut;
+
+    private volatile boolean cancelled;
+
+    /**
+     * creates an analysis that runs on the common fork/join pool
+     *
+     * @param spec        the corridor
+     * @param earlyReturn how much sooner than timed a coordinated green
+     *                    starts, drawn per cycle
+     * @param offsetDrift how far an intersection is from its offset, drawn
+     *                    per intersection
+     */
+    public RobustnessAnalysis(CorridorSpec spec, Distribution earlyReturn,
+                              Distribution offsetDrift) {
+        this(spec, earlyReturn, offsetDrift, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param spec        the corridor
+     * @param earlyReturn how much sooner than timed a coordinated green
+     *                    starts, drawn per cycle
+     * @param offsetDrift how far an intersection is from its offset, drawn
+     *                    per intersection
+     * @param pool        the pool to run on
+     */
+    public RobustnessAnalysis(CorridorSpec spec, Distribution earlyReturn,
+                              Distribution offsetDrift, ForkJoinPool pool) {
+        this.spec = spec;
+        this.earlyReturn = earlyReturn;
+        this.offsetDrift = offsetDrift;
+        this.pool = pool;
+        this.size = spec.size();
+        this.cycleLen = spec.getCycleLen();
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        //an early return can stretch the first green to the whole cycle
+        repeats = (int) Math.ceil(Math.max(cycleLen + ext - sul, 0) / cycleLen) + 1;
+        redStartIn = new double[size];
+        redStartOut = new double[size];
+        redLengthIn = new double[size];
+        redLengthOut = new double[size];
+        for (int i = 0; i < size; i++) {
+            redStartIn[i] = spec.getOffsetIn(i) + spec.getTravelTime(i) - spec.getRedIn(i) + ext;
+            redStartOut[i] = spec.getOffsetOut(i) - spec.getTravelTime(i) - spec.getTravelSpread(i)
+                             - spec.getRedOut(i) + ext;
+            redLengthIn[i] = spec.getRedIn(i) + spec.getTravelSpread(i) + sul - ext;
+            redLengthOut[i] = spec.getRedOut(i) + spec.getTravelSpread(i) + sul - ext;
+        }
+    }
+
+    /**
+     * stops a running analysis after the chunks it is on. Its result only
+     * holds the samples drawn so far and is meant to be thrown away
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @param samples the number of perturbed cycles to evaluate
+     * @param seed    the seed of the random streams
+     * @return the spread of the bandwidths, or of the samples drawn before
+     * the analysis was cancelled
+     */
+    public BandPercentiles run(long samples, long seed) {
+        if (samples < 0) {
+            throw new IllegalArgumentException("samples must not be negative");
+        }
+        Scratch scratch = new Scratch();
+        double nominalIn = 0;
+        double nominalOut = 0;
+        if (size > 0) {
+            nominalIn = openTime(spec.getOffsetIn(0), spec.getGreenIn(0), redStartIn,
+                    redLengthIn, scratch.drift, scratch.returnIn, scratch);
+            nominalOut = openTime(spec.getOffsetOut(0), spec.getGreenOut(0), redStartOut,
+                    redLengthOut, scratch.drift, scratch.returnOut, scratch);
+        }
+        if (samples == 0) {
+            return newPercentiles(nominalIn, nominalOut);
+        }
+        return pool.invoke(new Task(samples, new SplittableRandom(seed), nominalIn, nominalOut));
+    }
+
+    private BandPercentiles newPercentiles(double nominalIn, double nominalOut) {
+        return new BandPercentiles(cycleLen + spec.getExtOfGreen() - spec.getStartUpLoss(),
+                nominalIn, nominalOut);
+    }
+
+    /**
+     * one leaf task's draws and sweep buffers
+     */
+    private final class Scratch {
+
+        private final double[] drift = new double[size];
+        private final double[] returnIn = new double[size];
+        private final double[] returnOut = new double[size];
+        private final double[] starts = new double[size * repeats];
+        private final double[] ends = new double[size * repeats];
+    }
+
+    /**
+     * fills the scratch with one sample's draws
+     */
+    private void draw(SplittableRandom random, Scratch scratch) {
+        for (int i = 0; i < size; i++) {
+            scratch.drift[i] = offsetDrift.sample(random);
+            scratch.returnIn[i] = clamp(earlyReturn.sample(random), -spec.getGreenIn(i),
+                    spec.getRedIn(i));
+            scratch.returnOut[i] = clamp(earlyReturn.sample(random), -spec.getGreenOut(i),
+                    spec.getRedOut(i));
+        }
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
+    /**
+     * @param offset  the first intersection's offset as timed
+     * @param green   the first intersection's green as timed
+     * @param drift   each intersection's offset drift
+     * @param returns each intersection's early return
+     * @return how much of the first intersection's perturbed green is not
+     * covered by a perturbed red
+     */
+    private double openTime(double offset, double green, double[] redStarts,
+                            double[] redLengths, double[] drift, double[] returns,
+                            Scratch scratch) {
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        double windowStart = offset + drift[0] - returns[0] + sul;
+        double windowLength = green + returns[0] + ext - sul;
+        if (!(windowLength > 0)) {
+            return 0;
+        }
+        double[] starts = scratch.starts;
+        double[] ends = scratch.ends;
+        //reds that wrap past the end of the cycle cover the start of the window
+        double coveredFromZero = 0;
+        int pieces = 0;
+        for (int i = 0; i < size; i++) {
+            double length = redLengths[i] - returns[i];
+            if (!(length > 0)) {
+                continue;
+            }
+            if (length >= cycleLen) {
+                return 0;
+            }
+            double x = redStarts[i] + drift[i] - windowStart;
+            x -= cycleLen * Math.floor(x / cycleLen);
+            for (double start = x - cycleLen; start < windowLength; start += cycleLen) {
+                double end = Math.min(start + length, windowLength);
+                if (start <= 0) {
+                    coveredFromZero = Math.max(coveredFromZero, end);
+                } else {
+                    starts[pieces] = start;
+                    ends[pieces++] = end;
+                }
+            }
+        }
+        IntervalSet.sort(starts, ends, 0, pieces - 1);
+        double open = 0;
+        double cursor = coveredFromZero;
+        for (int p = 0; p <= pieces; p++) {
+            double gapEnd = p < pieces ? starts[p] : windowLength;
+            if (gapEnd > cursor) {
+                open += gapEnd - cursor;
+            }
+            if (p < pieces) {
+                cursor = Math.max(cursor, ends[p]);
+            }
+        }
+        return open;
+    }
+
+    private final class Task extends RecursiveTask<BandPercentiles> {
+
+        private final long samples;
+        private final SplittableRandom random;
+        private final double nominalIn;
+        private final double nominalOut;
+
+        private Task(long samples, SplittableRandom random, double nominalIn,
+                     double nominalOut) {
+            this.samples = samples;
+            this.random = random;
+            this.nominalIn = nominalIn;
+            this.nominalOut = nominalOut;
+        }
+
+        @Override
+        protected BandPercentiles compute() {
+            if (samples > CHUNK) {
+                long half = samples / 2;
+                //split before forking so the streams do not depend on scheduling
+                Task left = new Task(half, random.split(), nominalIn, nominalOut);
+                Task right = new Task(samples - half, random, nominalIn, nominalOut);
+                left.fork();
+                BandPercentiles result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+            BandPercentiles result = newPercentiles(nominalIn, nominalOut);
+            if (cancelled) {
+                return result;
+            }
+            if (size == 0) {
+                for (long s = 0; s < samples; s++) {
+                    result.add(0, 0);
+                }
+                return result;
+            }
+            Scratch scratch = new Scratch();
+            for (long s = 0; s < samples; s++) {
+                draw(random, scratch);
+                double inbound = openTime(spec.getOffsetIn(0), spec.getGreenIn(0), redStartIn,
+                        redLengthIn, scratch.drift, scratch.returnIn, scratch);
+                double outbound = openTime(spec.getOffsetOut(0), spec.getGreenOut(0),
+                        redStartOut, redLengthOut, scratch.drift, scratch.returnOut, scratch);
+                result.add(inbound, outbound);
+            }
+            return result;
+        }
+    }
+}
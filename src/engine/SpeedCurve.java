@@ -0,0 +1,118 @@
+package engine;
+
+/**
+ * The width of the widest band in one direction as a function of the
+ * progression speed, as found by {@link SpeedSensitivity}.
+ * <p>
+ * The curve is made of segments in increasing order of speed. Within a
+ * segment the same two edges bound the widest band and each edge moves at a
+ * constant rate against one over the speed, so the width is exactly
+ * intercept + slope / speed. The ends of the segments are the breakpoints,
+ * where the band-limiting intersections change.
+ */
+public final class SpeedCurve {
+
+    //the edge of the first intersection's green rather than another intersection's red
+    public static final int FIRST_GREEN = -1;
+
+    private final double[] fromSpeed;
+    private final double[] toSpeed;
+    private final double[] intercept;
+    private final double[] slope;
+    private final int[] leftLimit;
+    private final int[] rightLimit;
+
+    /**
+     * creates a curve from the first count entries of the inputted arrays,
+     * which are in increasing order of speed and cover one range without
+     * gaps. The arrays are copied
+     */
+    SpeedCurve(double[] fromSpeed, double[] toSpeed, double[] intercept, double[] slope,
+               int[] leftLimit, int[] rightLimit, int count) {
+        this.fromSpeed = new double[count];
+        this.toSpeed = new double[count];
+        this.intercept = new double[count];
+        this.slope = new double[count];
+        this.leftLimit = new int[count];
+        this.rightLimit = new int[count];
+        System.arraycopy(fromSpeed, 0, this.fromSpeed, 0, count);
+        System.arraycopy(toSpeed, 0, this.toSpeed, 0, count);
+        System.arraycopy(intercept, 0, this.intercept, 0, count);
+        System.arraycopy(slope, 0, this.slope, 0, count);
+        System.arraycopy(leftLimit, 0, this.leftLimit, 0, count);
+        System.arraycopy(rightLimit, 0, this.rightLimit, 0, count);
+    }
+
+    /**
+     * @return the number of segments
+     */
+    public int size() {
+        return fromSpeed.length;
+    }
+
+    public double getFromSpeed(int k) {
+        return fromSpeed[k];
+    }
+
+    public double getToSpeed(int k) {
+        return toSpeed[k];
+    }
+
+    /**
+     * @param k the index of the segment
+     * @return the index of the intersection whose red ends the widest band
+     * on the early side, or FIRST_GREEN. -1 is also returned when there is no
+     * band in the segment
+     */
+    public int getLeftLimit(int k) {
+        return leftLimit[k];
+    }
+
+    /**
+     * @param k the index of the segment
+     * @return the index of the intersection whose red ends the widest band
+     * on the late side, or FIRST_GREEN
+     */
+    public int getRightLimit(int k) {
+        return rightLimit[k];
+    }
+
+    /**
+     * @param k     the index of the segment
+     * @param speed a speed within the segment
+     * @return the width of the widest band at that speed
+     */
+    public double bandAt(int k, double speed) {
+        return Math.max(0, intercept[k] + slope[k] / speed);
+    }
+
+    /**
+     * @param speed a speed within the range of the curve
+     * @return the width of the widest band at that speed
+     */
+    public double bandAt(double speed) {
+        int lo = 0;
+        int hi = fromSpeed.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (fromSpeed[mid] <= speed) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return bandAt(lo, speed);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int k = 0; k < fromSpeed.length; k++) {
+            if (k > 0) {
+                result.append(", ");
+            }
+            result.append(fromSpeed[k]).append(": ").append(bandAt(k, fromSpeed[k]));
+        }
+        return result.append("]").toString();
+    }
+}
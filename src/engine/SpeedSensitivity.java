@@ -0,0 +1,340 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Finds how the widest band in each direction changes with the progression
+ * speed, without sampling speeds.
+ * <p>
+ * The speed only enters the band calculation through the travel times.
+ * Every link's speed is scaled by the same factor as the progression speed,
+ * so links with their own speed keep their ratio to it and the travel time
+ * to each intersection is its travel time at the design speed times
+ * designSpeed / speed. Every red region then moves at a constant rate
+ * against one over the speed (called the pace below). While the edges of
+ * the red regions and of the first intersection's green stay in the same
+ * order, the widest band is bounded by the same two edges and its width is
+ * exact in closed form. The tracker sorts the edges once, works out the
+ * next point where two neighbouring edges cross, a red region slides over
+ * an edge of the green, or another band overtakes the widest one, and
+ * jumps straight there. Only those breakpoints are ever evaluated.
+ */
+public final class SpeedSensitivity {
+
+    //how far past a breakpoint the edges are sorted again, as a fraction of the range
+    private static final double NUDGE = 1e-9;
+
+    private SpeedSensitivity() {}
+
+    /**
+     * tracks the outbound band. Outbound cycles are shifted back by the
+     * travel time to their intersection
+     *
+     * @param spec        the corridor, with its travel times at the design
+     *                    speed
+     * @param designSpeed the progression speed the travel times in spec are
+     *                    for
+     * @param minSpeed    the slowest progression speed
+     * @param maxSpeed    the fastest progression speed
+     * @return the widest outbound band from minSpeed to maxSpeed
+     */
+    public static SpeedCurve outbound(CorridorSpec spec, double designSpeed, double minSpeed,
+                                      double maxSpeed) {
+        int size = spec.size();
+        double[] offsets = new double[size];
+        double[] rates = new double[size];
+        double[] reds = new double[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = spec.getOffsetOut(i);
+            rates[i] = -spec.getTravelTime(i) * designSpeed;
+            reds[i] = spec.getRedOut(i);
+        }
+        return track(spec, size == 0 ? 0 : spec.getOffsetOut(0),
+                size == 0 ? 0 : spec.getGreenOut(0), offsets, rates, reds, minSpeed, maxSpeed);
+    }
+
+    /**
+     * tracks the inbound band. Inbound cycles are shifted forward by the
+     * travel time to their intersection
+     *
+     * @param spec        the corridor, with its travel times at the design
+     *                    speed
+     * @param designSpeed the progression speed the travel times in spec are
+     *                    for
+     * @param minSpeed    the slowest progression speed
+     * @param maxSpeed    the fastest progression speed
+     * @return the widest inbound band from minSpeed to maxSpeed
+     */
+    public static SpeedCurve inbound(CorridorSpec spec, double designSpeed, double minSpeed,
+                                     double maxSpeed) {
+        int size = spec.size();
+        double[] offsets = new double[size];
+        double[] rates = new double[size];
+        double[] reds = new double[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = spec.getOffsetIn(i);
+            rates[i] = spec.getTravelTime(i) * designSpeed;
+            reds[i] = spec.getRedIn(i);
+        }
+        return track(spec, size == 0 ? 0 : spec.getOffsetIn(0),
+                size == 0 ? 0 : spec.getGreenIn(0), offsets, rates, reds, minSpeed, maxSpeed);
+    }
+
+    /**
+     * walks from the fastest speed to the slowest one, breakpoint by
+     * breakpoint
+     *
+     * @param spec        the corridor
+     * @param firstOffset the offset of the first intersection
+     * @param firstGreen  the green time of the first intersection
+     * @param offsets     the offset of each intersection
+     * @param rates       how far each intersection's cycle moves per unit of
+     *                    pace
+     * @param reds        the red time of each intersection
+     * @param minSpeed    the slowest progression speed
+     * @param maxSpeed    the fastest progression speed
+     * @return the curve
+     */
+    private static SpeedCurve track(CorridorSpec spec, double firstOffset, double firstGreen,
+                                    double[] offsets, double[] rates, double[] reds,
+                                    double minSpeed, double maxSpeed) {
+        if (!(minSpeed > 0 && minSpeed < maxSpeed)) {
+            throw new IllegalArgumentException("expected 0 < minSpeed < maxSpeed");
+        }
+        int size = offsets.length;
+        double[] redStarts = new double[size];
+        double[] redEnds = new double[size];
+        for (int i = 0; i < size; i++) {
+            redStarts[i] = offsets[i] - reds[i] + spec.getExtOfGreen();
+            redEnds[i] = offsets[i] + spec.getStartUpLoss();
+        }
+        double greenStart = firstOffset + spec.getStartUpLoss();
+        double greenEnd = firstOffset + firstGreen + spec.getExtOfGreen();
+        double first = 1 / maxSpeed;
+        double last = 1 / minSpeed;
+
+        //the segments in increasing order of pace
+        int count = 0;
+        double[] from = new double[16];
+        double[] intercept = new double[16];
+        double[] slope = new double[16];
+        int[] leftLimit = new int[16];
+        int[] rightLimit = new int[16];
+        double pace = first;
+        while (pace < last) {
+            double probe = Math.min(pace + NUDGE * (last - first), (pace + last) / 2);
+            Snapshot snapshot = size == 0 || !(greenStart < greenEnd) ? null
+                    : new Snapshot(spec.getCycleLen(), greenStart, greenEnd, redStarts,
+                    redEnds, rates, probe);
+            double next = snapshot == null ? last : Math.min(last, snapshot.next);
+            double currIntercept = snapshot == null ? 0 : snapshot.intercept();
+            double currSlope = snapshot == null ? 0 : snapshot.slope();
+            int currLeft = snapshot == null ? SpeedCurve.FIRST_GREEN : snapshot.leftLimit();
+            int currRight = snapshot == null ? SpeedCurve.FIRST_GREEN : snapshot.rightLimit();
+            //an event that did not change the widest band is not a breakpoint
+            if (count > 0 && leftLimit[count - 1] == currLeft
+                && rightLimit[count - 1] == currRight
+                && Math.abs(intercept[count - 1] - currIntercept) < 1e-9
+                && Math.abs(slope[count - 1] - currSlope) < 1e-9) {
+                pace = next;
+                continue;
+            }
+            if (count == from.length) {
+                from = Arrays.copyOf(from, count * 2);
+                intercept = Arrays.copyOf(intercept, count * 2);
+                slope = Arrays.copyOf(slope, count * 2);
+                leftLimit = Arrays.copyOf(leftLimit, count * 2);
+                rightLimit = Arrays.copyOf(rightLimit, count * 2);
+            }
+            from[count] = pace;
+            intercept[count] = currIntercept;
+            slope[count] = currSlope;
+            leftLimit[count] = currLeft;
+            rightLimit[count] = currRight;
+            count++;
+            pace = next;
+        }
+
+        //flip into increasing order of speed
+        double[] fromSpeed = new double[count];
+        double[] toSpeed = new double[count];
+        double[] flippedIntercept = new double[count];
+        double[] flippedSlope = new double[count];
+        int[] flippedLeft = new int[count];
+        int[] flippedRight = new int[count];
+        for (int k = 0; k < count; k++) {
+            int j = count - 1 - k;
+            fromSpeed[k] = j + 1 < count ? 1 / from[j + 1] : minSpeed;
+            toSpeed[k] = j == 0 ? maxSpeed : 1 / from[j];
+            flippedIntercept[k] = intercept[j];
+            flippedSlope[k] = slope[j];
+            flippedLeft[k] = leftLimit[j];
+            flippedRight[k] = rightLimit[j];
+        }
+        return new SpeedCurve(fromSpeed, toSpeed, flippedIntercept, flippedSlope, flippedLeft,
+                flippedRight, count);
+    }
+
+    /**
+     * The edges near the first intersection's green at one pace, the bands
+     * between them and the next breakpoint. Every edge is at base + rate *
+     * pace
+     */
+    private static final class Snapshot {
+
+        private final double[] base;
+        private final double[] rate;
+        private final int[] owner;
+        private int edges;
+        //the edges that bound the widest band, or -1 if there is no band
+        private int left = -1;
+        private int right = -1;
+        private double next = Double.POSITIVE_INFINITY;
+
+        private Snapshot(double period, double greenStart, double greenEnd, double[] redStarts,
+                         double[] redEnds, double[] rates, double pace) {
+            int size = redStarts.length;
+            int capacity = 2;
+            for (int i = 0; i < size; i++) {
+                double length = redEnds[i] - redStarts[i];
+                capacity += 2 * ((int) ((greenEnd - greenStart + length) / period) + 2);
+            }
+            base = new double[capacity];
+            rate = new double[capacity];
+            owner = new int[capacity];
+            addEdge(greenStart, 0, SpeedCurve.FIRST_GREEN);
+            addEdge(greenEnd, 0, SpeedCurve.FIRST_GREEN);
+
+            //every copy of a red region that overlaps the green, as a start edge and an end edge
+            for (int i = 0; i < size; i++) {
+                if (!(redStarts[i] < redEnds[i])) {
+                    continue;
+                }
+                double start = redStarts[i] + rates[i] * pace;
+                double end = redEnds[i] + rates[i] * pace;
+                long firstCopy = (long) Math.ceil((greenStart - end) / period);
+                long lastCopy = (long) Math.floor((greenEnd - start) / period);
+                for (long k = firstCopy; k <= lastCopy; k++) {
+                    addEdge(redStarts[i] + k * period, rates[i], i);
+                    addEdge(redEnds[i] + k * period, rates[i], i);
+                }
+            }
+            double[] at = new double[edges];
+            for (int e = 0; e < edges; e++) {
+                at[e] = base[e] + rate[e] * pace;
+            }
+
+            //sweep the red regions in order of their start, leaving the bands between them
+            int copies = (edges - 2) / 2;
+            Integer[] order = new Integer[copies];
+            for (int c = 0; c < copies; c++) {
+                order[c] = c;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(at[2 + 2 * a], at[2 + 2 * b]));
+            int[] bandLeft = new int[copies + 1];
+            int[] bandRight = new int[copies + 1];
+            int bands = 0;
+            int cursor = 0;
+            for (int c : order) {
+                int start = 2 + 2 * c;
+                if (at[start] > at[cursor]) {
+                    bandLeft[bands] = cursor;
+                    bandRight[bands] = at[start] >= at[1] ? 1 : start;
+                    bands++;
+                    if (at[start] >= at[1]) {
+                        cursor = 1;
+                        break;
+                    }
+                }
+                if (at[start + 1] > at[cursor]) {
+                    cursor = start + 1;
+                }
+            }
+            if (at[1] > at[cursor]) {
+                bandLeft[bands] = cursor;
+                bandRight[bands] = 1;
+                bands++;
+            }
+            double widest = 0;
+            for (int b = 0; b < bands; b++) {
+                double width = at[bandRight[b]] - at[bandLeft[b]];
+                if (width > widest) {
+                    widest = width;
+                    left = bandLeft[b];
+                    right = bandRight[b];
+                }
+            }
+
+            //neighbouring edges that are closing on each other
+            Integer[] sorted = new Integer[edges];
+            for (int e = 0; e < edges; e++) {
+                sorted[e] = e;
+            }
+            Arrays.sort(sorted, (a, b) -> Double.compare(at[a], at[b]));
+            for (int e = 1; e < edges; e++) {
+                int behind = sorted[e - 1];
+                int ahead = sorted[e];
+                if (rate[behind] > rate[ahead]) {
+                    later(pace, (base[ahead] - base[behind]) / (rate[behind] - rate[ahead]));
+                }
+            }
+            //copies of red regions sliding onto the green from outside it
+            for (int i = 0; i < size; i++) {
+                if (rates[i] == 0 || !(redStarts[i] < redEnds[i])) {
+                    continue;
+                }
+                for (double edge : new double[]{redStarts[i], redEnds[i]}) {
+                    for (double target : new double[]{greenStart, greenEnd}) {
+                        double gap = target - edge - rates[i] * pace;
+                        double step = BandEngine.mod(rates[i] > 0 ? gap : -gap, period)
+                                      / Math.abs(rates[i]);
+                        later(pace, pace + (step == 0 ? period / Math.abs(rates[i]) : step));
+                    }
+                }
+            }
+            //another band growing past the widest one
+            if (left >= 0) {
+                for (int b = 0; b < bands; b++) {
+                    double gain = rate[bandRight[b]] - rate[bandLeft[b]] - slope();
+                    if (gain > 0) {
+                        double behind = widest - (at[bandRight[b]] - at[bandLeft[b]]);
+                        later(pace, pace + behind / gain);
+                    }
+                }
+            }
+        }
+
+        private void addEdge(double edgeBase, double edgeRate, int edgeOwner) {
+            base[edges] = edgeBase;
+            rate[edges] = edgeRate;
+            owner[edges] = edgeOwner;
+            edges++;
+        }
+
+        /**
+         * moves the next breakpoint up to a crossing if it comes after the
+         * current pace
+         */
+        private void later(double pace, double crossing) {
+            if (crossing > pace) {
+                next = Math.min(next, crossing);
+            }
+        }
+
+        private double intercept() {
+            return left < 0 ? 0 : base[right] - base[left];
+        }
+
+        private double slope() {
+            return left < 0 ? 0 : rate[right] - rate[left];
+        }
+
+        private int leftLimit() {
+            return left < 0 ? SpeedCurve.FIRST_GREEN : owner[left];
+        }
+
+        private int rightLimit() {
+            return left < 0 ? SpeedCurve.FIRST_GREEN : owner[right];
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One named timing plan of a {@link PlanSet}: a cycle length and the cycles
+ * of every intersection. Intersections are immutable, so plans that time an
+ * intersection the same way hold the same {@link IntersectionSpec} and only
+ * the intersections that differ cost memory.
+ */
+public final class TimingPlan {
+
+    private final String name;
+    private final double cycleLen;
+    private final IntersectionSpec[] intersections;
+
+    TimingPlan(String name, double cycleLen, IntersectionSpec[] intersections) {
+        this.name = name;
+        this.cycleLen = cycleLen;
+        this.intersections = intersections;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getCycleLen() {
+        return cycleLen;
+    }
+
+    /**
+     * @return the number of intersections
+     */
+    public int size() {
+        return intersections.length;
+    }
+
+    public IntersectionSpec getIntersection(int i) {
+        return intersections[i];
+    }
+
+    /**
+     * @return every intersection in corridor order, as a list that can not
+     * be modified
+     */
+    public List<IntersectionSpec> getIntersections() {
+        return Collections.unmodifiableList(Arrays.asList(intersections));
+    }
+
+    /**
+     * @param i            the index of an intersection
+     * @param intersection its new timing
+     * @return a copy of this plan with one intersection replaced. Every other
+     * intersection is shared with this plan
+     */
+    public TimingPlan with(int i, IntersectionSpec intersection) {
+        IntersectionSpec[] newIntersections = intersections.clone();
+        newIntersections[i] = intersection;
+        return new TimingPlan(name, cycleLen, newIntersections);
+    }
+
+    /**
+     * @param other another plan for the same corridor
+     * @return how many intersections the two plans share
+     */
+    public int countShared(TimingPlan other) {
+        int shared = 0;
+        for (int i = 0; i < intersections.length && i < other.intersections.length; i++) {
+            if (intersections[i] == other.intersections[i]) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    @Override
+    public String toString() {
+        return "{" + name + ": " + cycleLen + " s " + Arrays.toString(intersections) + "}";
+    }
+}
@@ -0,0 +1,84 @@
+package engine;
+
+/**
+ * The travel time from the dist = 0 axis to every intersection when each
+ * link has its own progression speed. Link i runs from intersection i - 1
+ * to intersection i (from the axis for the first intersection), and the
+ * travel times are the running sum of the link times, so changing one
+ * link's speed only moves the intersections downstream of it, and all of
+ * them by the same amount.
+ * <p>
+ * Like {@link BandIndex}, this is meant to be owned by one thread.
+ */
+public final class TravelTimes {
+
+    private final double[] length;
+    private final double[] speed;
+    private final double[] travelTime;
+
+    /**
+     * @param dist   the distance offset of each intersection, in corridor
+     *               order
+     * @param speeds the speed on each link
+     */
+    public TravelTimes(double[] dist, double[] speeds) {
+        if (speeds.length != dist.length) {
+            throw new IllegalArgumentException("expected one speed per link");
+        }
+        int size = dist.length;
+        length = new double[size];
+        speed = speeds.clone();
+        travelTime = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            length[i] = dist[i] - (i == 0 ? 0 : dist[i - 1]);
+            sum += length[i] / speed[i];
+            travelTime[i] = sum;
+        }
+    }
+
+    /**
+     * @param dist   the distance offset of each intersection
+     * @param speeds the speed on each link
+     * @return the travel time to each intersection as a new array
+     */
+    public static double[] of(double[] dist, double[] speeds) {
+        return new TravelTimes(dist, speeds).toArray();
+    }
+
+    public int size() {
+        return travelTime.length;
+    }
+
+    public double get(int i) {
+        return travelTime[i];
+    }
+
+    public double getLinkSpeed(int link) {
+        return speed[link];
+    }
+
+    /**
+     * changes the speed on one link and moves the travel time of every
+     * intersection downstream of it
+     *
+     * @param link  the index of the link
+     * @param speed the new speed
+     * @return how much later every intersection from link on is reached
+     */
+    public double setLinkSpeed(int link, double speed) {
+        double delta = length[link] / speed - length[link] / this.speed[link];
+        this.speed[link] = speed;
+        for (int i = link; i < travelTime.length; i++) {
+            travelTime[i] += delta;
+        }
+        return delta;
+    }
+
+    /**
+     * @return a copy of the travel time to every intersection
+     */
+    public double[] toArray() {
+        return travelTime.clone();
+    }
+}
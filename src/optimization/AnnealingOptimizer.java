@@ -0,0 +1,607 @@
+package optimization;
+
+import engine.BatchBandEngine;
+import engine.BitsetBandEngine;
+import engine.CandidateBatch;
+import engine.CorridorSpec;
+import engine.OffsetProfile;
+import engine.PairTable;
+import engine.PairTables;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * An anytime offset search for corridors too long to solve exactly with
+ * {@link MaxbandSolver}. Several simulated annealing chains run side by side
+ * on a fork/join pool, and after every round the chains are ranked and the
+ * weakest are replaced by crossovers of the strongest, as in a genetic
+ * algorithm.
+ * <p>
+ * Every chain proposes a whole batch of neighbouring plans at a time and
+ * scores them with one call to a {@link BatchBandEngine}, then takes the
+ * best proposal under the Metropolis rule. For long corridors the proposals
+ * can instead be scored approximately by a {@link BitsetBandEngine} (see
+ * {@link #setResolution(double)}), and only the plans that are reported are
+ * evaluated exactly. Chains climb the bandwidth plus
+ * how well every green covers the stretch of the first green the band
+ * could fill, since long corridors have no band for almost every plan and
+ * the bandwidth alone gives nothing to climb. Each chain draws from its own
+ * SplittableRandom split off the seed, and chains only meet between rounds
+ * in a fixed order, so a seed gives the same plans after the same number of
+ * rounds no matter how the pool schedules the chains. The first chain does
+ * not start at random but from a greedy plan built off the
+ * {@link PairTable}s of the corridor: each intersection in turn is put at the
+ * relative offset that shares the most weighted green with the one before
+ * it. The tables can be handed over from a cache (see
+ * {@link #setPairTables(PairTable[])}), otherwise they are built when the
+ * search starts. Corridors that have no tables start every chain at random.
+ * <p>
+ * The best plan found so far is handed to a listener after every round. A
+ * search can be cancelled from any thread. A round that is cut short is
+ * thrown away, so a cancelled search still returns a reproducible plan.
+ */
+public final class AnnealingOptimizer {
+
+    //how much the green overlap counts next to the bandwidth while climbing
+    private static final double FIT_WEIGHT = 0.5;
+    private static final double SECOND_FIT_WEIGHT = 0.25;
+    //the temperature as a fraction of the cycle length, which is also the size of a move
+    private static final double START_TEMP = 0.25;
+    private static final double END_TEMP = 0.005;
+    //seconds of bandwidth a chain will give up per second of temperature
+    private static final double ACCEPT_SCALE = 0.02;
+
+    private final CorridorSpec spec;
+    private final BatchBandEngine engine;
+    private final ForkJoinPool pool;
+    private final long seed;
+    private final int size;
+    private final double cycleLen;
+
+    //each intersection's usable green before it is shifted
+    private final double[] startOut;
+    private final double[] startIn;
+    private final double[] usableOut;
+    private final double[] usableIn;
+    //the stretch of the first green every usable green should cover, which is as wide as a
+    //band can be
+    private final double targetOut;
+    private final double targetIn;
+    private final double targetLengthOut;
+    private final double targetLengthIn;
+
+    private double weightOut = 1;
+    private double weightIn = 1;
+    private int chains = 8;
+    private int batchSize = 32;
+    private int stepsPerRound = 40;
+    //scores proposals approximately when set
+    private BitsetBandEngine quick;
+    //the shared green of every adjacent pair, which the first chain is seeded from
+    private PairTable[] pairs;
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param spec the corridor. Plans are shifts from the offsets in it
+     * @param seed the seed every random choice is drawn from
+     * @param pool the pool to run chains on
+     */
+    public AnnealingOptimizer(CorridorSpec spec, long seed, ForkJoinPool pool) {
+        this.spec = spec;
+        this.engine = new BatchBandEngine(spec);
+        this.pool = pool;
+        this.seed = seed;
+        this.size = spec.size();
+        this.cycleLen = spec.getCycleLen();
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        startOut = new double[size];
+        startIn = new double[size];
+        usableOut = new double[size];
+        usableIn = new double[size];
+        double narrowestOut = Double.POSITIVE_INFINITY;
+        double narrowestIn = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            startOut[i] = spec.getOffsetOut(i) - spec.getTravelTime(i) + sul;
+            startIn[i] = spec.getOffsetIn(i) + spec.getTravelTime(i) + sul;
+            usableOut[i] = cycleLen - spec.getRedOut(i) + ext - sul;
+            usableIn[i] = cycleLen - spec.getRedIn(i) + ext - sul;
+            narrowestOut = Math.min(narrowestOut, usableOut[i]);
+            narrowestIn = Math.min(narrowestIn, usableIn[i]);
+        }
+        if (size == 0) {
+            targetOut = 0;
+            targetIn = 0;
+            targetLengthOut = 0;
+            targetLengthIn = 0;
+        } else {
+            //the first intersection is never shifted, so the target sits in the widest part of
+            //the first green its own usable green covers
+            double[] out = widestPiece(spec.getOffsetOut(0) + sul, spec.getGreenOut(0) + ext - sul,
+                    startOut[0], usableOut[0]);
+            double[] in = widestPiece(spec.getOffsetIn(0) + sul, spec.getGreenIn(0) + ext - sul,
+                    startIn[0], usableIn[0]);
+            targetLengthOut = Math.max(0, Math.min(out[1], narrowestOut));
+            targetLengthIn = Math.max(0, Math.min(in[1], narrowestIn));
+            targetOut = out[0] + (out[1] - targetLengthOut) / 2;
+            targetIn = in[0] + (in[1] - targetLengthIn) / 2;
+        }
+    }
+
+    /**
+     * @param weightOut the weight on the outbound bandwidth
+     * @param weightIn  the weight on the inbound bandwidth
+     */
+    public void setWeights(double weightOut, double weightIn) {
+        if (weightOut < 0 || weightIn < 0) {
+            throw new IllegalArgumentException("weights can not be negative");
+        }
+        this.weightOut = weightOut;
+        this.weightIn = weightIn;
+    }
+
+    /**
+     * @param chains the number of annealing chains, at least 2
+     */
+    public void setChains(int chains) {
+        if (chains < 2) {
+            throw new IllegalArgumentException("at least 2 chains are needed");
+        }
+        this.chains = chains;
+    }
+
+    /**
+     * @param batchSize      the number of plans each chain proposes per step
+     * @param stepsPerRound  the number of steps each chain takes per round
+     */
+    public void setRoundSize(int batchSize, int stepsPerRound) {
+        if (batchSize < 1 || stepsPerRound < 1) {
+            throw new IllegalArgumentException("rounds can not be empty");
+        }
+        this.batchSize = batchSize;
+        this.stepsPerRound = stepsPerRound;
+    }
+
+    /**
+     * hands over tables that are already built, for example by the cache a
+     * corridor keeps while it is edited, so the search does not build them
+     * again. Tables from before an edit are turned down and the search
+     * builds its own
+     *
+     * @param tables the table of every adjacent pair of the corridor
+     * @return whether the tables describe the corridor this search was made
+     * for and were taken
+     */
+    public boolean setPairTables(PairTable[] tables) {
+        if (tables.length != Math.max(0, size - 1) || !PairTable.supports(spec)) {
+            return false;
+        }
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i].getFirst() != i || !tables[i].matches(spec)) {
+                return false;
+            }
+        }
+        pairs = tables.clone();
+        return true;
+    }
+
+    /**
+     * chooses how proposals are scored. By default every proposal is scored
+     * exactly by a {@link BatchBandEngine}. With a resolution a
+     * {@link BitsetBandEngine} scores them instead, which is faster on long
+     * corridors but may be off by {@link BitsetBandEngine#getErrorBound()}
+     * per band window. Plans handed to the listener or returned are always
+     * evaluated exactly
+     *
+     * @param resolution the slot width in seconds, or 0 to score exactly
+     */
+    public void setResolution(double resolution) {
+        if (resolution < 0) {
+            throw new IllegalArgumentException("resolution can not be negative");
+        }
+        quick = resolution > 0 ? new BitsetBandEngine(spec, resolution) : null;
+    }
+
+    /**
+     * stops a running search after the step it is on. The plans of the
+     * current round are thrown away
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * searches for a given number of rounds, cooling from the start to the
+     * end temperature along the way
+     *
+     * @param rounds   the number of rounds
+     * @param progress receives the best plan so far after every round, on
+     *                 the searching thread. May be null
+     * @return the best plan found. Its node count is the number of plans
+     * evaluated, and it is only marked optimal if the search was not
+     * cancelled
+     */
+    public MaxbandSolution run(int rounds, Consumer<MaxbandSolution> progress) {
+        SplittableRandom master = new SplittableRandom(seed);
+        Chain[] all = new Chain[chains];
+        for (int c = 0; c < chains; c++) {
+            all[c] = new Chain(master.split());
+        }
+        if (pairs == null) {
+            PairTables tables = new PairTables();
+            tables.update(spec);
+            pairs = tables.toArray();
+        }
+        if (pairs.length > 0) {
+            all[0].reset(pairwisePlan());
+        }
+        Point best = all[0].point;
+        for (Chain curr : all) {
+            if (curr.point.beats(best)) {
+                best = curr.point;
+            }
+        }
+        long evaluated = chains;
+        for (int round = 0; round < rounds && !cancelled; round++) {
+            double fraction = rounds == 1 ? 1 : (double) round / (rounds - 1);
+            double temp = START_TEMP * Math.pow(END_TEMP / START_TEMP, fraction) * cycleLen;
+            Step[] steps = new Step[chains];
+            for (int c = 0; c < chains; c++) {
+                steps[c] = new Step(all[c], temp);
+            }
+            pool.invoke(new Round(steps));
+            if (cancelled) {
+                break;
+            }
+            for (Chain curr : all) {
+                curr.commit();
+                if (curr.point.beats(best)) {
+                    best = curr.point;
+                }
+            }
+            breed(all, master);
+            for (Chain curr : all) {
+                if (curr.point.beats(best)) {
+                    best = curr.point;
+                }
+            }
+            evaluated += (long) chains * batchSize * stepsPerRound + chains / 2;
+            if (progress != null) {
+                progress.accept(best.toSolution(evaluated, false));
+            }
+        }
+        return best.toSolution(evaluated, !cancelled);
+    }
+
+    /**
+     * builds a plan one adjacent pair at a time, putting each intersection
+     * at the relative offset to the one before it that shares the most
+     * weighted green. Pair tables peak at one of their breakpoints, so only
+     * those are checked
+     *
+     * @return the shift of each intersection
+     */
+    private double[] pairwisePlan() {
+        double[] plan = new double[size];
+        for (int i = 0; i < pairs.length; i++) {
+            PairTable table = pairs[i];
+            OffsetProfile profile = table.getProfile();
+            double best = 0;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < profile.size(); k++) {
+                double value = weightOut * profile.getOutbound(k)
+                               + weightIn * profile.getInbound(k);
+                if (value > bestValue) {
+                    best = profile.getDelta(k);
+                    bestValue = value;
+                }
+            }
+            plan[i + 1] = wrap(plan[i] + best - PairTable.relativeOffset(spec, i, i + 1));
+        }
+        return plan;
+    }
+
+    /**
+     * ranks the chains and replaces the weaker half with uniform crossovers
+     * of two chains from the stronger half
+     */
+    private void breed(Chain[] all, SplittableRandom random) {
+        Arrays.sort(all, (first, second) -> Double.compare(second.point.energy,
+                first.point.energy));
+        int elite = (all.length + 1) / 2;
+        double[][] children = new double[all.length][];
+        for (int c = elite; c < all.length; c++) {
+            double[] mother = all[random.nextInt(elite)].point.plan;
+            double[] father = all[random.nextInt(elite)].point.plan;
+            children[c] = new double[size];
+            for (int i = 1; i < size; i++) {
+                children[c][i] = random.nextBoolean() ? mother[i] : father[i];
+            }
+        }
+        for (int c = elite; c < all.length; c++) {
+            all[c].reset(children[c]);
+        }
+    }
+
+    /**
+     * scores the first count plans of a batch, exactly unless a resolution
+     * was set. Approximate scores have no band starts
+     *
+     * @param bits scratch from the bitset engine, or null when scoring
+     *             exactly
+     * @param plan a buffer for one plan, used when scoring approximately
+     */
+    private void score(CandidateBatch batch, int count, BatchBandEngine.Scratch scratch,
+                       long[] bits, double[] plan, double[] inbound, double[] outbound,
+                       double[] inStart, double[] outStart) {
+        if (bits == null) {
+            engine.evaluate(batch, count, scratch, inbound, outbound, inStart, outStart);
+            return;
+        }
+        double[] result = new double[2];
+        for (int k = 0; k < count; k++) {
+            for (int i = 0; i < size; i++) {
+                plan[i] = batch.getDelta(k, i);
+            }
+            quick.evaluate(plan, 0, bits, result);
+            inbound[k] = result[0];
+            outbound[k] = result[1];
+            inStart[k] = Double.NaN;
+            outStart[k] = Double.NaN;
+        }
+    }
+
+    private double wrap(double delta) {
+        double result = delta % cycleLen;
+        return result < 0 ? result + cycleLen : result;
+    }
+
+    /**
+     * how much of each intersection's usable green covers the target,
+     * averaged over the intersections and weighted by direction. A long
+     * corridor has no band at all for almost every plan, so the chains climb
+     * this instead until the bands open up. Only each intersection's first
+     * green window is counted, the bands are still scored over every window
+     */
+    private double fit(double[] plan) {
+        if (size == 0) {
+            return 0;
+        }
+        double out = 0;
+        double in = 0;
+        for (int i = 0; i < size; i++) {
+            out += overlap(targetOut, targetLengthOut, startOut[i] + plan[i], usableOut[i]);
+            in += overlap(targetIn, targetLengthIn, startIn[i] + plan[i], usableIn[i]);
+        }
+        out *= weightOut / size;
+        in *= weightIn / size;
+        //the directions pull the shifts apart, so favour whichever is closer to opening up
+        return Math.max(out, in) + SECOND_FIT_WEIGHT * Math.min(out, in);
+    }
+
+    /**
+     * @return the start and length of the longest part of [from, from +
+     * length] covered by one of the arcs [start + m C, start + m C + arc]
+     */
+    private double[] widestPiece(double from, double length, double start, double arc) {
+        if (arc >= cycleLen) {
+            return new double[]{from, length};
+        }
+        double[] result = {from, 0};
+        double curr = start + Math.floor((from - start) / cycleLen) * cycleLen;
+        for (; curr < from + length; curr += cycleLen) {
+            double low = Math.max(curr, from);
+            double high = Math.min(curr + arc, from + length);
+            if (high - low > result[1]) {
+                result[0] = low;
+                result[1] = high - low;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the length of [from, from + length] covered by the arcs
+     * [start + m C, start + m C + arc] for every whole m
+     */
+    private double overlap(double from, double length, double start, double arc) {
+        if (arc >= cycleLen) {
+            return length;
+        }
+        //the last arc that starts at or before from
+        double curr = start + Math.floor((from - start) / cycleLen) * cycleLen;
+        double result = 0;
+        for (; curr < from + length; curr += cycleLen) {
+            result += Math.max(0, Math.min(curr + arc, from + length) - Math.max(curr, from));
+        }
+        return result;
+    }
+
+    /**
+     * @param i        the intersection
+     * @param outbound which direction to center
+     * @return the shift that puts the middle of the intersection's usable
+     * green (its first window) on the middle of the target
+     */
+    private double snap(int i, boolean outbound) {
+        if (outbound) {
+            return targetOut + targetLengthOut / 2 - startOut[i] - usableOut[i] / 2;
+        }
+        return targetIn + targetLengthIn / 2 - startIn[i] - usableIn[i] / 2;
+    }
+
+    /**
+     * one annealing chain: its random stream, the plan it is at, and the
+     * plan it will be at once the current round is committed
+     */
+    private final class Chain {
+
+        private final SplittableRandom random;
+        private Point point;
+        private Point next;
+
+        private Chain(SplittableRandom random) {
+            this.random = random;
+            double[] plan = new double[size];
+            for (int i = 1; i < size; i++) {
+                plan[i] = random.nextDouble() * cycleLen;
+            }
+            reset(plan);
+        }
+
+        private void reset(double[] plan) {
+            CandidateBatch batch = new CandidateBatch(size, 1);
+            batch.setPlan(0, plan);
+            double[] in = new double[1];
+            double[] out = new double[1];
+            double[] inS = new double[1];
+            double[] outS = new double[1];
+            score(batch, 1, engine.newScratch(1), quick == null ? null : quick.newScratch(),
+                    new double[size], in, out, inS, outS);
+            point = new Point(plan, out[0], in[0], outS[0], inS[0]);
+        }
+
+        private void commit() {
+            point = next;
+        }
+    }
+
+    /**
+     * a plan with its bands and its score
+     */
+    private final class Point {
+
+        private final double[] plan;
+        private final double outbound;
+        private final double inbound;
+        private final double outStart;
+        private final double inStart;
+        //the weighted bandwidth, which is what the search is after
+        private final double bands;
+        //what the chains climb: the bandwidth with the fit as a tie breaker
+        private final double energy;
+
+        private Point(double[] plan, double outbound, double inbound, double outStart,
+                      double inStart) {
+            this.plan = plan;
+            this.outbound = outbound;
+            this.inbound = inbound;
+            this.outStart = outStart;
+            this.inStart = inStart;
+            this.bands = weightOut * outbound + weightIn * inbound;
+            this.energy = bands + FIT_WEIGHT * fit(plan);
+        }
+
+        private boolean beats(Point other) {
+            return bands > other.bands || (bands == other.bands && energy > other.energy);
+        }
+
+        private MaxbandSolution toSolution(long evaluated, boolean finished) {
+            if (quick == null) {
+                return new MaxbandSolution(plan.clone(), outbound, inbound, outStart, inStart,
+                        evaluated, finished);
+            }
+            CandidateBatch batch = new CandidateBatch(size, 1);
+            batch.setPlan(0, plan);
+            double[] in = new double[1];
+            double[] out = new double[1];
+            double[] inS = new double[1];
+            double[] outS = new double[1];
+            engine.evaluate(batch, 1, engine.newScratch(1), in, out, inS, outS);
+            return new MaxbandSolution(plan.clone(), out[0], in[0], outS[0], inS[0], evaluated,
+                    finished);
+        }
+    }
+
+    /**
+     * the steps one chain takes in one round. Works on its own plan so that
+     * a cancelled round leaves the chain untouched
+     */
+    private final class Step extends RecursiveAction {
+
+        private final Chain chain;
+        private final double temp;
+
+        private Step(Chain chain, double temp) {
+            this.chain = chain;
+            this.temp = temp;
+        }
+
+        @Override
+        protected void compute() {
+            SplittableRandom random = chain.random;
+            CandidateBatch batch = new CandidateBatch(size, batchSize);
+            BatchBandEngine.Scratch scratch = engine.newScratch(batchSize);
+            double[] inbound = new double[batchSize];
+            double[] outbound = new double[batchSize];
+            double[] inStart = new double[batchSize];
+            double[] outStart = new double[batchSize];
+            long[] bits = quick == null ? null : quick.newScratch();
+            double[] plan = new double[size];
+            Point curr = chain.point;
+            for (int step = 0; step < stepsPerRound && !cancelled; step++) {
+                for (int k = 0; k < batchSize; k++) {
+                    batch.setPlan(k, curr.plan);
+                    if (size < 2) {
+                        continue;
+                    }
+                    //move one or two intersections by up to the temperature, or snap one so
+                    //that its green is centered on the target in one direction
+                    int moves = random.nextInt(4) == 0 ? 2 : 1;
+                    for (int m = 0; m < moves; m++) {
+                        int i = 1 + random.nextInt(size - 1);
+                        double move = (2 * random.nextDouble() - 1) * temp;
+                        if (random.nextInt(4) == 0) {
+                            batch.setDelta(k, i, wrap(snap(i, random.nextDouble() * (weightOut
+                                    + weightIn) < weightOut) + move));
+                        } else {
+                            batch.setDelta(k, i, wrap(batch.getDelta(k, i) + move));
+                        }
+                    }
+                }
+                score(batch, batchSize, scratch, bits, plan, inbound, outbound, inStart,
+                        outStart);
+                Point pick = null;
+                for (int k = 0; k < batchSize; k++) {
+                    Point proposal = new Point(batch.getPlan(k), outbound[k], inbound[k],
+                            outStart[k], inStart[k]);
+                    if (pick == null || proposal.energy > pick.energy) {
+                        pick = proposal;
+                    }
+                }
+                double accept = random.nextDouble();
+                if (pick.energy >= curr.energy
+                    || accept < Math.exp((pick.energy - curr.energy) / (ACCEPT_SCALE * temp))) {
+                    curr = pick;
+                }
+            }
+            chain.next = curr;
+        }
+    }
+
+    /**
+     * runs every chain's steps for one round
+     */
+    private static final class Round extends RecursiveAction {
+
+        private final Step[] steps;
+
+        private Round(Step[] steps) {
+            this.steps = steps;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(steps);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package optimization;
+
+import engine.CorridorSpec;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the best two-way bandwidth a corridor can reach at every cycle
+ * length in a range. Each cycle length is a separate {@link MaxbandSolver}
+ * run on the corridor rebuilt with {@link CorridorSpec#withCycleLen(double)},
+ * and the runs are split across a fork/join pool. The solver's own searches
+ * go on the same pool, so a long sweep and a hard cycle length share the
+ * cores between them.
+ */
+public final class CycleLengthSweep {
+
+    //cycle lengths per leaf task. Each one is a whole optimization
+    private static final int CHUNK = 4;
+
+    private final double weightOut;
+    private final double weightIn;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param weightOut the weight on the outbound bandwidth
+     * @param weightIn  the weight on the inbound bandwidth
+     * @param pool      the pool to run on
+     */
+    public CycleLengthSweep(double weightOut, double weightIn, ForkJoinPool pool) {
+        this.weightOut = weightOut;
+        this.weightIn = weightIn;
+        this.pool = pool;
+    }
+
+    /**
+     * optimizes a corridor at every cycle length from first to last
+     *
+     * @param spec  the corridor as it is entered
+     * @param first the shortest cycle length
+     * @param last  the longest cycle length
+     * @param step  the spacing between cycle lengths
+     * @return the best bands and shifts at each cycle length
+     */
+    public SweepResult sweep(CorridorSpec spec, double first, double last, double step) {
+        if (step <= 0 || last < first) {
+            throw new IllegalArgumentException("not a valid cycle length range");
+        }
+        int count = (int) Math.floor((last - first) / step + 1e-9) + 1;
+        double[] cycleLens = new double[count];
+        for (int k = 0; k < count; k++) {
+            cycleLens[k] = first + k * step;
+        }
+        MaxbandSolution[] solutions = new MaxbandSolution[count];
+        MaxbandSolver solver = new MaxbandSolver(weightOut, weightIn, pool);
+        pool.invoke(new Task(spec, solver, cycleLens, solutions, 0, count));
+        return new SweepResult(cycleLens, solutions);
+    }
+
+    private static final class Task extends RecursiveAction {
+
+        private final CorridorSpec spec;
+        private final MaxbandSolver solver;
+        private final double[] cycleLens;
+        private final MaxbandSolution[] solutions;
+        private final int from;
+        private final int to;
+
+        private Task(CorridorSpec spec, MaxbandSolver solver, double[] cycleLens,
+                     MaxbandSolution[] solutions, int from, int to) {
+            this.spec = spec;
+            this.solver = solver;
+            this.cycleLens = cycleLens;
+            this.solutions = solutions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                for (int k = from; k < to; k++) {
+                    CorridorSpec rebuilt = spec.withCycleLen(cycleLens[k]);
+                    solutions[k] = rebuilt == null ? null : solver.solve(rebuilt);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Task(spec, solver, cycleLens, solutions, from, mid),
+                    new Task(spec, solver, cycleLens, solutions, mid, to));
+        }
+    }
+}
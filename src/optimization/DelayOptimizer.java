@@ -0,0 +1,196 @@
+package optimization;
+
+import engine.ApproachVolumes;
+import engine.CorridorSpec;
+import engine.FlowProfileEngine;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A TRANSYT style hill climb that finds the offsets with the least delay
+ * (plus a penalty per stop) under a {@link FlowProfileEngine}. Each
+ * intersection in turn is moved forward by a step and kept moving while
+ * that helps, then backward, and passes repeat until none helps. The step
+ * then shrinks, from a fifth of the cycle down to a hundredth.
+ * <p>
+ * A move changes one intersection, and the engine only re-runs the
+ * approaches from that intersection on in each direction, so a move costs
+ * about half a corridor evaluation on average. Hill climbs stop at local
+ * optima, so several climbs are run side by side on a fork/join pool: the
+ * first from the offsets in the spec and the others from random offsets
+ * drawn from their own SplittableRandom split off the seed. The number of
+ * climbs is fixed rather than taken from the pool, which only decides how
+ * they are scheduled. Each climb owns its engine, and the best plan is
+ * picked in restart order, so a seed always gives the same plan on any
+ * machine.
+ */
+public final class DelayOptimizer {
+
+    //the move sizes as fractions of the cycle length, largest first
+    private static final double[] MOVES = {0.2, 0.1, 0.05, 0.02, 0.01};
+    //how much a move has to cut the performance index by to count as better
+    private static final double IMPROVEMENT = 1e-9;
+    //enough hill climbs that a poor start is escaped, and enough to keep a few cores busy
+    private static final int RESTARTS = 8;
+
+    private final CorridorSpec spec;
+    private final ApproachVolumes volumes;
+    private final ForkJoinPool pool;
+    private final long seed;
+
+    private double stopPenalty = 0;
+    private int restarts = RESTARTS;
+
+    /**
+     * @param spec    the corridor. Plans are shifts from the offsets in it
+     * @param volumes the traffic on each approach of the corridor
+     * @param seed    the seed the random restarts are drawn from
+     * @param pool    the pool to run restarts on
+     */
+    public DelayOptimizer(CorridorSpec spec, ApproachVolumes volumes, long seed,
+                          ForkJoinPool pool) {
+        if (volumes.size() != spec.size()) {
+            throw new IllegalArgumentException("expected volumes for " + spec.size()
+                                               + " intersections");
+        }
+        this.spec = spec;
+        this.volumes = volumes;
+        this.pool = pool;
+        this.seed = seed;
+    }
+
+    /**
+     * @param stopPenalty how many vehicle-hours of delay one stop per hour is
+     *                    worth. 0 minimizes delay alone
+     */
+    public void setStopPenalty(double stopPenalty) {
+        if (stopPenalty < 0) {
+            throw new IllegalArgumentException("stopPenalty can not be negative");
+        }
+        this.stopPenalty = stopPenalty;
+    }
+
+    /**
+     * @param restarts the number of hill climbs, at least 1
+     */
+    public void setRestarts(int restarts) {
+        if (restarts < 1) {
+            throw new IllegalArgumentException("at least 1 restart is needed");
+        }
+        this.restarts = restarts;
+    }
+
+    /**
+     * runs every hill climb to convergence
+     *
+     * @return the plan with the lowest performance index
+     */
+    public DelayPlan optimize() {
+        SplittableRandom master = new SplittableRandom(seed);
+        Climb[] climbs = new Climb[restarts];
+        for (int r = 0; r < restarts; r++) {
+            double[] start = new double[spec.size()];
+            SplittableRandom random = master.split();
+            for (int i = 0; r > 0 && i < start.length; i++) {
+                start[i] = random.nextDouble() * spec.getCycleLen();
+            }
+            climbs[r] = new Climb(start);
+        }
+        pool.invoke(new Restarts(climbs));
+        Climb best = climbs[0];
+        long moves = 0;
+        for (Climb curr : climbs) {
+            moves += curr.moves;
+            if (curr.score < best.score - IMPROVEMENT) {
+                best = curr;
+            }
+        }
+        return new DelayPlan(best.deltas, best.delay, best.stops, moves);
+    }
+
+    /**
+     * one hill climb and its result
+     */
+    private final class Climb extends RecursiveAction {
+
+        private final double[] deltas;
+        private double score;
+        private double delay;
+        private double stops;
+        private long moves;
+
+        private Climb(double[] start) {
+            this.deltas = start;
+        }
+
+        private double score(FlowProfileEngine engine) {
+            return engine.getTotalDelay() + stopPenalty * engine.getTotalStops();
+        }
+
+        /**
+         * moves one intersection by a step at a time while that lowers the
+         * score, and leaves it at the last step that did
+         *
+         * @return whether the intersection moved
+         */
+        private boolean climb(FlowProfileEngine engine, int i, double move) {
+            double at = engine.getDelta(i);
+            boolean moved = false;
+            while (true) {
+                engine.setDelta(i, at + move);
+                moves++;
+                double tried = score(engine);
+                if (!(tried < score - IMPROVEMENT)) {
+                    break;
+                }
+                score = tried;
+                at += move;
+                moved = true;
+            }
+            engine.setDelta(i, at);
+            return moved;
+        }
+
+        @Override
+        protected void compute() {
+            FlowProfileEngine engine = new FlowProfileEngine(spec, volumes);
+            double cycleLen = spec.getCycleLen();
+            engine.evaluate(deltas);
+            score = score(engine);
+            for (double fraction : MOVES) {
+                double move = fraction * cycleLen;
+                boolean improved = true;
+                while (improved) {
+                    improved = false;
+                    for (int i = 0; i < deltas.length; i++) {
+                        if (climb(engine, i, move) || climb(engine, i, -move)) {
+                            improved = true;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < deltas.length; i++) {
+                double delta = engine.getDelta(i);
+                deltas[i] = delta - cycleLen * Math.floor(delta / cycleLen);
+            }
+            delay = engine.getTotalDelay();
+            stops = engine.getTotalStops();
+        }
+    }
+
+    private static final class Restarts extends RecursiveAction {
+
+        private final Climb[] climbs;
+
+        private Restarts(Climb[] climbs) {
+            this.climbs = climbs;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(climbs);
+        }
+    }
+}
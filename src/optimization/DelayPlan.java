@@ -0,0 +1,67 @@
+package optimization;
+
+/**
+ * The result of a delay optimization: how far to shift each intersection and
+ * the delay and stops the flow profile model gives for that shift
+ */
+public final class DelayPlan {
+
+    private final double[] deltas;
+    private final double delay;
+    private final double stops;
+    private final long moves;
+
+    DelayPlan(double[] deltas, double delay, double stops, long moves) {
+        this.deltas = deltas;
+        this.delay = delay;
+        this.stops = stops;
+        this.moves = moves;
+    }
+
+    /**
+     * @return a copy of the shift of each intersection in seconds, each in
+     * [0, cycleLen)
+     */
+    public double[] getDeltas() {
+        return deltas.clone();
+    }
+
+    public double getDelta(int i) {
+        return deltas[i];
+    }
+
+    /**
+     * @return the total delay in vehicle-hours per hour
+     */
+    public double getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return the total stops per hour
+     */
+    public double getStops() {
+        return stops;
+    }
+
+    /**
+     * @return the number of single intersection moves that were evaluated,
+     * over every restart
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * @param stopPenalty how many vehicle-hours of delay one stop is worth
+     * @return the delay plus stopPenalty per stop
+     */
+    public double getPerformanceIndex(double stopPenalty) {
+        return delay + stopPenalty * stops;
+    }
+
+    @Override
+    public String toString() {
+        return "{delay: " + delay + " stops: " + stops + " moves: " + moves + "}";
+    }
+}
@@ -0,0 +1,542 @@
+package optimization;
+
+import engine.CorridorSpec;
+
+/**
+ * The MAXBAND mixed-integer program for a corridor: choose a shift for every
+ * intersection so that the weighted sum of one outbound and one inbound band
+ * is as wide as possible.
+ * <p>
+ * The bands are the windows [x, x + b] (outbound) and [y, y + bb] (inbound)
+ * along the dist = 0 axis. Intersection 0 is never shifted, which removes
+ * the symmetry of shifting every intersection by the same amount. Both bands
+ * have to sit inside intersection 0's green (the window the band engine
+ * clips to) and inside every intersection's usable green, which is the
+ * green after the start-up loss and extension of green and after the
+ * travel time to the intersection:
+ * <pre>
+ *     u_i + theta_i + m_i C &lt;= x,   x + b  &lt;= u_i + theta_i + m_i C + a_i
+ *     v_i + theta_i + n_i C &lt;= y,   y + bb &lt;= v_i + theta_i + n_i C + c_i
+ * </pre>
+ * A shift is only meaningful modulo the cycle, so each outbound integer m_i
+ * is folded into theta_i, and each shift then only has to satisfy two
+ * intervals. Those intervals overlap exactly when
+ * <pre>
+ *     b  &lt;= a_i + d + e_i - n_i C,   bb &lt;= c_i - d - e_i + n_i C
+ * </pre>
+ * with d = y - x and e_i = u_i - v_i, so the shifts drop out of the linear
+ * program entirely and are recovered afterwards. Periodicity also fixes the
+ * cycle the bands start in, so x and y only range over the first green and
+ * every remaining integer has two or three possible values.
+ * <p>
+ * The program's integers are m_0 and n_0 (intersection 0's usable green,
+ * which can start a cycle before or after its un-shifted green when it is
+ * not at dist = 0) and n_i for every other intersection.
+ * <p>
+ * Each intersection's usable green is its first green window and the red
+ * after it, so a band through a later window of a multi-window cycle (see
+ * {@link engine.GreenWindows}) is not found.
+ * <p>
+ * An intersection can also be given several lead/lag sequences, each of
+ * which moves its inbound and outbound through greens by a fixed amount and
+ * so changes e_i. The choice is relaxed to e_i anywhere between the
+ * smallest and largest value the allowed sequences give, and the search
+ * branches on it like an integer.
+ * <p>
+ * Both bands have to exist for the intervals above to mean anything, even
+ * at zero width, so a plan with no inbound band at all is not a solution of
+ * the two-way program. A problem can leave one direction out, in which case
+ * that band is held at zero and does not constrain the shifts.
+ */
+final class MaxbandProblem {
+
+    private final CorridorSpec spec;
+    private final int size;
+    private final double cycleLen;
+    private final double weightOut;
+    private final double weightIn;
+    private final double minInbound;
+    private final boolean outbound;
+    private final boolean inbound;
+
+    //the first intersection's green, which both bands are clipped to
+    private final double windowOut;
+    private final double windowIn;
+    private final double lengthOut;
+    private final double lengthIn;
+
+    //start and length of each intersection's usable green before it is shifted
+    private final double[] startOut;
+    private final double[] startIn;
+    private final double[] usableOut;
+    private final double[] usableIn;
+    private final double narrowestOut;
+    private final double narrowestIn;
+
+    private final int[] lower;
+    private final int[] upper;
+
+    //how far each lead/lag sequence of each intersection moves its through greens
+    private final double[][] sequenceIn;
+    private final double[][] sequenceOut;
+
+    /**
+     * @param spec       the corridor
+     * @param weightOut  the weight on the outbound bandwidth
+     * @param weightIn   the weight on the inbound bandwidth
+     * @param minInbound the least inbound bandwidth to accept, or 0
+     * @param outbound   whether the outbound band is part of the program
+     * @param inbound    whether the inbound band is part of the program
+     */
+    MaxbandProblem(CorridorSpec spec, double weightOut, double weightIn, double minInbound,
+                   boolean outbound, boolean inbound) {
+        this(spec, weightOut, weightIn, minInbound, outbound, inbound, null, null);
+    }
+
+    /**
+     * @param spec        the corridor
+     * @param weightOut   the weight on the outbound bandwidth
+     * @param weightIn    the weight on the inbound bandwidth
+     * @param minInbound  the least inbound bandwidth to accept, or 0
+     * @param outbound    whether the outbound band is part of the program
+     * @param inbound     whether the inbound band is part of the program
+     * @param sequenceIn  for each intersection, how far each of its sequences
+     *                    moves the inbound through green, or null if every
+     *                    intersection keeps its sequence. Intersection 0
+     *                    must have exactly one sequence
+     * @param sequenceOut the same for the outbound through green
+     */
+    MaxbandProblem(CorridorSpec spec, double weightOut, double weightIn, double minInbound,
+                   boolean outbound, boolean inbound, double[][] sequenceIn,
+                   double[][] sequenceOut) {
+        this.spec = spec;
+        this.size = spec.size();
+        this.cycleLen = spec.getCycleLen();
+        this.weightOut = weightOut;
+        this.weightIn = weightIn;
+        this.minInbound = minInbound;
+        this.outbound = outbound;
+        this.inbound = inbound;
+        double sul = spec.getStartUpLoss();
+        double ext = spec.getExtOfGreen();
+        windowOut = spec.getOffsetOut(0) + sul;
+        windowIn = spec.getOffsetIn(0) + sul;
+        lengthOut = spec.getGreenOut(0) + ext - sul;
+        lengthIn = spec.getGreenIn(0) + ext - sul;
+        startOut = new double[size];
+        startIn = new double[size];
+        usableOut = new double[size];
+        usableIn = new double[size];
+        for (int i = 0; i < size; i++) {
+            startOut[i] = spec.getOffsetOut(i) - spec.getTravelTime(i) + sul;
+            startIn[i] = spec.getOffsetIn(i) + spec.getTravelTime(i) + sul;
+            usableOut[i] = cycleLen - spec.getRedOut(i) + ext - sul;
+            usableIn[i] = cycleLen - spec.getRedIn(i) + ext - sul;
+        }
+        double narrowOut = Double.POSITIVE_INFINITY;
+        double narrowIn = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            narrowOut = Math.min(narrowOut, usableOut[i]);
+            narrowIn = Math.min(narrowIn, usableIn[i]);
+        }
+        narrowestOut = narrowOut;
+        narrowestIn = narrowIn;
+        lower = new int[size + 1];
+        upper = new int[size + 1];
+        if (size > 0) {
+            //x and y only range over the first green
+            lower[0] = (int) Math.ceil((windowOut - startOut[0] - usableOut[0]) / cycleLen);
+            upper[0] = (int) Math.floor((windowOut + lengthOut - startOut[0]) / cycleLen);
+            lower[1] = (int) Math.ceil((windowIn - startIn[0] - usableIn[0]) / cycleLen);
+            upper[1] = (int) Math.floor((windowIn + lengthIn - startIn[0]) / cycleLen);
+        }
+        if (sequenceIn == null) {
+            sequenceIn = new double[size][1];
+            sequenceOut = new double[size][1];
+        }
+        this.sequenceIn = sequenceIn;
+        this.sequenceOut = sequenceOut;
+        double minD = windowIn - windowOut - lengthOut;
+        double maxD = windowIn + lengthIn - windowOut;
+        for (int i = 1; i < size; i++) {
+            double minE = Double.POSITIVE_INFINITY;
+            double maxE = Double.NEGATIVE_INFINITY;
+            for (int o = 0; o < sequenceIn[i].length; o++) {
+                minE = Math.min(minE, sequenceGap(i, o));
+                maxE = Math.max(maxE, sequenceGap(i, o));
+            }
+            lower[i + 1] = (int) Math.ceil((minD + minE - usableIn[i]) / cycleLen);
+            upper[i + 1] = (int) Math.floor((maxD + maxE + usableOut[i]) / cycleLen);
+        }
+        //with one direction left out the shifts are free, so only m_0 or n_0 is left
+        for (int k = 0; k <= size && !(outbound && inbound); k++) {
+            boolean keep = k == 0 ? outbound : k == 1 && inbound;
+            if (!keep) {
+                lower[k] = 0;
+                upper[k] = 0;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of integer variables
+     */
+    int numIntegers() {
+        return size + 1;
+    }
+
+    /**
+     * @return the smallest value each integer can take in any useful solution
+     */
+    int[] getLower() {
+        return lower.clone();
+    }
+
+    /**
+     * @return the largest value each integer can take in any useful solution
+     */
+    int[] getUpper() {
+        return upper.clone();
+    }
+
+    /**
+     * @return e_i for intersection i running sequence o
+     */
+    private double sequenceGap(int i, int o) {
+        return startOut[i] + sequenceOut[i][o] - startIn[i] - sequenceIn[i][o];
+    }
+
+    /**
+     * @return for each intersection, a bit set with every one of its
+     * sequences allowed
+     */
+    int[] getSequences() {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (1 << sequenceIn[i].length) - 1;
+        }
+        return result;
+    }
+
+    /**
+     * splits a set of sequences of an intersection in two: the ones whose
+     * e_i is at most a value, and the rest
+     *
+     * @return the two bit sets
+     */
+    int[] splitSequences(int i, int allowed, double value) {
+        int low = 0;
+        int high = 0;
+        for (int o = 0; o < sequenceIn[i].length; o++) {
+            if ((allowed & 1 << o) != 0) {
+                if (sequenceGap(i, o) <= value) {
+                    low |= 1 << o;
+                } else {
+                    high |= 1 << o;
+                }
+            }
+        }
+        return new int[]{low, high};
+    }
+
+    /**
+     * solves the linear relaxation with each integer kept within bounds
+     *
+     * @param lo        the lower bound of each integer
+     * @param hi        the upper bound of each integer
+     * @param sequences for each intersection, the bit set of the sequences
+     *                  it may still run
+     * @return the relaxed solution, or null if it is infeasible
+     */
+    Relaxation relax(int[] lo, int[] hi, int[] sequences) {
+        int integers = numIntegers();
+        for (int k = 0; k < integers; k++) {
+            if (lo[k] > hi[k]) {
+                return null;
+            }
+        }
+        //columns: x - windowOut, y - windowIn, b, bb, then every integer that is not fixed
+        int[] column = new int[integers];
+        int vars = 4;
+        for (int k = 0; k < integers; k++) {
+            column[k] = lo[k] == hi[k] ? -1 : vars++;
+        }
+        //then e_i - smallest e_i for every intersection with more than one sequence left
+        double[] gapLow = new double[size];
+        double[] gapHigh = new double[size];
+        int[] gapColumn = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (sequences[i] == 0) {
+                return null;
+            }
+            gapLow[i] = Double.POSITIVE_INFINITY;
+            gapHigh[i] = Double.NEGATIVE_INFINITY;
+            for (int o = 0; o < sequenceIn[i].length; o++) {
+                if ((sequences[i] & 1 << o) != 0) {
+                    gapLow[i] = Math.min(gapLow[i], sequenceGap(i, o));
+                    gapHigh[i] = Math.max(gapHigh[i], sequenceGap(i, o));
+                }
+            }
+            gapColumn[i] = i > 0 && outbound && inbound && gapHigh[i] > gapLow[i] ? vars++ : -1;
+        }
+        int maxRows = 5 + 4 + 2 * (size - 1) + (vars - 4);
+        double[][] a = new double[maxRows][vars];
+        double[] b = new double[maxRows];
+        int rows = 0;
+        //both bands inside the first green
+        a[rows][X] = 1;
+        a[rows][B] = 1;
+        b[rows++] = lengthOut;
+        a[rows][Y] = 1;
+        a[rows][BB] = 1;
+        b[rows++] = lengthIn;
+        //no band can be wider than the narrowest usable green
+        a[rows][B] = 1;
+        b[rows++] = outbound ? narrowestOut : 0;
+        a[rows][BB] = 1;
+        b[rows++] = inbound ? narrowestIn : 0;
+        if (minInbound > 0) {
+            a[rows][BB] = -1;
+            b[rows++] = -minInbound;
+        }
+        //intersection 0 is not shifted, so its usable green bounds x and y directly
+        if (outbound) {
+            rows = addFixed(a, b, rows, X, B, windowOut - startOut[0], usableOut[0], lo[0],
+                    column[0]);
+        }
+        if (inbound) {
+            rows = addFixed(a, b, rows, Y, BB, windowIn - startIn[0], usableIn[0], lo[1],
+                    column[1]);
+        }
+        double gap = windowIn - windowOut;
+        //a band on its own only needs each green to be wide enough, which the rows above cover
+        for (int i = 1; i < size && outbound && inbound; i++) {
+            double e = gapLow[i];
+            int k = i + 1;
+            //b <= a_i + d + e_i - n_i C
+            a[rows][B] = 1;
+            a[rows][X] = 1;
+            a[rows][Y] = -1;
+            b[rows] = usableOut[i] + e + gap - lo[k] * cycleLen;
+            if (column[k] >= 0) {
+                a[rows][column[k]] = cycleLen;
+            }
+            if (gapColumn[i] >= 0) {
+                a[rows][gapColumn[i]] = -1;
+            }
+            rows++;
+            //bb <= c_i - d - e_i + n_i C
+            a[rows][BB] = 1;
+            a[rows][X] = -1;
+            a[rows][Y] = 1;
+            b[rows] = usableIn[i] - e - gap + lo[k] * cycleLen;
+            if (column[k] >= 0) {
+                a[rows][column[k]] = -cycleLen;
+            }
+            if (gapColumn[i] >= 0) {
+                a[rows][gapColumn[i]] = 1;
+            }
+            rows++;
+        }
+        for (int i = 0; i < size; i++) {
+            if (gapColumn[i] >= 0) {
+                a[rows][gapColumn[i]] = 1;
+                b[rows++] = gapHigh[i] - gapLow[i];
+            }
+        }
+        for (int k = 0; k < integers; k++) {
+            if (column[k] >= 0) {
+                a[rows][column[k]] = 1;
+                b[rows++] = hi[k] - lo[k];
+            }
+        }
+        double[] c = new double[vars];
+        c[B] = weightOut;
+        c[BB] = weightIn;
+        double[] x = Simplex.maximize(a, b, c, rows);
+        if (x == null) {
+            return null;
+        }
+        double[] values = new double[integers];
+        for (int k = 0; k < integers; k++) {
+            values[k] = lo[k] + (column[k] >= 0 ? x[column[k]] : 0);
+        }
+        //each intersection runs the allowed sequence its e_i landed on, if there is one
+        double[] gaps = new double[size];
+        int[] chosen = new int[size];
+        for (int i = 0; i < size; i++) {
+            gaps[i] = gapLow[i] + (gapColumn[i] >= 0 ? x[gapColumn[i]] : 0);
+            chosen[i] = -1;
+            for (int o = 0; o < sequenceIn[i].length && chosen[i] < 0; o++) {
+                if ((sequences[i] & 1 << o) != 0
+                    && (gapColumn[i] < 0 || Math.abs(sequenceGap(i, o) - gaps[i]) < 1e-7)) {
+                    chosen[i] = o;
+                }
+            }
+        }
+        return new Relaxation(x[X] + windowOut, x[Y] + windowIn, x[B], x[BB],
+                weightOut * x[B] + weightIn * x[BB], values, gaps, chosen);
+    }
+
+    /**
+     * adds the two constraints that keep one band inside the usable green of
+     * the un-shifted first intersection: start + m C &lt;= band start and
+     * band end &lt;= start + m C + usable
+     *
+     * @param relStart the usable green's start relative to the window start,
+     *                 negated
+     */
+    private int addFixed(double[][] a, double[] b, int rows, int position, int width,
+                         double relStart, double usable, int lo, int column) {
+        if (usable >= cycleLen) {
+            return rows;
+        }
+        a[rows][position] = -1;
+        b[rows] = relStart - lo * cycleLen;
+        if (column >= 0) {
+            a[rows][column] = cycleLen;
+        }
+        rows++;
+        a[rows][position] = 1;
+        a[rows][width] = 1;
+        b[rows] = -relStart + lo * cycleLen + usable;
+        if (column >= 0) {
+            a[rows][column] = -cycleLen;
+        }
+        rows++;
+        return rows;
+    }
+
+    /**
+     * recovers the shift of every intersection from an integer solution. Each
+     * shift is put in the middle of the range that keeps both bands inside
+     * the intersection's green, after its chosen sequence has moved it
+     *
+     * @param solution a relaxation with every integer at an integer value
+     * @return the shift of each intersection in seconds
+     */
+    double[] toDeltas(Relaxation solution) {
+        double[] deltas = new double[size];
+        for (int i = 1; i < size; i++) {
+            double n = Math.rint(solution.getInteger(i + 1));
+            int o = solution.getSequence(i);
+            double out = startOut[i] + sequenceOut[i][o];
+            double in = startIn[i] + sequenceIn[i][o];
+            double outLow = solution.getX() + solution.getOutbound() - out - usableOut[i];
+            double outHigh = solution.getX() - out;
+            double inLow = solution.getY() + solution.getInbound() - in - usableIn[i]
+                           - n * cycleLen;
+            double inHigh = solution.getY() - in - n * cycleLen;
+            double low = Math.max(outbound ? outLow : inLow, inbound ? inLow : outLow);
+            double high = Math.min(outbound ? outHigh : inHigh, inbound ? inHigh : outHigh);
+            deltas[i] = (low + high) / 2;
+        }
+        return deltas;
+    }
+
+    CorridorSpec getSpec() {
+        return spec;
+    }
+
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int B = 2;
+    private static final int BB = 3;
+
+    /**
+     * one solution of the linear relaxation
+     */
+    static final class Relaxation {
+
+        private final double x;
+        private final double y;
+        private final double outbound;
+        private final double inbound;
+        private final double objective;
+        private final double[] integers;
+        private final double[] gaps;
+        private final int[] sequences;
+
+        Relaxation(double x, double y, double outbound, double inbound, double objective,
+                   double[] integers, double[] gaps, int[] sequences) {
+            this.x = x;
+            this.y = y;
+            this.outbound = outbound;
+            this.inbound = inbound;
+            this.objective = objective;
+            this.integers = integers;
+            this.gaps = gaps;
+            this.sequences = sequences;
+        }
+
+        double getX() {
+            return x;
+        }
+
+        double getY() {
+            return y;
+        }
+
+        double getOutbound() {
+            return outbound;
+        }
+
+        double getInbound() {
+            return inbound;
+        }
+
+        double getObjective() {
+            return objective;
+        }
+
+        double getInteger(int k) {
+            return integers[k];
+        }
+
+        /**
+         * @return the sequence intersection i runs, or -1 if e_i falls
+         * between its sequences
+         */
+        int getSequence(int i) {
+            return sequences[i];
+        }
+
+        double getGap(int i) {
+            return gaps[i];
+        }
+
+        /**
+         * @return an intersection whose e_i falls between its sequences, or
+         * -1 if every intersection has one
+         */
+        int undecidedSequence() {
+            for (int i = 0; i < sequences.length; i++) {
+                if (sequences[i] < 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the index of the integer furthest from an integer value,
+         * or -1 if they all are integers
+         */
+        int mostFractional() {
+            int result = -1;
+            double worst = 1e-6;
+            for (int k = 0; k < integers.length; k++) {
+                double frac = Math.abs(integers[k] - Math.rint(integers[k]));
+                if (frac > worst) {
+                    worst = frac;
+                    result = k;
+                }
+            }
+            return result;
+        }
+    }
+}
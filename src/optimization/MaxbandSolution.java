@@ -0,0 +1,110 @@
+package optimization;
+
+/**
+ * The result of a band optimization: how far to shift each intersection and
+ * the bands that shift gives
+ */
+public final class MaxbandSolution {
+
+    private final double[] deltas;
+    private final double outbound;
+    private final double inbound;
+    private final double outboundStart;
+    private final double inboundStart;
+    private final long nodes;
+    private final boolean optimal;
+    //the MAXBAND integers behind the plan, or null if it did not come from MAXBAND
+    private final int[] integers;
+    //the lead/lag sequence of each intersection, or null if sequences were not searched
+    private final int[] sequences;
+
+    MaxbandSolution(double[] deltas, double outbound, double inbound, double outboundStart,
+                    double inboundStart, long nodes, boolean optimal) {
+        this(deltas, outbound, inbound, outboundStart, inboundStart, nodes, optimal, null, null);
+    }
+
+    MaxbandSolution(double[] deltas, double outbound, double inbound, double outboundStart,
+                    double inboundStart, long nodes, boolean optimal, int[] integers,
+                    int[] sequences) {
+        this.deltas = deltas;
+        this.outbound = outbound;
+        this.inbound = inbound;
+        this.outboundStart = outboundStart;
+        this.inboundStart = inboundStart;
+        this.nodes = nodes;
+        this.optimal = optimal;
+        this.integers = integers;
+        this.sequences = sequences;
+    }
+
+    /**
+     * @return a copy of the shift of each intersection in seconds. The first
+     * intersection is never shifted
+     */
+    public double[] getDeltas() {
+        return deltas.clone();
+    }
+
+    public double getDelta(int i) {
+        return deltas[i];
+    }
+
+    /**
+     * @return the width of the outbound band that was optimized
+     */
+    public double getOutbound() {
+        return outbound;
+    }
+
+    /**
+     * @return the width of the inbound band that was optimized
+     */
+    public double getInbound() {
+        return inbound;
+    }
+
+    /**
+     * @return where the outbound band starts along the dist = 0 axis
+     */
+    public double getOutboundStart() {
+        return outboundStart;
+    }
+
+    /**
+     * @return where the inbound band starts along the dist = 0 axis, before
+     * the one cycle shift the band engine applies to inbound bands
+     */
+    public double getInboundStart() {
+        return inboundStart;
+    }
+
+    /**
+     * @return the number of branch-and-bound nodes that were solved, or the
+     * number of plans that were evaluated by a search that samples plans
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return whether the search finished. For an exact search this means no
+     * other plan has wider bands
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    int[] getIntegers() {
+        return integers;
+    }
+
+    int[] getSequences() {
+        return sequences;
+    }
+
+    @Override
+    public String toString() {
+        return "{OBD: " + outbound + " IBD: " + inbound + " nodes: " + nodes
+               + (optimal ? "" : " (stopped early)") + "}";
+    }
+}
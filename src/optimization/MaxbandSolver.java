@@ -0,0 +1,287 @@
+package optimization;
+
+import engine.CorridorSpec;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Finds the intersection shifts that give the widest weighted pair of
+ * inbound and outbound bands by solving the MAXBAND program (see
+ * {@link MaxbandProblem}) exactly.
+ * <p>
+ * The search is a branch-and-bound over the integer variables run as
+ * fork/join tasks, so idle threads steal unexplored subtrees from busy
+ * ones. Every node solves its linear relaxation with {@link Simplex}. The
+ * best integer solution found so far is shared through an atomic reference
+ * and any subtree whose relaxation cannot beat it is dropped.
+ */
+public final class MaxbandSolver {
+
+    //a subtree has to beat the incumbent by this much (in seconds) to be searched
+    private static final double TOLERANCE = 1e-6;
+
+    private final double weightOut;
+    private final double weightIn;
+    private final ForkJoinPool pool;
+    private volatile long nodeLimit = Long.MAX_VALUE;
+
+    /**
+     * creates a solver that weights both directions equally and runs on the
+     * common fork/join pool
+     */
+    public MaxbandSolver() {
+        this(1, 1, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param weightOut the weight on the outbound bandwidth
+     * @param weightIn  the weight on the inbound bandwidth
+     * @param pool      the pool to search on
+     */
+    public MaxbandSolver(double weightOut, double weightIn, ForkJoinPool pool) {
+        if (weightOut < 0 || weightIn < 0) {
+            throw new IllegalArgumentException("weights can not be negative");
+        }
+        this.weightOut = weightOut;
+        this.weightIn = weightIn;
+        this.pool = pool;
+    }
+
+    /**
+     * stops a search after it has solved this many nodes. The best plan
+     * found by then is returned and is marked as not optimal
+     *
+     * @param nodeLimit the most nodes to solve
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * finds the best shifts for a corridor
+     *
+     * @param spec the corridor
+     * @return the best shifts
+     */
+    public MaxbandSolution solve(CorridorSpec spec) {
+        return solve(spec, 0);
+    }
+
+    /**
+     * finds the best shifts for a corridor that keep the inbound band at
+     * least some width
+     *
+     * @param spec       the corridor
+     * @param minInbound the least inbound bandwidth to accept
+     * @return the best shifts, or null if no shift meets minInbound
+     */
+    public MaxbandSolution solve(CorridorSpec spec, double minInbound) {
+        return solve(spec, minInbound, null);
+    }
+
+    /**
+     * finds the best shifts for a corridor that keep the inbound band at
+     * least some width, starting from a known plan. The hint's integers are
+     * tried first, so when they still work the search starts with a good
+     * incumbent and prunes most of the tree
+     *
+     * @param spec       the corridor
+     * @param minInbound the least inbound bandwidth to accept
+     * @param hint       an earlier solution for the same corridor, or null
+     * @return the best shifts, or null if no shift meets minInbound
+     */
+    public MaxbandSolution solve(CorridorSpec spec, double minInbound, MaxbandSolution hint) {
+        return solve(spec, minInbound, hint, null, null);
+    }
+
+    /**
+     * finds the best shifts for a corridor together with the best lead/lag
+     * sequence for every intersection but the first
+     *
+     * @param spec        the corridor
+     * @param sequenceIn  for each intersection, how far each of its
+     *                    sequences moves the inbound through green.
+     *                    Intersection 0 must have exactly one sequence
+     * @param sequenceOut the same for the outbound through green
+     * @return the best shifts, with the sequence each intersection runs
+     */
+    MaxbandSolution solve(CorridorSpec spec, double[][] sequenceIn, double[][] sequenceOut) {
+        return solve(spec, 0, null, sequenceIn, sequenceOut);
+    }
+
+    private MaxbandSolution solve(CorridorSpec spec, double minInbound, MaxbandSolution hint,
+                                  double[][] sequenceIn, double[][] sequenceOut) {
+        if (spec.size() == 0) {
+            return new MaxbandSolution(new double[0], 0, 0, 0, 0, 0, true);
+        }
+        //the two-way program needs both bands to exist, so also try each band on its own
+        MaxbandProblem[] problems = {
+                new MaxbandProblem(spec, weightOut, weightIn, minInbound, true, true,
+                        sequenceIn, sequenceOut),
+                minInbound > 0 ? null : new MaxbandProblem(spec, weightOut, weightIn, 0, true,
+                        false, sequenceIn, sequenceOut),
+                new MaxbandProblem(spec, weightOut, weightIn, minInbound, false, true,
+                        sequenceIn, sequenceOut)
+        };
+        MaxbandProblem bestProblem = null;
+        MaxbandProblem.Relaxation best = null;
+        long nodes = 0;
+        boolean stopped = false;
+        for (MaxbandProblem problem : problems) {
+            if (problem == null) {
+                continue;
+            }
+            Search search = new Search(problem);
+            if (hint != null && hint.getIntegers() != null) {
+                search.warmStart(hint.getIntegers());
+            }
+            pool.invoke(search.new Node(problem.getLower(), problem.getUpper(),
+                    problem.getSequences()));
+            nodes += search.nodes.get();
+            stopped |= search.stopped;
+            MaxbandProblem.Relaxation curr = search.incumbent.get();
+            if (curr != null
+                && (best == null || curr.getObjective() > best.getObjective() + TOLERANCE)) {
+                best = curr;
+                bestProblem = problem;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        int[] integers = new int[bestProblem.numIntegers()];
+        for (int k = 0; k < integers.length; k++) {
+            integers[k] = (int) Math.rint(best.getInteger(k));
+        }
+        int[] sequences = new int[spec.size()];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = best.getSequence(i);
+        }
+        return new MaxbandSolution(bestProblem.toDeltas(best), best.getOutbound(),
+                best.getInbound(), best.getX(), best.getY(), nodes, !stopped, integers,
+                sequences);
+    }
+
+    /**
+     * @return the weighted bandwidth of a solution, which is what this solver
+     * maximizes
+     */
+    double score(MaxbandSolution solution) {
+        return weightOut * solution.getOutbound() + weightIn * solution.getInbound();
+    }
+
+    /**
+     * the state shared by every task of one search
+     */
+    private final class Search {
+
+        private final MaxbandProblem problem;
+        private final AtomicReference<MaxbandProblem.Relaxation> incumbent =
+                new AtomicReference<>();
+        private final AtomicLong nodes = new AtomicLong();
+        private volatile boolean stopped;
+
+        private Search(MaxbandProblem problem) {
+            this.problem = problem;
+        }
+
+        /**
+         * keeps a new integer solution if it beats the incumbent
+         */
+        private void offer(MaxbandProblem.Relaxation solution) {
+            MaxbandProblem.Relaxation curr = incumbent.get();
+            while (curr == null || solution.getObjective() > curr.getObjective() + TOLERANCE) {
+                if (incumbent.compareAndSet(curr, solution)) {
+                    return;
+                }
+                curr = incumbent.get();
+            }
+        }
+
+        /**
+         * solves the relaxation with every integer fixed at a known value,
+         * and keeps it as the incumbent if it is feasible
+         */
+        private void warmStart(int[] integers) {
+            int[] lower = problem.getLower();
+            int[] upper = problem.getUpper();
+            if (integers.length != lower.length) {
+                return;
+            }
+            int[] fixed = new int[integers.length];
+            for (int k = 0; k < fixed.length; k++) {
+                //integers a direction does not use are pinned, so take the pinned value
+                fixed[k] = lower[k] == upper[k] ? lower[k] : integers[k];
+            }
+            nodes.incrementAndGet();
+            MaxbandProblem.Relaxation relaxed = problem.relax(fixed, fixed,
+                    problem.getSequences());
+            if (relaxed != null && relaxed.undecidedSequence() < 0) {
+                offer(relaxed);
+            }
+        }
+
+        private boolean canBeat(double bound) {
+            MaxbandProblem.Relaxation curr = incumbent.get();
+            return curr == null || bound > curr.getObjective() + TOLERANCE;
+        }
+
+        private final class Node extends RecursiveAction {
+
+            private final int[] lo;
+            private final int[] hi;
+            private final int[] sequences;
+
+            private Node(int[] lo, int[] hi, int[] sequences) {
+                this.lo = lo;
+                this.hi = hi;
+                this.sequences = sequences;
+            }
+
+            @Override
+            protected void compute() {
+                if (nodes.incrementAndGet() > nodeLimit) {
+                    stopped = true;
+                    return;
+                }
+                MaxbandProblem.Relaxation relaxed = problem.relax(lo, hi, sequences);
+                if (relaxed == null || !canBeat(relaxed.getObjective())) {
+                    return;
+                }
+                int branch = relaxed.mostFractional();
+                if (branch >= 0) {
+                    double value = relaxed.getInteger(branch);
+                    int[] downHi = hi.clone();
+                    downHi[branch] = (int) Math.floor(value);
+                    int[] upLo = lo.clone();
+                    upLo[branch] = (int) Math.ceil(value);
+                    Node down = new Node(lo, downHi, sequences);
+                    Node up = new Node(upLo, hi, sequences);
+                    //search the side the relaxation leans towards first
+                    if (value - Math.floor(value) < 0.5) {
+                        invokeAll(down, up);
+                    } else {
+                        invokeAll(up, down);
+                    }
+                    return;
+                }
+                int undecided = relaxed.undecidedSequence();
+                if (undecided < 0) {
+                    offer(relaxed);
+                    return;
+                }
+                //split the sequences on either side of where e_i landed
+                int[] split = problem.splitSequences(undecided, sequences[undecided],
+                        relaxed.getGap(undecided));
+                int[] low = sequences.clone();
+                low[undecided] = split[0];
+                int[] high = sequences.clone();
+                high[undecided] = split[1];
+                invokeAll(new Node(lo, hi, low), new Node(lo, hi, high));
+            }
+        }
+    }
+}
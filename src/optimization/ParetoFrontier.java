@@ -0,0 +1,69 @@
+package optimization;
+
+import engine.CorridorSpec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Traces the trade-off between the inbound and outbound band: the plans for
+ * which no other plan has both a wider inbound and a wider outbound band.
+ * <p>
+ * The frontier is walked with the epsilon-constraint method. The first plan
+ * is the widest outbound band, and each later plan is the widest outbound
+ * band among plans whose inbound band is a step wider than the last one,
+ * until no plan has a wider inbound band. A tiny weight on the inbound band
+ * breaks ties towards the wider inbound band, so every plan found is on the
+ * frontier. Each solve is warm started from the plan before it, whose
+ * integers usually still work, so the branch-and-bound starts with a good
+ * incumbent.
+ */
+public final class ParetoFrontier {
+
+    //breaks ties between plans with the same outbound band towards the wider inbound band
+    private static final double TIE_BREAK = 1e-3;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param pool the pool to search on
+     */
+    public ParetoFrontier(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * walks the frontier of a corridor
+     *
+     * @param spec       the corridor
+     * @param resolution how much wider each plan's inbound band has to be
+     *                   than the one before it, in seconds
+     * @return the frontier plans from the widest outbound band to the widest
+     * inbound band
+     */
+    public List<MaxbandSolution> compute(CorridorSpec spec, double resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+        MaxbandSolver solver = new MaxbandSolver(1, TIE_BREAK, pool);
+        List<MaxbandSolution> frontier = new ArrayList<>();
+        MaxbandSolution last = null;
+        double minInbound = 0;
+        while (true) {
+            MaxbandSolution curr = solver.solve(spec, minInbound, last);
+            if (curr == null) {
+                break;
+            }
+            //a plan that is no better outbound than the last one but wider inbound replaces it
+            if (last != null && curr.getOutbound() >= last.getOutbound() - 1e-9) {
+                frontier.remove(frontier.size() - 1);
+            }
+            frontier.add(curr);
+            last = curr;
+            minInbound = curr.getInbound() + resolution;
+        }
+        return Collections.unmodifiableList(frontier);
+    }
+}
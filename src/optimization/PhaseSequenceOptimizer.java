@@ -0,0 +1,121 @@
+package optimization;
+
+import engine.CorridorSpec;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Chooses a lead/lag sequence for every intersection together with its
+ * shift so that the weighted pair of bands is as wide as possible.
+ * <p>
+ * A sequence is described by how far it moves the inbound and outbound
+ * through greens within the cycle. The first intersection is never shifted,
+ * so its sequence moves the window the bands are measured in and each of
+ * its sequences is solved as a separate problem, all in parallel. Every
+ * other intersection's sequence is a branching variable in the MAXBAND
+ * search (see {@link MaxbandProblem}), so whole families of sequences are
+ * dropped by one bound instead of being tried one by one.
+ */
+public final class PhaseSequenceOptimizer {
+
+    private final MaxbandSolver solver;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param weightOut the weight on the outbound bandwidth
+     * @param weightIn  the weight on the inbound bandwidth
+     * @param pool      the pool to search on
+     */
+    public PhaseSequenceOptimizer(double weightOut, double weightIn, ForkJoinPool pool) {
+        this.solver = new MaxbandSolver(weightOut, weightIn, pool);
+        this.pool = pool;
+    }
+
+    /**
+     * finds the best sequences and shifts
+     *
+     * @param spec        the corridor as it runs now
+     * @param sequenceIn  for each intersection, how far each sequence it
+     *                    can run moves the inbound through green from where
+     *                    it is in spec. At most 31 sequences per
+     *                    intersection
+     * @param sequenceOut the same for the outbound through green
+     * @return the sequence of every intersection and the shift to apply
+     * after it
+     */
+    public SequencePlan optimize(CorridorSpec spec, double[][] sequenceIn,
+                                 double[][] sequenceOut) {
+        int size = spec.size();
+        if (sequenceIn.length != size || sequenceOut.length != size) {
+            throw new IllegalArgumentException("expected sequences for " + size
+                                               + " intersections");
+        }
+        for (int i = 0; i < size; i++) {
+            if (sequenceIn[i].length == 0 || sequenceIn[i].length != sequenceOut[i].length
+                || sequenceIn[i].length > 31) {
+                throw new IllegalArgumentException("intersection " + i
+                                                   + " needs 1 to 31 sequences");
+            }
+        }
+        if (size == 0) {
+            return new SequencePlan(new int[0], new double[0], 0, 0);
+        }
+        First[] tasks = new First[sequenceIn[0].length];
+        for (int o = 0; o < tasks.length; o++) {
+            tasks[o] = new First(spec, sequenceIn, sequenceOut, o);
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        SequencePlan best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (First task : tasks) {
+            MaxbandSolution solution = task.join();
+            if (solution == null) {
+                continue;
+            }
+            double score = solver.score(solution);
+            if (best == null || score > bestScore + 1e-9) {
+                int[] sequences = solution.getSequences().clone();
+                sequences[0] = task.first;
+                best = new SequencePlan(sequences, solution.getDeltas(),
+                        solution.getOutbound(), solution.getInbound());
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * solves the problem for one sequence of the first intersection
+     */
+    private final class First extends RecursiveTask<MaxbandSolution> {
+
+        private final CorridorSpec spec;
+        private final double[][] sequenceIn;
+        private final double[][] sequenceOut;
+        private final int first;
+
+        private First(CorridorSpec spec, double[][] sequenceIn, double[][] sequenceOut,
+                      int first) {
+            this.spec = spec;
+            this.sequenceIn = sequenceIn;
+            this.sequenceOut = sequenceOut;
+            this.first = first;
+        }
+
+        @Override
+        protected MaxbandSolution compute() {
+            int size = spec.size();
+            double[] moveIn = new double[size];
+            double[] moveOut = new double[size];
+            moveIn[0] = sequenceIn[0][first];
+            moveOut[0] = sequenceOut[0][first];
+            double[][] restIn = sequenceIn.clone();
+            double[][] restOut = sequenceOut.clone();
+            restIn[0] = new double[1];
+            restOut[0] = new double[1];
+            return solver.solve(spec.shiftOffsets(moveIn, moveOut), restIn, restOut);
+        }
+    }
+}
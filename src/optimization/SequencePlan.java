@@ -0,0 +1,55 @@
+package optimization;
+
+/**
+ * The result of a {@link PhaseSequenceOptimizer}: the lead/lag sequence each
+ * intersection runs and how far to shift it once it runs that sequence
+ */
+public final class SequencePlan {
+
+    private final int[] sequences;
+    private final double[] deltas;
+    private final double outbound;
+    private final double inbound;
+
+    SequencePlan(int[] sequences, double[] deltas, double outbound, double inbound) {
+        this.sequences = sequences;
+        this.deltas = deltas;
+        this.outbound = outbound;
+        this.inbound = inbound;
+    }
+
+    public int size() {
+        return sequences.length;
+    }
+
+    /**
+     * @param i the index of the intersection
+     * @return the index of the sequence it runs, in the order the sequences
+     * were given
+     */
+    public int getSequence(int i) {
+        return sequences[i];
+    }
+
+    /**
+     * @param i the index of the intersection
+     * @return how far to shift both its through greens after its sequence
+     * has moved them, in seconds
+     */
+    public double getDelta(int i) {
+        return deltas[i];
+    }
+
+    public double getOutbound() {
+        return outbound;
+    }
+
+    public double getInbound() {
+        return inbound;
+    }
+
+    @Override
+    public String toString() {
+        return "{OBD: " + outbound + " IBD: " + inbound + "}";
+    }
+}
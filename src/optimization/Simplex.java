@@ -0,0 +1,175 @@
+package optimization;
+
+/**
+ * A small dense two-phase simplex solver for problems of the form
+ * <pre>
+ *     maximize c . x  subject to  A x &lt;= b,  x &gt;= 0
+ * </pre>
+ * where b may have negative entries. Pivots are chosen with Bland's rule so
+ * the solver cannot cycle on the degenerate problems band optimization
+ * produces. The problems here have at most a few hundred rows, so a dense
+ * tableau is both the simplest and the fastest choice.
+ */
+final class Simplex {
+
+    private static final double EPSILON = 1e-9;
+
+    private Simplex() {}
+
+    /**
+     * solves a linear program
+     *
+     * @param a    the constraint matrix, one row per constraint
+     * @param b    the right hand side of each constraint
+     * @param c    the objective coefficients
+     * @param rows the number of rows of a and b to use
+     * @return the optimal x, or null if the problem is infeasible
+     * @throws IllegalStateException if the problem is unbounded
+     */
+    static double[] maximize(double[][] a, double[] b, double[] c, int rows) {
+        int vars = c.length;
+        int artificials = 0;
+        for (int i = 0; i < rows; i++) {
+            if (b[i] < 0) {
+                artificials++;
+            }
+        }
+        int cols = vars + rows + artificials;
+        double[][] table = new double[rows + 1][cols + 1];
+        int[] basis = new int[rows];
+        int nextArtificial = vars + rows;
+        for (int i = 0; i < rows; i++) {
+            double sign = b[i] < 0 ? -1 : 1;
+            for (int j = 0; j < vars; j++) {
+                table[i][j] = sign * a[i][j];
+            }
+            table[i][vars + i] = sign;
+            table[i][cols] = sign * b[i];
+            if (sign < 0) {
+                table[i][nextArtificial] = 1;
+                basis[i] = nextArtificial++;
+            } else {
+                basis[i] = vars + i;
+            }
+        }
+        double[] objective = table[rows];
+        //phase one: drive the artificial variables to zero
+        if (artificials > 0) {
+            for (int i = 0; i < rows; i++) {
+                if (basis[i] >= vars + rows) {
+                    for (int j = 0; j <= cols; j++) {
+                        objective[j] -= table[i][j];
+                    }
+                }
+            }
+            for (int j = vars + rows; j < cols; j++) {
+                objective[j] = 0;
+            }
+            run(table, basis, rows, cols);
+            if (objective[cols] < -EPSILON * Math.max(1, maxAbs(b, rows))) {
+                return null;
+            }
+            //pivot any artificial left in the basis (at zero) out of it
+            for (int i = 0; i < rows; i++) {
+                if (basis[i] < vars + rows) {
+                    continue;
+                }
+                for (int j = 0; j < vars + rows; j++) {
+                    if (Math.abs(table[i][j]) > EPSILON) {
+                        pivot(table, basis, rows, cols, i, j);
+                        break;
+                    }
+                }
+            }
+        }
+        //phase two: the real objective, with the artificial columns locked out
+        for (int j = 0; j <= cols; j++) {
+            objective[j] = j < vars ? -c[j] : 0;
+        }
+        for (int i = 0; i < rows; i++) {
+            if (basis[i] < vars && c[basis[i]] != 0) {
+                double weight = c[basis[i]];
+                for (int j = 0; j <= cols; j++) {
+                    objective[j] += weight * table[i][j];
+                }
+            }
+        }
+        run(table, basis, rows, vars + rows);
+        double[] x = new double[vars];
+        for (int i = 0; i < rows; i++) {
+            if (basis[i] < vars) {
+                x[basis[i]] = table[i][cols];
+            }
+        }
+        return x;
+    }
+
+    /**
+     * pivots until no column below limit can improve the objective row
+     */
+    private static void run(double[][] table, int[] basis, int rows, int limit) {
+        int cols = table[0].length - 1;
+        double[] objective = table[rows];
+        while (true) {
+            int enter = -1;
+            for (int j = 0; j < limit; j++) {
+                if (objective[j] < -EPSILON) {
+                    enter = j;
+                    break;
+                }
+            }
+            if (enter < 0) {
+                return;
+            }
+            int leave = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < rows; i++) {
+                if (table[i][enter] > EPSILON) {
+                    double ratio = table[i][cols] / table[i][enter];
+                    if (ratio < best - EPSILON
+                        || (ratio < best + EPSILON && leave >= 0 && basis[i] < basis[leave])) {
+                        best = Math.min(best, ratio);
+                        leave = i;
+                    }
+                }
+            }
+            if (leave < 0) {
+                throw new IllegalStateException("linear program is unbounded");
+            }
+            pivot(table, basis, rows, cols, leave, enter);
+        }
+    }
+
+    private static void pivot(double[][] table, int[] basis, int rows, int cols, int row,
+                              int col) {
+        double[] pivotRow = table[row];
+        double scale = pivotRow[col];
+        for (int j = 0; j <= cols; j++) {
+            pivotRow[j] /= scale;
+        }
+        pivotRow[col] = 1;
+        for (int i = 0; i <= rows; i++) {
+            if (i == row) {
+                continue;
+            }
+            double[] curr = table[i];
+            double factor = curr[col];
+            if (factor == 0) {
+                continue;
+            }
+            for (int j = 0; j <= cols; j++) {
+                curr[j] -= factor * pivotRow[j];
+            }
+            curr[col] = 0;
+        }
+        basis[row] = col;
+    }
+
+    private static double maxAbs(double[] values, int count) {
+        double result = 0;
+        for (int i = 0; i < count; i++) {
+            result = Math.max(result, Math.abs(values[i]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+package optimization;
+
+/**
+ * The best bands at each cycle length of a {@link CycleLengthSweep}
+ */
+public final class SweepResult {
+
+    private final double[] cycleLens;
+    private final MaxbandSolution[] solutions;
+
+    SweepResult(double[] cycleLens, MaxbandSolution[] solutions) {
+        this.cycleLens = cycleLens;
+        this.solutions = solutions;
+    }
+
+    public int size() {
+        return cycleLens.length;
+    }
+
+    public double getCycleLen(int k) {
+        return cycleLens[k];
+    }
+
+    /**
+     * @param k the index of the cycle length
+     * @return the best shifts and bands at that cycle length, or null if a
+     * green time does not fit in it
+     */
+    public MaxbandSolution getSolution(int k) {
+        return solutions[k];
+    }
+
+    /**
+     * @param k the index of the cycle length
+     * @return the best inbound plus outbound bandwidth at that cycle length,
+     * or NaN if a green time does not fit in it
+     */
+    public double getTotal(int k) {
+        return solutions[k] == null ? Double.NaN
+                                    : solutions[k].getOutbound() + solutions[k].getInbound();
+    }
+
+    /**
+     * @return the index of the cycle length with the most total bandwidth, or
+     * -1 if none can be run. Ties go to the shortest cycle length
+     */
+    public int best() {
+        int best = -1;
+        for (int k = 0; k < cycleLens.length; k++) {
+            if (solutions[k] != null && (best < 0 || getTotal(k) > getTotal(best) + 1e-9)) {
+                best = k;
+            }
+        }
+        return best;
+    }
+}
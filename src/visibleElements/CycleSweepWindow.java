@@ -0,0 +1,99 @@
+package visibleElements;
+
+import engine.CorridorSpec;
+import javafx.application.Platform;
+import javafx.scene.Cursor;
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart.Data;
+import javafx.scene.chart.XYChart.Series;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.shape.Circle;
+import javafx.stage.Stage;
+import optimization.CycleLengthSweep;
+import optimization.MaxbandSolution;
+import optimization.SweepResult;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+/**
+ * A window that plots the best two-way bandwidth against cycle length.
+ * The sweep runs on a background thread and the curve is filled in when it
+ * is done. Clicking a point hands its cycle length and best shifts back to
+ * whoever opened the window
+ */
+public class CycleSweepWindow extends Stage {
+
+    private final Label status = new Label("Sweeping cycle lengths...");
+
+    /**
+     * @param spec     the corridor as it is entered
+     * @param weightIn the weight on the inbound bandwidth
+     * @param first    the shortest cycle length
+     * @param last     the longest cycle length
+     * @param step     the spacing between cycle lengths
+     * @param adopt    called on the FX thread with the cycle length and best
+     *                 shifts of a point that was clicked. The shifts are from
+     *                 the offsets in spec, not from wherever the corridor is
+     *                 when the point is clicked
+     */
+    public CycleSweepWindow(CorridorSpec spec, double weightIn, double first, double last,
+                            double step, BiConsumer<Double, MaxbandSolution> adopt) {
+        NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Cycle Length (s)");
+        xAxis.setForceZeroInRange(false);
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Total Bandwidth (s)");
+        LineChart<Number, Number> chart = new LineChart<>(xAxis, yAxis);
+        chart.setLegendVisible(false);
+        chart.setAnimated(false);
+        BorderPane root = new BorderPane(chart);
+        root.setBottom(status);
+        setScene(new Scene(root, 700, 450));
+        setTitle("Cycle Length Sweep");
+
+        CycleLengthSweep sweep = new CycleLengthSweep(1, weightIn, ForkJoinPool.commonPool());
+        Thread worker = new Thread(() -> {
+            SweepResult result = sweep.sweep(spec, first, last, step);
+            Platform.runLater(() -> {
+                chart.getData().add(toSeries(result, adopt));
+                int best = result.best();
+                status.setText(best < 0 ? "No cycle length in range fits every green"
+                        : String.format("Best: %.0f s cycle with %.1f s of bandwidth. Click a"
+                                        + " point to use it", result.getCycleLen(best),
+                                result.getTotal(best)));
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * builds the curve, with a clickable marker for every cycle length that
+     * can be run
+     */
+    private Series<Number, Number> toSeries(SweepResult result,
+                                            BiConsumer<Double, MaxbandSolution> adopt) {
+        Series<Number, Number> series = new Series<>();
+        for (int k = 0; k < result.size(); k++) {
+            MaxbandSolution solution = result.getSolution(k);
+            if (solution == null) {
+                continue;
+            }
+            double cycleLen = result.getCycleLen(k);
+            Data<Number, Number> point = new Data<>(cycleLen, result.getTotal(k));
+            Circle marker = new Circle(3);
+            marker.setCursor(Cursor.HAND);
+            marker.setOnMouseClicked(e -> {
+                adopt.accept(cycleLen, solution);
+                status.setText(String.format("Using a %.0f s cycle", cycleLen));
+            });
+            point.setNode(marker);
+            series.getData().add(point);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,58 @@
+package visibleElements;
+
+import engine.ApproachVolumes;
+import engine.CorridorSpec;
+import engine.DelayResult;
+import engine.FlowProfileEngine;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
+import javafx.stage.Stage;
+
+/**
+ * A window that lists the delay, stops and longest queue of every approach
+ * for the corridor as it is timed now, from the cyclic flow profiles of a
+ * {@link FlowProfileEngine}. The model takes microseconds to run, so it is
+ * run on the FX thread
+ */
+public class DelayReportWindow extends Stage {
+
+    private static final String[] HEADINGS = {"Intersection", "OB Delay (s)", "OB Stops/h",
+            "OB Queue", "IB Delay (s)", "IB Stops/h", "IB Queue"};
+
+    /**
+     * @param spec    the corridor as it is entered
+     * @param volumes the through volumes of the corridor
+     */
+    public DelayReportWindow(CorridorSpec spec, ApproachVolumes volumes) {
+        FlowProfileEngine engine = new FlowProfileEngine(spec, volumes);
+        engine.evaluate();
+        DelayResult result = engine.getResult();
+
+        GridPane table = new GridPane();
+        table.setHgap(16);
+        table.setVgap(4);
+        table.setPadding(new Insets(12));
+        for (int c = 0; c < HEADINGS.length; c++) {
+            table.add(new Label(HEADINGS[c]), c, 0);
+        }
+        for (int i = 0; i < result.size(); i++) {
+            table.addRow(i + 1, new Label(String.valueOf(i + 1)),
+                    new Label(String.format("%.1f", result.getAverageDelayOut(i))),
+                    new Label(String.format("%.0f", result.getStopsOut(i))),
+                    new Label(String.format("%.1f", result.getQueueOut(i))),
+                    new Label(String.format("%.1f", result.getAverageDelayIn(i))),
+                    new Label(String.format("%.0f", result.getStopsIn(i))),
+                    new Label(String.format("%.1f", result.getQueueIn(i))));
+        }
+        Label status = new Label(String.format("Total delay: %.2f veh-h/h  Stops: %.0f /h",
+                result.getTotalDelay(), result.getTotalStops()));
+        BorderPane.setMargin(status, new Insets(0, 12, 12, 12));
+        BorderPane root = new BorderPane(table);
+        root.setBottom(status);
+        setScene(new Scene(root));
+        setTitle("Delay Report");
+    }
+}
@@ -0,0 +1,83 @@
+package visibleElements;
+
+import engine.CorridorSpec;
+import javafx.application.Platform;
+import javafx.scene.Cursor;
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart.Data;
+import javafx.scene.chart.XYChart.Series;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.shape.Circle;
+import javafx.stage.Stage;
+import optimization.MaxbandSolution;
+import optimization.ParetoFrontier;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * A window that plots the inbound against the outbound bandwidth of every
+ * plan on the corridor's trade-off frontier. The frontier is computed once
+ * on a background thread, after which picking a directional priority is
+ * just clicking a point
+ */
+public class FrontierWindow extends Stage {
+
+    //how much wider each frontier plan's inbound band is than the one before, in seconds
+    private static final double RESOLUTION = 0.5;
+
+    private final Label status = new Label("Finding the bandwidth trade-off...");
+
+    /**
+     * @param spec  the corridor
+     * @param adopt called on the FX thread with the shifts of a point that
+     *              was clicked. The shifts are from the offsets in spec, not
+     *              from wherever the corridor is when the point is clicked
+     */
+    public FrontierWindow(CorridorSpec spec, Consumer<double[]> adopt) {
+        NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Outbound Bandwidth (s)");
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Inbound Bandwidth (s)");
+        LineChart<Number, Number> chart = new LineChart<>(xAxis, yAxis);
+        chart.setLegendVisible(false);
+        chart.setAnimated(false);
+        BorderPane root = new BorderPane(chart);
+        root.setBottom(status);
+        setScene(new Scene(root, 600, 500));
+        setTitle("Inbound/Outbound Trade-off");
+
+        ParetoFrontier frontier = new ParetoFrontier(ForkJoinPool.commonPool());
+        Thread worker = new Thread(() -> {
+            List<MaxbandSolution> plans = frontier.compute(spec, RESOLUTION);
+            Platform.runLater(() -> {
+                chart.getData().add(toSeries(plans, adopt));
+                status.setText(plans.size() + " plans. Click a point to use it");
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private Series<Number, Number> toSeries(List<MaxbandSolution> plans,
+                                            Consumer<double[]> adopt) {
+        Series<Number, Number> series = new Series<>();
+        for (MaxbandSolution plan : plans) {
+            Data<Number, Number> point = new Data<>(plan.getOutbound(), plan.getInbound());
+            Circle marker = new Circle(3);
+            marker.setCursor(Cursor.HAND);
+            marker.setOnMouseClicked(e -> {
+                adopt.accept(plan.getDeltas());
+                status.setText(String.format("OBD: %.1f s  IBD: %.1f s", plan.getOutbound(),
+                        plan.getInbound()));
+            });
+            point.setNode(marker);
+            series.getData().add(point);
+        }
+        return series;
+    }
+}
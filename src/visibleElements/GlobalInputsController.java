@@ -4,16 +4,42 @@ import com.sun.javafx.scene.control.skin.BehaviorSkinBase;
 import controls.GlobalVariables;
 import controls.Validation;
 import dataClasses.Example;
+import dataClasses.Movement;
 import dataClasses.RefPoint;
+import engine.BandPercentiles;
+import engine.BandResult;
+import engine.CorridorSpec;
+import engine.Distribution;
+import engine.Network;
+import engine.NetworkBands;
+import engine.NetworkPlan;
+import engine.PlanSet;
+import engine.RobustnessAnalysis;
+import javafx.application.Platform;
 import javafx.beans.binding.BooleanBinding;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
+import optimization.AnnealingOptimizer;
+import optimization.DelayOptimizer;
+import optimization.DelayPlan;
+import optimization.MaxbandSolution;
+import optimization.MaxbandSolver;
+import optimization.PhaseSequenceOptimizer;
+import optimization.SequencePlan;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by Edward on 6/17/2015. Controls the Global Inputs section of the
@@ -35,6 +61,63 @@ public class GlobalInputsController implements Initializable {
     @FXML private ComboBox refPoint;
     @FXML private Label error;
     @FXML private ComboBox examples;
+    @FXML private NumberField inboundWeightField;
+    @FXML private NumberField speedToleranceField;
+    @FXML private Button optimizeButton;
+    @FXML private Button annealButton;
+    @FXML private CheckBox quickAnnealBox;
+    @FXML private Button sweepButton;
+    @FXML private Button frontierButton;
+    @FXML private Button sequenceButton;
+    @FXML private Button speedButton;
+    @FXML private Button delayButton;
+    @FXML private Button minimizeDelayButton;
+    @FXML private Label optimizeStatus;
+    @FXML private NumberField earlyReturnField;
+    @FXML private NumberField offsetDriftField;
+    @FXML private Label robustnessStatus;
+    @FXML private TextField planNameField;
+    @FXML private Button savePlanButton;
+    @FXML private ComboBox<String> planBox;
+    @FXML private Button evaluatePlansButton;
+    @FXML private Label planStatus;
+    @FXML private TextField arterialNodesField;
+    @FXML private Button addArterialButton;
+    @FXML private Button evaluateNetworkButton;
+    @FXML private Label networkStatus;
+    private final BooleanProperty optimizing = new SimpleBooleanProperty(false);
+    private final BooleanProperty annealing = new SimpleBooleanProperty(false);
+    private final BooleanProperty evaluating = new SimpleBooleanProperty(false);
+    private final BooleanProperty coordinating = new SimpleBooleanProperty(false);
+
+    //the seed and length of an annealing run, fixed so a run can be repeated
+    private static final long ANNEAL_SEED = 1;
+    //the seed of the random restarts of a delay hill climb
+    private static final long DELAY_SEED = 1;
+    private static final int ANNEAL_ROUNDS = 60;
+    //the slot width proposals are scored at when quick annealing is picked
+    private static final double ANNEAL_RESOLUTION = 0.5;
+    //the cycle lengths a sweep tries, in seconds
+    private static final double SWEEP_FIRST = 60;
+    private static final double SWEEP_LAST = 180;
+    private static final double SWEEP_STEP = 1;
+    //the progression speeds a sensitivity curve covers
+    private static final double SPEED_FIRST = 25;
+    private static final double SPEED_LAST = 55;
+    //the size and seed of a robustness run, fixed so the same plan always gets the same score
+    private static final long ROBUST_SAMPLES = 1000000;
+    private static final long ROBUST_SEED = 1;
+    private AnnealingOptimizer annealer;
+    //the corridor the running annealing search started from
+    private CorridorSpec searched;
+    //the robustness run that is showing or being sampled. An older run is cancelled and dropped
+    private RobustnessAnalysis robustness;
+    //the saved time-of-day plans, and the bands of each once they have been evaluated
+    private PlanSet plans;
+    private BandResult[] planBands;
+    //the arterials added to the grid so far, and the bands of each arterial of the grid
+    private Network network;
+    private final NetworkBands networkBands = new NetworkBands(ForkJoinPool.commonPool());
 
     @Override
     public void initialize(URL fxmlLocation, ResourceBundle resources) {
@@ -66,6 +149,12 @@ public class GlobalInputsController implements Initializable {
             GlobalVariables.recalcChart.set(!GlobalVariables.recalcChart.get());
         });
 
+        GlobalVariables.systemCorridor.speedToleranceProperty()
+                .bind(speedToleranceField.enteredValueProperty());
+        speedToleranceField.enteredValueProperty().addListener(observable -> {
+            GlobalVariables.recalcChart.set(!GlobalVariables.recalcChart.get());
+        });
+
         startUpLossField.enteredValueProperty().addListener(observable -> {
             GlobalVariables.recalcChart.set(!GlobalVariables.recalcChart.get());
         });
@@ -126,5 +215,530 @@ public class GlobalInputsController implements Initializable {
             }
         };
         error.visibleProperty().bind(submittable.not());
+
+        //the optimizers and reports all assume every intersection runs the system cycle
+        BooleanBinding unusable = GlobalVariables.formFilled.not()
+                .or(GlobalVariables.singleCycle.not());
+        optimizeButton.disableProperty().bind(unusable.or(optimizing).or(annealing));
+        optimizeButton.setOnAction(event -> optimizeOffsets());
+        annealButton.disableProperty().bind(unusable.or(optimizing));
+        annealButton.setOnAction(event -> {
+            if (annealer != null) {
+                annealer.cancel();
+            } else {
+                annealOffsets();
+            }
+        });
+        //a search or solve moves the corridor to plans measured from where it was when it
+        //started, so nothing else may move it until it is done
+        GlobalVariables.searching.bind(annealing.or(optimizing));
+        //these rebuild every intersection at its entered offset
+        examples.disableProperty().bind(GlobalVariables.searching);
+        numIntsField.disableProperty().bind(GlobalVariables.searching);
+        cycleLenField.disableProperty().bind(GlobalVariables.searching);
+        refPoint.disableProperty().bind(GlobalVariables.searching);
+        sweepButton.disableProperty().bind(unusable.or(GlobalVariables.searching));
+        sweepButton.setOnAction(event -> sweepCycleLength());
+        frontierButton.disableProperty().bind(unusable.or(GlobalVariables.searching));
+        frontierButton.setOnAction(event -> {
+            if (GlobalVariables.systemCorridor.isFull()) {
+                CorridorSpec spec = GlobalVariables.systemCorridor.toSpec();
+                new FrontierWindow(spec, deltas -> adoptPlan(spec, deltas)).show();
+            }
+        });
+        sequenceButton.disableProperty().bind(unusable.or(optimizing).or(annealing));
+        sequenceButton.setOnAction(event -> optimizeSequences());
+        speedButton.disableProperty().bind(unusable);
+        speedButton.setOnAction(event -> {
+            if (GlobalVariables.systemCorridor.isFull()) {
+                new SpeedSensitivityWindow(GlobalVariables.systemCorridor.toSpec(), SPEED_FIRST,
+                        SPEED_LAST, GlobalVariables.systemCorridor.getSpeed()).show();
+            }
+        });
+        delayButton.disableProperty().bind(unusable);
+        delayButton.setOnAction(event -> {
+            if (GlobalVariables.systemCorridor.isFull()) {
+                new DelayReportWindow(GlobalVariables.systemCorridor.toSpec(),
+                        GlobalVariables.systemCorridor.toVolumes()).show();
+            }
+        });
+        minimizeDelayButton.disableProperty().bind(unusable.or(optimizing).or(annealing));
+        minimizeDelayButton.setOnAction(event -> minimizeDelay());
+        earlyReturnField.enteredValueProperty().addListener(observable -> scoreRobustness());
+        offsetDriftField.enteredValueProperty().addListener(observable -> scoreRobustness());
+        GlobalVariables.singleCycle.addListener(observable -> scoreRobustness());
+        savePlanButton.disableProperty().bind(GlobalVariables.formFilled.not()
+                .or(planNameField.textProperty().isEmpty()));
+        savePlanButton.setOnAction(event -> savePlan());
+        evaluatePlansButton.disableProperty().bind(evaluating);
+        evaluatePlansButton.setOnAction(event -> evaluatePlans());
+        planBox.disableProperty().bind(GlobalVariables.searching);
+        planBox.valueProperty().addListener((observable, oldValue, newValue) ->
+                switchPlan(newValue));
+        addArterialButton.disableProperty().bind(unusable.or(coordinating)
+                .or(arterialNodesField.textProperty().isEmpty()));
+        addArterialButton.setOnAction(event -> addArterial());
+        evaluateNetworkButton.disableProperty().bind(coordinating);
+        evaluateNetworkButton.setOnAction(event -> coordinateNetwork());
+    }
+
+    /**
+     * @return the inbound weight that was entered, or 1 if it is not valid
+     */
+    private double inboundWeight() {
+        double weightIn = inboundWeightField.getIntermediateValue();
+        return Double.isNaN(weightIn) || weightIn < 0 ? 1 : weightIn;
+    }
+
+    /**
+     * finds the shifts that give the widest pair of bands on a background
+     * thread and moves the corridor to them on the FX thread once they are
+     * found, see {@link #adoptPlan}. The outbound band is weighted 1 and the
+     * inbound band by the inbound weight field
+     */
+    private void optimizeOffsets() {
+        if (!GlobalVariables.systemCorridor.isFull()) {
+            return;
+        }
+        CorridorSpec spec = GlobalVariables.systemCorridor.toSpec();
+        MaxbandSolver solver = new MaxbandSolver(1, inboundWeight(), ForkJoinPool.commonPool());
+        optimizing.set(true);
+        optimizeStatus.setText("Optimizing...");
+        Thread worker = new Thread(() -> {
+            MaxbandSolution solution = solver.solve(spec);
+            Platform.runLater(() -> {
+                optimizing.set(false);
+                if (solution == null) {
+                    optimizeStatus.setText("No plan gives a band");
+                    return;
+                }
+                adoptPlan(spec, solution.getDeltas());
+                optimizeStatus.setText(String.format("OBD: %.1f s  IBD: %.1f s",
+                        solution.getOutbound(), solution.getInbound()));
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * runs an annealing search on a background thread. Every time it finds a
+     * better plan the corridor is moved to it on the FX thread, so the
+     * sliders walk towards better offsets while it runs. Pressing the button
+     * again stops the search and keeps the best plan it found. With quick
+     * annealing picked, proposals are scored by the bitset engine
+     */
+    private void annealOffsets() {
+        if (!GlobalVariables.systemCorridor.isFull()) {
+            return;
+        }
+        CorridorSpec spec = GlobalVariables.systemCorridor.toSpec();
+        AnnealingOptimizer search = new AnnealingOptimizer(spec, ANNEAL_SEED,
+                ForkJoinPool.commonPool());
+        search.setWeights(1, inboundWeight());
+        search.setPairTables(GlobalVariables.systemCorridor.getPairTables());
+        if (quickAnnealBox.isSelected()) {
+            search.setResolution(ANNEAL_RESOLUTION);
+        }
+        annealer = search;
+        searched = spec;
+        annealing.set(true);
+        annealButton.setText("Stop");
+        optimizeStatus.setText("Annealing...");
+        Thread worker = new Thread(() -> {
+            MaxbandSolution best = search.run(ANNEAL_ROUNDS,
+                    progress -> Platform.runLater(() -> showPlan(progress)));
+            Platform.runLater(() -> {
+                showPlan(best);
+                scoreRobustness();
+                annealer = null;
+                searched = null;
+                annealing.set(false);
+                annealButton.setText("Anneal Offsets");
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * moves each intersection from where it is now to where a plan of the
+     * running search puts it, so a step the chart missed is not carried
+     * into the next one
+     *
+     * @param plan the shifts from where the corridor was when the search
+     *             started
+     */
+    private void showPlan(MaxbandSolution plan) {
+        double[] deltas = plan.getDeltas();
+        CorridorSpec current = GlobalVariables.systemCorridor.toSpec();
+        double[] step = new double[Math.min(deltas.length, current.size())];
+        for (int i = 0; i < step.length; i++) {
+            step[i] = searched.getOffsetOut(i) + deltas[i] - current.getOffsetOut(i);
+        }
+        GlobalVariables.systemCorridor.applyShifts(step);
+        GlobalVariables.recalcChart.set(!GlobalVariables.recalcChart.get());
+        optimizeStatus.setText(String.format("OBD: %.1f s  IBD: %.1f s",
+                plan.getOutbound(), plan.getInbound()));
+    }
+
+    /**
+     * opens a window with the best bandwidth at every cycle length in the
+     * sweep range. Picking a point there enters its cycle length, which
+     * rebuilds every intersection, and then shifts the corridor to the best
+     * offsets for it, see {@link #adoptPlan}
+     */
+    private void sweepCycleLength() {
+        if (!GlobalVariables.systemCorridor.isFull()) {
+            return;
+        }
+        CorridorSpec spec = GlobalVariables.systemCorridor.toSpec();
+        new CycleSweepWindow(spec, inboundWeight(), SWEEP_FIRST, SWEEP_LAST, SWEEP_STEP,
+                (cycleLen, solution) -> {
+                    if (GlobalVariables.searching.get()) {
+                        return;
+                    }
+                    cycleLenField.enteredValueProperty().set(cycleLen);
+                    adoptPlan(spec, solution.getDeltas());
+                }).show();
+    }
+
+    /**
+     * moves the corridor to a plan picked in one of the plan windows. The
+     * plan is measured from the corridor as it was when the window opened,
+     * so each intersection is moved from wherever it is now to where the
+     * plan puts it, and picking a plan again does not move it further.
+     * Nothing is moved while a search or solve is running
+     *
+     * @param spec   the corridor the window was opened on
+     * @param deltas the plan's shift of each intersection from spec
+     */
+    private void adoptPlan(CorridorSpec spec, double[] deltas) {
+        if (GlobalVariables.searching.get()) {
+            return;
+        }
+        CorridorSpec entered = GlobalVariables.systemCorridor.toSpec();
+        double[] step = new double[Math.min(deltas.length, entered.size())];
+        for (int i = 0; i < step.length; i++) {
+            step[i] = spec.getOffsetOut(i) + deltas[i] - entered.getOffsetOut(i);
+        }
+        GlobalVariables.systemCorridor.applyShifts(step);
+        GlobalVariables.recalcChart.set(!GlobalVariables.recalcChart.get());
+        scoreRobustness();
+    }
+
+    /**
+     * finds the lead/lag sequence and shift of every intersection that give
+     * the widest pair of bands on a background thread. Once they are found
+     * each intersection's movements are re-entered in the chosen order and
+     * the corridor is shifted so its through greens land where the plan put
+     * them
+     */
+    private void optimizeSequences() {
+        List<RingBarrierEntryController> entries = GlobalVariables.ringBarrierEntries;
+        if (!GlobalVariables.systemCorridor.isFull() || entries.size() !=
+            GlobalVariables.systemCorridor.getIntersections().size()) {
+            return;
+        }
+        CorridorSpec spec = GlobalVariables.systemCorridor.toSpec();
+        int size = spec.size();
+        Movement[][][] orders = new Movement[size][][];
+        double[][] shiftIn = new double[size][];
+        double[][] shiftOut = new double[size][];
+        for (int i = 0; i < size; i++) {
+            List<Movement[]> valid = entries.get(i).validSequences();
+            int count = Math.min(valid.size(), 31);
+            orders[i] = new Movement[count][];
+            shiftIn[i] = new double[count];
+            shiftOut[i] = new double[count];
+            for (int k = 0; k < count; k++) {
+                orders[i][k] = valid.get(k);
+                double[] shift = entries.get(i).throughShift(orders[i][k]);
+                shiftIn[i][k] = shift[0];
+                shiftOut[i][k] = shift[1];
+            }
+        }
+        PhaseSequenceOptimizer optimizer = new PhaseSequenceOptimizer(1, inboundWeight(),
+                ForkJoinPool.commonPool());
+        optimizing.set(true);
+        optimizeStatus.setText("Optimizing sequences...");
+        Thread worker = new Thread(() -> {
+            SequencePlan plan = optimizer.optimize(spec, shiftIn, shiftOut);
+            Platform.runLater(() -> {
+                optimizing.set(false);
+                if (plan == null) {
+                    optimizeStatus.setText("No plan gives a band");
+                    return;
+                }
+                for (int i = 0; i < size; i++) {
+                    if (plan.getSequence(i) != 0) {
+                        entries.get(i).applySequence(orders[i][plan.getSequence(i)]);
+                    }
+                }
+                //re-entering a sequence resets the shifts, so move every intersection to the plan
+                CorridorSpec entered = GlobalVariables.systemCorridor.toSpec();
+                double[] step = new double[size];
+                for (int i = 0; i < size; i++) {
+                    step[i] = spec.getOffsetOut(i) + shiftOut[i][plan.getSequence(i)]
+                              + plan.getDelta(i) - entered.getOffsetOut(i);
+                }
+                GlobalVariables.systemCorridor.applyShifts(step);
+                GlobalVariables.recalcChart.set(!GlobalVariables.recalcChart.get());
+                optimizeStatus.setText(String.format("OBD: %.1f s  IBD: %.1f s",
+                        plan.getOutbound(), plan.getInbound()));
+                scoreRobustness();
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * hill climbs the offsets to the least delay under the flow profile
+     * model on a background thread, using the volumes entered for each
+     * intersection, and moves the corridor to them on the FX thread, see
+     * {@link #adoptPlan}
+     */
+    private void minimizeDelay() {
+        if (!GlobalVariables.systemCorridor.isFull()) {
+            return;
+        }
+        CorridorSpec spec = GlobalVariables.systemCorridor.toSpec();
+        DelayOptimizer optimizer = new DelayOptimizer(spec,
+                GlobalVariables.systemCorridor.toVolumes(), DELAY_SEED,
+                ForkJoinPool.commonPool());
+        optimizing.set(true);
+        optimizeStatus.setText("Minimizing delay...");
+        Thread worker = new Thread(() -> {
+            DelayPlan plan = optimizer.optimize();
+            Platform.runLater(() -> {
+                optimizing.set(false);
+                adoptPlan(spec, plan.getDeltas());
+                optimizeStatus.setText(String.format("Delay: %.1f veh-h/h",
+                        plan.getDelay()));
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * stores the corridor as it is now as a time-of-day plan under the name
+     * that was entered, replacing a plan with the same name. A corridor
+     * whose geometry no longer matches the saved plans starts a new set.
+     * The bands of the set have to be evaluated again before switching
+     */
+    private void savePlan() {
+        String name = planNameField.getText().trim();
+        if (!GlobalVariables.systemCorridor.isFull() || name.isEmpty()) {
+            return;
+        }
+        CorridorSpec spec = GlobalVariables.systemCorridor.bandSpec();
+        if (plans == null || !plans.fits(spec)) {
+            plans = PlanSet.of(spec);
+            planBox.getItems().clear();
+        }
+        plans = plans.withPlan(name, spec);
+        planBands = null;
+        if (!planBox.getItems().contains(name)) {
+            planBox.getItems().add(name);
+        }
+        planStatus.setText(String.format("%d plans, %d intersections stored", plans.size(),
+                plans.countIntersections()));
+    }
+
+    /**
+     * computes the bands of every saved plan at once on a background thread
+     * and keeps them, so picking a plan afterwards only redraws the chart.
+     * A result is dropped if a plan was saved while it was computed
+     */
+    private void evaluatePlans() {
+        if (plans == null || plans.size() == 0) {
+            planStatus.setText("Save a plan first");
+            return;
+        }
+        PlanSet set = plans;
+        evaluating.set(true);
+        planStatus.setText("Evaluating plans...");
+        Thread worker = new Thread(() -> {
+            BandResult[] result = set.evaluate(ForkJoinPool.commonPool());
+            Platform.runLater(() -> {
+                evaluating.set(false);
+                if (set != plans) {
+                    planStatus.setText("Plans changed, evaluate again");
+                    return;
+                }
+                planBands = result;
+                planStatus.setText(String.format("%d plans ready", set.size()));
+                switchPlan(planBox.getValue());
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * puts a saved plan on the corridor and shows its evaluated bands
+     * without recalculating them. The plan has to have been evaluated and
+     * the corridor has to have the plan's geometry and cycle length. Nothing
+     * is shown while a search or solve is moving the corridor
+     *
+     * @param name the name of the plan
+     */
+    private void switchPlan(String name) {
+        int k = plans == null || name == null ? -1 : plans.indexOf(name);
+        if (k < 0 || planBands == null || GlobalVariables.searching.get()) {
+            return;
+        }
+        CorridorSpec spec = plans.toSpec(k);
+        if (spec.getCycleLen() != GlobalVariables.cycleLen.get()) {
+            planStatus.setText(String.format("Enter a %.0f s cycle for %s", spec.getCycleLen(),
+                    name));
+            return;
+        }
+        if (!GlobalVariables.systemCorridor.isFull()
+            || !plans.fits(GlobalVariables.systemCorridor.bandSpec())) {
+            planStatus.setText("The corridor no longer fits the plans");
+            return;
+        }
+        GlobalVariables.systemCorridor.showPlan(spec, planBands[k]);
+        GlobalVariables.redrawToggle.set(!GlobalVariables.redrawToggle.get());
+        planStatus.setText("Showing " + name);
+        scoreRobustness();
+    }
+
+    /**
+     * adds the corridor as it is now to the grid as another arterial. The
+     * nodes field numbers its intersections in corridor order, and an
+     * intersection given the number of one on an arterial already added is
+     * the same signal as that one. The corridor is kept as entered, so it
+     * has to be on the same clock as the arterials it crosses
+     */
+    private void addArterial() {
+        if (!GlobalVariables.systemCorridor.isFull()) {
+            return;
+        }
+        String[] entered = arterialNodesField.getText().split(",");
+        int[] nodes = new int[entered.length];
+        try {
+            for (int k = 0; k < nodes.length; k++) {
+                nodes[k] = Integer.parseInt(entered[k].trim());
+            }
+        } catch (NumberFormatException e) {
+            networkStatus.setText("Enter a node number for each intersection");
+            return;
+        }
+        List<CorridorSpec> arterials = new ArrayList<>();
+        List<int[]> arterialNodes = new ArrayList<>();
+        for (int a = 0; network != null && a < network.getArterialCount(); a++) {
+            arterials.add(network.getBaseArterial(a));
+            int[] curr = new int[network.getBaseArterial(a).size()];
+            for (int k = 0; k < curr.length; k++) {
+                curr[k] = network.getNode(a, k);
+            }
+            arterialNodes.add(curr);
+        }
+        arterials.add(GlobalVariables.systemCorridor.toSpec());
+        arterialNodes.add(nodes);
+        try {
+            network = new Network(arterials, arterialNodes);
+        } catch (IllegalArgumentException e) {
+            networkStatus.setText("Not added: " + e.getMessage());
+            return;
+        }
+        networkStatus.setText(String.format("%d arterials, %d signals",
+                network.getArterialCount(), network.size()));
+    }
+
+    /**
+     * finds the best plan of each arterial of the grid on its own, joins
+     * them into one shift per signal and computes the bands of every
+     * arterial of the joined grid on a background thread. Until another
+     * arterial is added, only the arterials through a signal that moved
+     * since the last run are computed again
+     */
+    private void coordinateNetwork() {
+        if (network == null) {
+            networkStatus.setText("Add an arterial first");
+            return;
+        }
+        Network grid = network;
+        MaxbandSolver solver = new MaxbandSolver(1, inboundWeight(), ForkJoinPool.commonPool());
+        coordinating.set(true);
+        networkStatus.setText("Coordinating...");
+        Thread worker = new Thread(() -> {
+            List<double[]> solutions = new ArrayList<>();
+            for (int a = 0; a < grid.getArterialCount(); a++) {
+                MaxbandSolution solution = solver.solve(grid.getBaseArterial(a));
+                solutions.add(solution == null ? new double[grid.getBaseArterial(a).size()]
+                        : solution.getDeltas());
+            }
+            NetworkPlan plan = grid.join(solutions);
+            double total = 0;
+            for (BandResult curr : networkBands.update(grid.shiftAll(plan.getShifts()))) {
+                total += curr.getOutbound().totalWidth() + curr.getInbound().totalWidth();
+            }
+            String text = String.format("Bands: %.1f s  Misclosure: %.1f s", total,
+                    plan.getMaxMisclosure());
+            int recomputed = networkBands.getRecomputed();
+            Platform.runLater(() -> {
+                coordinating.set(false);
+                networkStatus.setText(text + "  (" + recomputed + " computed)");
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * @param field a field holding a number of seconds
+     * @return the entered value, or 0 if it is not valid
+     */
+    private static double seconds(NumberField field) {
+        double value = field.getIntermediateValue();
+        return Double.isNaN(value) || value < 0 ? 0 : value;
+    }
+
+    /**
+     * runs a Monte Carlo robustness analysis of the corridor as it is now on
+     * a background thread and shows its score next to the plan. Greens
+     * return early by up to the early return field, evenly spread, and every
+     * intersection drifts evenly within the offset drift field either way.
+     * A run that is still sampling is cancelled first, so moving the plan
+     * quickly does not pile up runs on the pool
+     */
+    private void scoreRobustness() {
+        if (robustness != null) {
+            robustness.cancel();
+            robustness = null;
+        }
+        if (!GlobalVariables.systemCorridor.isFull()) {
+            robustnessStatus.setText("");
+            return;
+        }
+        if (!GlobalVariables.singleCycle.get()) {
+            robustnessStatus.setText("Needs one cycle length");
+            return;
+        }
+        double early = seconds(earlyReturnField);
+        double drift = seconds(offsetDriftField);
+        RobustnessAnalysis analysis = new RobustnessAnalysis(
+                GlobalVariables.systemCorridor.toSpec(), Distribution.uniform(0, early),
+                Distribution.uniform(-drift, drift), ForkJoinPool.commonPool());
+        robustness = analysis;
+        robustnessStatus.setText("Sampling...");
+        Thread worker = new Thread(() -> {
+            BandPercentiles result = analysis.run(ROBUST_SAMPLES, ROBUST_SEED);
+            Platform.runLater(() -> {
+                if (analysis != robustness) {
+                    return;
+                }
+                robustnessStatus.setText(Double.isNaN(result.getScore()) ? "No band to score"
+                        : String.format("P10: %.1f s  Score: %.2f", result.getTotal(0.1),
+                        result.getScore()));
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
     }
 }
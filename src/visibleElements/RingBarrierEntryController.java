@@ -27,6 +27,9 @@ import javafx.util.Duration;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.ResourceBundle;
 
 /**
@@ -51,6 +54,10 @@ public class RingBarrierEntryController implements Initializable {
     @FXML private NumberField duration4text;
     @FXML private NumberField offsetText;
     @FXML private NumberField distField;
+    @FXML private NumberField linkSpeedField;
+    @FXML private NumberField volumeInField;
+    @FXML private NumberField volumeOutField;
+    @FXML private ComboBox cyclingBox;
     @FXML private Label error;
     @FXML private Label confirm;
     @FXML private ImageView TLimgView;
@@ -66,6 +73,11 @@ public class RingBarrierEntryController implements Initializable {
     @FXML private Rectangle BLrect;
     @FXML private Rectangle BRrect;
 
+    //the choices of how many times this intersection cycles per system cycle
+    private static final String FULL_CYCLE = "Full";
+    private static final String HALF_CYCLE = "Half";
+    private static final String DOUBLE_CYCLE = "Double";
+
     private int index;
     private DoubleProperty ibdGreenTime = new SimpleDoubleProperty();
     private DoubleProperty obdGreenTime = new SimpleDoubleProperty();
@@ -128,6 +140,8 @@ public class RingBarrierEntryController implements Initializable {
                 comboBox1.requestFocus();
             }
         });
+        cyclingBox.getItems().setAll(FULL_CYCLE, HALF_CYCLE, DOUBLE_CYCLE);
+        cyclingBox.setValue(FULL_CYCLE);
         TLrect.widthProperty().bind(TLpane.widthProperty());
         TLrect.heightProperty().bind(TLpane.heightProperty());
         TRrect.widthProperty().bind(TRpane.widthProperty());
@@ -188,7 +202,8 @@ public class RingBarrierEntryController implements Initializable {
                         comboBox2.valueProperty(),
                         comboBox3.valueProperty(),
                         comboBox4.valueProperty(),
-                        offsetText.textProperty());
+                        offsetText.textProperty(),
+                        cyclingBox.valueProperty());
             }
 
             @Override
@@ -206,10 +221,10 @@ public class RingBarrierEntryController implements Initializable {
                                comboBox4.getValue()) ||
                        !(duration1text.enteredValueProperty().get() +
                         duration2text.enteredValueProperty().get() <=
-                        GlobalVariables.cycleLen.get() &&
+                        cycleLen() &&
                         duration3text.enteredValueProperty().get() +
                         duration4text.enteredValueProperty().get() <=
-                        GlobalVariables.cycleLen.get());
+                        cycleLen());
             }
         };
         controller.addPropertyChangeListener(evt -> {
@@ -217,6 +232,11 @@ public class RingBarrierEntryController implements Initializable {
                 submitForm();
             }
         });
+        cyclingBox.valueProperty().addListener(observable -> {
+            if (!submittable.get()) {
+                submitForm();
+            }
+        });
         offsetText.setOnKeyPressed(event -> {
             if ((event.getCode().equals(KeyCode.ENTER) || event.getCode().equals(KeyCode.TAB))) {
                 offsetText.enteredValueProperty().set(offsetText.getIntermediateValue());
@@ -294,21 +314,31 @@ public class RingBarrierEntryController implements Initializable {
     /**
      * method called when the form is submittable (all fields have passed
      * validation) Sets the intersection at the corresponding index and
-     * activates all appropriate update toggles
+     * activates all appropriate update toggles. Nothing is submitted while
+     * a search or solve is moving the corridor
      */
     public void submitForm() {
+        if (GlobalVariables.searching.get()) {
+            return;
+        }
         assignOffsetsAndDurations();
         delta = moveOffset();
         GlobalVariables.systemCorridor.setIntersection(index, new Intersection(
-                GlobalVariables.cycleLen.get(),
-                GlobalVariables.cycleLen.get() - ibdGreenTime.get(),
-                GlobalVariables.cycleLen.get() - obdGreenTime.get(),
+                cycleLen(),
+                cycleLen() - ibdGreenTime.get(),
+                cycleLen() - obdGreenTime.get(),
                 ibdOffset.get() + delta,
                 obdOffset.get() + delta,
                 distField.getEnteredValue()));
         String text = nameLabel.getText();
         GlobalVariables.systemCorridor.getIntersections().get(index)
                 .crossStNameProperty().bind(nameLabel.textProperty());
+        GlobalVariables.systemCorridor.getIntersections().get(index)
+                .linkSpeedProperty().bind(linkSpeedField.enteredValueProperty());
+        GlobalVariables.systemCorridor.getIntersections().get(index)
+                .volumeInProperty().bind(volumeInField.enteredValueProperty());
+        GlobalVariables.systemCorridor.getIntersections().get(index)
+                .volumeOutProperty().bind(volumeOutField.enteredValueProperty());
 
         bindOffset();
 
@@ -564,6 +594,11 @@ public class RingBarrierEntryController implements Initializable {
         }
         submitForm();
     }
+    /**
+     * enters the DDI example. Each crossover runs its through movements in
+     * two phases per ring, which gives every through one green window; the
+     * form has no way to enter a second one
+     */
     private void setExampleDDI() {
         switch (index) {
             case 0:
@@ -742,6 +777,124 @@ public class RingBarrierEntryController implements Initializable {
         }
     }
 
+    /**
+     * @return the length of this intersection's cycle: the system cycle
+     * length, or half or twice it when the intersection is half or double
+     * cycled
+     */
+    private double cycleLen() {
+        if (HALF_CYCLE.equals(cyclingBox.getValue())) {
+            return GlobalVariables.cycleLen.get() / 2;
+        }
+        if (DOUBLE_CYCLE.equals(cyclingBox.getValue())) {
+            return GlobalVariables.cycleLen.get() * 2;
+        }
+        return GlobalVariables.cycleLen.get();
+    }
+
+    /**
+     * @return the movements as entered now: top left, top right, bottom left
+     * and bottom right
+     */
+    public Movement[] currentSequence() {
+        return new Movement[]{(Movement) comboBox1.getValue(), (Movement) comboBox2.getValue(),
+                (Movement) comboBox3.getValue(), (Movement) comboBox4.getValue()};
+    }
+
+    /**
+     * lists every order this intersection's movements can run in with the
+     * durations they have now: each arrangement of the four movements that
+     * passes Validation.validateMovement and still fits both rings in the
+     * cycle
+     *
+     * @return the valid orders, with the order entered now first
+     */
+    public List<Movement[]> validSequences() {
+        Movement[] current = currentSequence();
+        List<Movement[]> result = new ArrayList<>();
+        result.add(current);
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 4; b++) {
+                for (int c = 0; c < 4; c++) {
+                    int d = 6 - a - b - c;
+                    if (a == b || a == c || b == c || d < 0 || d > 3 || d == a || d == b
+                        || d == c) {
+                        continue;
+                    }
+                    Movement[] order = {current[a], current[b], current[c], current[d]};
+                    if (!Arrays.equals(order, current)
+                        && Validation.validateMovement(order[0], order[1], order[2], order[3])
+                        && durationOf(order[0]) + durationOf(order[1]) <= cycleLen()
+                        && durationOf(order[2]) + durationOf(order[3]) <= cycleLen()) {
+                        result.add(order);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param order an order from validSequences()
+     * @return how far running in that order moves the inbound and the
+     * outbound through green within the cycle, in seconds
+     */
+    public double[] throughShift(Movement[] order) {
+        Movement[] current = currentSequence();
+        return new double[]{
+                throughStart(order, Movement.IB_THRU) - throughStart(current, Movement.IB_THRU),
+                throughStart(order, Movement.OB_THRU) - throughStart(current, Movement.OB_THRU)};
+    }
+
+    /**
+     * re-enters the movements in a new order, each keeping its duration, and
+     * submits the intersection
+     *
+     * @param order an order from validSequences()
+     */
+    public void applySequence(Movement[] order) {
+        double[] durations = new double[4];
+        for (int k = 0; k < 4; k++) {
+            durations[k] = durationOf(order[k]);
+        }
+        ComboBox[] boxes = {comboBox1, comboBox2, comboBox3, comboBox4};
+        NumberField[] fields = {duration1text, duration2text, duration3text, duration4text};
+        for (int k = 0; k < 4; k++) {
+            boxes[k].setValue(order[k]);
+            fields[k].setText("" + durations[k]);
+            fields[k].enteredValueProperty().set(durations[k]);
+        }
+        submitForm();
+    }
+
+    /**
+     * @return the entered duration of a movement
+     */
+    private double durationOf(Movement movement) {
+        Movement[] current = currentSequence();
+        NumberField[] fields = {duration1text, duration2text, duration3text, duration4text};
+        for (int k = 0; k < 4; k++) {
+            if (current[k] == movement) {
+                return fields[k].getEnteredValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return when a through movement starts within the cycle in a given
+     * order. Both rings start at zero, and the second movement of a ring
+     * starts when the first one ends
+     */
+    private double throughStart(Movement[] order, Movement through) {
+        for (int k = 0; k < 4; k++) {
+            if (order[k] == through) {
+                return k % 2 == 0 ? 0 : durationOf(order[k - 1]);
+            }
+        }
+        return 0;
+    }
+
     public void setIndex(int index) {
         this.index = index;
     }
@@ -0,0 +1,102 @@
+package visibleElements;
+
+import engine.CorridorSpec;
+import engine.SpeedCurve;
+import engine.SpeedSensitivity;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart.Data;
+import javafx.scene.chart.XYChart.Series;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.shape.Circle;
+import javafx.stage.Stage;
+
+/**
+ * A window that plots the widest inbound and outbound band against the
+ * progression speed, so it is easy to see how much a plan relies on traffic
+ * moving at the design speed. Every breakpoint, where the intersections
+ * that limit a band change, gets a marker that names them
+ */
+public class SpeedSensitivityWindow extends Stage {
+
+    //how many points are drawn between two breakpoints, since the curve bends with 1 / speed
+    private static final int SAMPLES = 8;
+
+    private final Label status = new Label("Tracking the bands across speeds...");
+
+    /**
+     * @param spec     the corridor as it runs now
+     * @param minSpeed the slowest progression speed
+     * @param maxSpeed the fastest progression speed
+     * @param speed    the progression speed the corridor is designed for.
+     *                 Links with their own speed scale with it
+     */
+    public SpeedSensitivityWindow(CorridorSpec spec, double minSpeed, double maxSpeed,
+                                  double speed) {
+        NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Progression Speed");
+        xAxis.setForceZeroInRange(false);
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Bandwidth (s)");
+        LineChart<Number, Number> chart = new LineChart<>(xAxis, yAxis);
+        chart.setCreateSymbols(false);
+        chart.setAnimated(false);
+        BorderPane root = new BorderPane(chart);
+        root.setBottom(status);
+        setScene(new Scene(root, 700, 450));
+        setTitle("Speed Sensitivity");
+
+        Thread worker = new Thread(() -> {
+            SpeedCurve outbound = SpeedSensitivity.outbound(spec, speed, minSpeed, maxSpeed);
+            SpeedCurve inbound = SpeedSensitivity.inbound(spec, speed, minSpeed, maxSpeed);
+            Platform.runLater(() -> {
+                chart.getData().add(toSeries("Outbound", outbound));
+                chart.getData().add(toSeries("Inbound", inbound));
+                status.setText(speed >= minSpeed && speed <= maxSpeed
+                        ? String.format("%d breakpoints. At %.0f: OBD %.1f s, IBD %.1f s",
+                        outbound.size() + inbound.size() - 2, speed, outbound.bandAt(speed),
+                        inbound.bandAt(speed))
+                        : String.format("%d breakpoints", outbound.size() + inbound.size() - 2));
+            });
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * builds one direction's curve, with a marker at the start of every
+     * segment after the first
+     */
+    private Series<Number, Number> toSeries(String name, SpeedCurve curve) {
+        Series<Number, Number> series = new Series<>();
+        series.setName(name);
+        for (int k = 0; k < curve.size(); k++) {
+            double from = curve.getFromSpeed(k);
+            double to = curve.getToSpeed(k);
+            Data<Number, Number> start = new Data<>(from, curve.bandAt(k, from));
+            if (k > 0) {
+                Circle marker = new Circle(3);
+                Tooltip.install(marker, new Tooltip(String.format("%.1f: limited by %s and %s",
+                        from, limitName(curve.getLeftLimit(k)),
+                        limitName(curve.getRightLimit(k)))));
+                start.setNode(marker);
+            }
+            series.getData().add(start);
+            for (int s = 1; s < SAMPLES; s++) {
+                double at = from + (to - from) * s / SAMPLES;
+                series.getData().add(new Data<>(at, curve.bandAt(k, at)));
+            }
+            series.getData().add(new Data<>(to, curve.bandAt(k, to)));
+        }
+        return series;
+    }
+
+    private static String limitName(int limit) {
+        return limit == SpeedCurve.FIRST_GREEN ? "the first green"
+                : "intersection " + (limit + 1);
+    }
+}
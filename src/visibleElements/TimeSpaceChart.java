@@ -3,6 +3,7 @@ package visibleElements;
 import controls.GlobalVariables;
 import dataClasses.Corridor;
 import dataClasses.Intersection;
+import engine.OffsetProfile;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Point2D;
@@ -16,16 +17,27 @@ import java.util.Set;
 /**
  * Created by Edward on 5/29/2015. This is where all of the chart stuff
  * happens. The chart must keep track of the mouse x value to properly
- * convert mouse dragged coordinates into chart coordinates.
+ * convert mouse dragged coordinates into chart coordinates. While an
+ * intersection is dragged, its bandwidth profile is drawn as a strip above
+ * it and holding shift snaps the drag to the best offset nearby.
  *
  * @author Edward Foyle
  * @version 1.0
  */
 public class TimeSpaceChart extends LineChart<Number, Number> {
 
+    //how far (in seconds) a shift-drag will look for a better offset
+    private static final double SNAP_REACH = 5;
+
     private double mousex;
     private Corridor corridor = GlobalVariables.systemCorridor;
 
+    //bandwidth profile of the intersection being dragged, relative to where the drag started
+    private OffsetProfile dragProfile;
+    private int dragIndex = -1;
+    private double dragOffset;
+    private double mouseOffset;
+
     /**
      * creates the chart and initializes mouse listeners that will change the
      * intersection offsets accordingly. Also listens for chart resize and
@@ -53,28 +65,36 @@ public class TimeSpaceChart extends LineChart<Number, Number> {
             for (Intersection curr : corridor.getIntersections()) {
                 curr.isSelectedProperty().set(false);
             }
+            endDrag();
         });
 
         setOnMouseReleased(e -> {
             setCursor(Cursor.DEFAULT);
+            endDrag();
         });
 
         setOnMouseDragged(e -> {
+            if (GlobalVariables.searching.get()) {
+                return;
+            }
             Point2D scenePos = new Point2D(e.getSceneX(), e.getSceneY());
             double x = (double) xAxis.getValueForDisplay(xAxis.sceneToLocal(scenePos).getX());
-            for (Intersection curr : corridor.getIntersections()) {
+            for (int i = 0; i < corridor.getIntersections().size(); i++) {
+                Intersection curr = corridor.getIntersections().get(i);
                 if (curr.isSelectedProperty().get()) {
                     setCursor(Cursor.CLOSED_HAND);
-                    double cycleLen = GlobalVariables.cycleLen.get();
-                    double delta = x - mousex;
-                    Data<Double, Double> slider = curr.getSlider();
-                    double newVal = slider.getXValue() + delta;
-                    newVal = (newVal < 0) ? (cycleLen - (Math.abs(newVal) % cycleLen)) % cycleLen
-                            : (newVal % cycleLen);
+                    if (dragIndex != i) {
+                        startDrag(i);
+                    }
+                    mouseOffset += x - mousex;
                     mousex = x;
-                    curr.getCycleOut().shift(delta);
-                    curr.getCycleIn().shift(delta);
-                    updateChart();
+                    double target = mouseOffset;
+                    if (e.isShiftDown() && dragProfile != null) {
+                        target = dragProfile.bestDeltaNear(mouseOffset, SNAP_REACH);
+                    }
+                    corridor.shiftIntersection(i, target - dragOffset);
+                    dragOffset = target;
+                    redrawBands();
                 }
             }
         });
@@ -98,6 +118,10 @@ public class TimeSpaceChart extends LineChart<Number, Number> {
         GlobalVariables.recalcCorridor.addListener(observable -> {
             updateSliders();
         });
+
+        GlobalVariables.redrawToggle.addListener(observable -> {
+            redrawBands();
+        });
     }
 
     /**
@@ -120,6 +144,10 @@ public class TimeSpaceChart extends LineChart<Number, Number> {
                     for (Node label : lineNodes) {
                         label.setStyle("-fx-stroke: transparent");
                     }
+                } else if (curr.getName().equals("profile")) {
+                    for (Node line : lineNodes) {
+                        line.setStyle("-fx-stroke: green; -fx-stroke-width: 1px");
+                    }
                 }
             } catch (NullPointerException e) {
                 System.out.println(
@@ -158,6 +186,63 @@ public class TimeSpaceChart extends LineChart<Number, Number> {
         }
     }
 
+    /**
+     * starts tracking a drag of one intersection. Calculates its bandwidth profile and draws it
+     * as a strip above the intersection: the height of the strip at a time is the total bandwidth
+     * the corridor would have if the intersection's outbound green started there
+     *
+     * @param index the index of the intersection being dragged
+     */
+    private void startDrag(int index) {
+        endDrag();
+        dragIndex = index;
+        dragOffset = 0;
+        mouseOffset = 0;
+        dragProfile = corridor.offsetProfile(index);
+        if (dragProfile == null) {
+            return;
+        }
+        double max = 0;
+        for (int i = 0; i < dragProfile.size(); i++) {
+            max = Math.max(max, dragProfile.getTotal(i));
+        }
+        NumberAxis xAxis = (NumberAxis) getXAxis();
+        NumberAxis yAxis = (NumberAxis) getYAxis();
+        double cycleLen = dragProfile.getCycleLen();
+        double greenStart = corridor.getIntersections().get(index).getCycleOut().getOffset();
+        double base = corridor.getIntersections().get(index).getDist()
+                      + (yAxis.getUpperBound() - yAxis.getLowerBound()) / 60;
+        double height = (yAxis.getUpperBound() - yAxis.getLowerBound()) / 30;
+        Series<Number, Number> strip = new Series<>();
+        long first = (long) Math.floor((xAxis.getLowerBound() - greenStart) / cycleLen) - 1;
+        long last = (long) Math.ceil((xAxis.getUpperBound() - greenStart) / cycleLen);
+        for (long k = first; k <= last; k++) {
+            for (int i = 0; i < dragProfile.size(); i++) {
+                double level = max > 0 ? dragProfile.getTotal(i) / max : 0;
+                strip.getData().add(new Data<>(greenStart + k * cycleLen + dragProfile.getDelta(i),
+                        base + height * level));
+            }
+        }
+        strip.setName("profile");
+        getData().add(strip);
+        colorStuff();
+        moveSlidersToFont();
+    }
+
+    /**
+     * stops tracking a drag and removes the profile strip
+     */
+    private void endDrag() {
+        dragIndex = -1;
+        dragProfile = null;
+        ObservableList<Series<Number, Number>> copy = FXCollections.observableArrayList(getData());
+        for (Series<Number, Number> series : copy) {
+            if (series.getName().equals("profile")) {
+                getData().remove(series);
+            }
+        }
+    }
+
     /**
      * removes sliders (and not bands) to allow a redraw to take place
      */
@@ -189,6 +274,13 @@ public class TimeSpaceChart extends LineChart<Number, Number> {
      */
     private void updateChart() {
         corridor.updateBands();
+        redrawBands();
+    }
+
+    /**
+     * redraws the bands the corridor currently holds without recalculating them
+     */
+    private void redrawBands() {
         removeBands();
         for (Series<Number, Number> newBand : corridor.getBands()) {
             getData().add(newBand);
@@ -41,13 +41,17 @@ public class UserInput extends VBox {
         GlobalVariables.loadIntersections.addListener((observable, oldValue, newValue) -> {
             if (newValue) {
                 intersections.getChildren().clear();
+                GlobalVariables.ringBarrierEntries.clear();
             }
         });
         GlobalVariables.example.addListener((observable, oldValue, newValue) -> {
             if (newValue.equals(Example.MANUAL)) {
                 intersections.getChildren().clear();
+                GlobalVariables.ringBarrierEntries.clear();
             }
         });
+        //an intersection form rebuilds its intersection, dropping the shifts a search applied
+        intersections.disableProperty().bind(GlobalVariables.searching);
         getChildren().add(intersections);
     }
 
@@ -58,12 +62,16 @@ public class UserInput extends VBox {
     private void setNumIntersectionEntries(int size) {
         if (intersections.getChildren().size() > size) {
             intersections.getChildren().remove(size, intersections.getChildren().size());
+            GlobalVariables.ringBarrierEntries
+                    .subList(size, GlobalVariables.ringBarrierEntries.size()).clear();
         } else {
             GlobalVariables.jankIntersectionCounter = intersections.getChildren().size();
             for (int i = intersections.getChildren().size(); i < size; i++) {
                 try {
-                    intersections.getChildren().add(FXMLLoader.load(this.getClass()
-                            .getResource("markupFiles/RingBarrierEntry.fxml")));
+                    FXMLLoader loader = new FXMLLoader(this.getClass()
+                            .getResource("markupFiles/RingBarrierEntry.fxml"));
+                    intersections.getChildren().add(loader.load());
+                    GlobalVariables.ringBarrierEntries.add(loader.getController());
                 } catch (IOException e) {
                     System.out.println("couldn't load ring barrier inputs fxml file");
                     e.printStackTrace();